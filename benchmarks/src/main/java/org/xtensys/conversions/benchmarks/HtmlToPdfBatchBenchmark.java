@@ -0,0 +1,104 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xtensys.conversions.HtmlToPdfConfigurationException;
+import org.xtensys.conversions.HtmlToPdfConversionStatus;
+import org.xtensys.conversions.HtmlToPdfExecutionMode;
+import org.xtensys.conversions.HtmlToPdfLoggerException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of converting a source directory holding a mix of every kind of HTML file, in files per
+ * second, for each execution mode and thread count
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 20)
+@Measurement(iterations = 5, time = 20)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class HtmlToPdfBatchBenchmark {
+    private static final int FILE_COUNT = 20;
+
+    @Param({"FIXED_POOL", "VIRTUAL_THREADS"})
+    private HtmlToPdfExecutionMode executionMode;
+
+    @Param({"1", "2", "4", "8"})
+    private int threadCount;
+
+    private HtmlToPdfBenchmarkWorkspace workspace;
+
+    /**
+     * Generates the HTML files and creates the converter
+     * @throws IOException if the workspace can't be written
+     * @throws HtmlToPdfConfigurationException if the configuration is not valid
+     * @throws HtmlToPdfLoggerException if the logger can't be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, HtmlToPdfConfigurationException, HtmlToPdfLoggerException {
+        workspace = new HtmlToPdfBenchmarkWorkspace(
+                (sourceDirectory, assetDirectory) -> HtmlToPdfCorpusGenerator.generateMixed(sourceDirectory,
+                        assetDirectory, FILE_COUNT / HtmlToPdfCorpusGenerator.DocumentKind.values().length),
+                executionMode, threadCount);
+    }
+
+    /**
+     * Fails the trial if any conversion failed, since failed conversions would make it look faster, and deletes the
+     * workspace
+     * @throws IOException if the workspace can't be deleted
+     * @throws HtmlToPdfLoggerException if the logger can't be closed
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, HtmlToPdfLoggerException {
+        long failureCount = workspace.getConverter().getRunSummary().getFileCount(HtmlToPdfConversionStatus.FAILURE);
+        workspace.close();
+        if(failureCount > 0){
+            throw new IllegalStateException(failureCount + " conversions failed");
+        }
+    }
+
+    /**
+     * Converts every file of the source directory
+     * @throws IOException if the PDF files can't be written
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void convertSourceDirectory() throws IOException, HtmlToPdfLoggerException {
+        workspace.getConverter().convertSourceDirectory();
+    }
+}
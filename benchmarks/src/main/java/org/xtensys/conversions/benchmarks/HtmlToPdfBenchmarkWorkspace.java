@@ -0,0 +1,125 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions.benchmarks;
+
+import com.google.gson.Gson;
+import org.apache.commons.io.FileUtils;
+import org.xtensys.conversions.HtmlToPdfConfiguration;
+import org.xtensys.conversions.HtmlToPdfConfigurationException;
+import org.xtensys.conversions.HtmlToPdfConverter;
+import org.xtensys.conversions.HtmlToPdfExecutionMode;
+import org.xtensys.conversions.HtmlToPdfFileManager;
+import org.xtensys.conversions.HtmlToPdfLoggerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A temporary source and target directory pair converted by a benchmark. The converter is configured through the same
+ * JSON configuration file as the application, with the incremental mode and the output cache disabled so every
+ * conversion is actually rendered.
+ */
+public class HtmlToPdfBenchmarkWorkspace implements AutoCloseable {
+    private final Path rootDirectory;
+    private final Path sourceDirectory;
+    private final HtmlToPdfConverter converter;
+
+    /**
+     * Creates the workspace directories and lets the caller fill the source directory before the converter is created
+     * @param corpusWriter writes the HTML files to the source directory
+     * @param executionMode how the conversions are executed
+     * @param threadCount the maximum number of conversions executed at the same time
+     * @throws IOException if the directories or the configuration file can't be written
+     * @throws HtmlToPdfConfigurationException if the configuration is not valid
+     * @throws HtmlToPdfLoggerException if the logger can't be created
+     */
+    public HtmlToPdfBenchmarkWorkspace(CorpusWriter corpusWriter, HtmlToPdfExecutionMode executionMode, int threadCount)
+            throws IOException, HtmlToPdfConfigurationException, HtmlToPdfLoggerException {
+        this.rootDirectory = Files.createTempDirectory("html_to_pdf_benchmark");
+        this.sourceDirectory = Files.createDirectories(rootDirectory.resolve("in"));
+        Path targetDirectory = Files.createDirectories(rootDirectory.resolve("out"));
+        corpusWriter.write(sourceDirectory, Files.createDirectories(rootDirectory.resolve("assets")));
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("sourceDirectoryPath", sourceDirectory.toString());
+        settings.put("targetDirectoryPath", targetDirectory.toString());
+        settings.put("executionMode", executionMode.name());
+        settings.put("threadCount", threadCount);
+        File configurationFile = rootDirectory.resolve("configuration.json").toFile();
+        Files.writeString(configurationFile.toPath(), new Gson().toJson(settings), StandardCharsets.UTF_8);
+
+        HtmlToPdfConfiguration configuration = HtmlToPdfConfiguration.fromJson(configurationFile);
+        configuration.validate();
+        HtmlToPdfFileManager fileManager = new HtmlToPdfFileManager(configuration);
+        if(!fileManager.hasValidDirectories()){
+            throw new HtmlToPdfConfigurationException("The benchmark directories are not valid: " + rootDirectory);
+        }
+        this.converter = new HtmlToPdfConverter(configuration, fileManager);
+    }
+
+    /**
+     * Gets the source directory holding the HTML files
+     * @return the source directory
+     */
+    public Path getSourceDirectory() {
+        return sourceDirectory;
+    }
+
+    /**
+     * Gets the converter of the workspace
+     * @return the converter
+     */
+    public HtmlToPdfConverter getConverter() {
+        return converter;
+    }
+
+    /**
+     * Closes the converter and deletes the workspace directories
+     * @throws IOException if the directories can't be deleted
+     * @throws HtmlToPdfLoggerException if the logger can't be closed
+     */
+    @Override
+    public void close() throws IOException, HtmlToPdfLoggerException {
+        try {
+            converter.close();
+        } finally {
+            FileUtils.deleteDirectory(rootDirectory.toFile());
+        }
+    }
+
+    /**
+     * Writes the HTML files converted by a benchmark
+     */
+    @FunctionalInterface
+    public interface CorpusWriter {
+        /**
+         * Writes the HTML files to the source directory
+         * @param sourceDirectory the source directory
+         * @param assetDirectory the directory outside the source directory the stylesheets and images are written to
+         * @throws IOException if the files can't be written
+         */
+        void write(Path sourceDirectory, Path assetDirectory) throws IOException;
+    }
+}
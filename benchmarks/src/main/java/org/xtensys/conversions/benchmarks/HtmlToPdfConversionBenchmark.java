@@ -0,0 +1,102 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xtensys.conversions.HtmlToPdfConfigurationException;
+import org.xtensys.conversions.HtmlToPdfConversionStatus;
+import org.xtensys.conversions.HtmlToPdfExecutionMode;
+import org.xtensys.conversions.HtmlToPdfLoggerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of converting a single HTML file of each kind, from reading the HTML file to logging the
+ * result, on a converter that is created once and reused like in watch mode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class HtmlToPdfConversionBenchmark {
+    @Param({"SMALL", "MEDIUM", "LARGE", "TABLE", "IMAGE"})
+    private HtmlToPdfCorpusGenerator.DocumentKind documentKind;
+
+    private HtmlToPdfBenchmarkWorkspace workspace;
+    private List<File> sourceFiles;
+
+    /**
+     * Generates the HTML file and creates the converter
+     * @throws IOException if the workspace can't be written
+     * @throws HtmlToPdfConfigurationException if the configuration is not valid
+     * @throws HtmlToPdfLoggerException if the logger can't be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, HtmlToPdfConfigurationException, HtmlToPdfLoggerException {
+        workspace = new HtmlToPdfBenchmarkWorkspace(
+                (sourceDirectory, assetDirectory) -> HtmlToPdfCorpusGenerator.generate(sourceDirectory, assetDirectory,
+                        documentKind, 1),
+                HtmlToPdfExecutionMode.SEQUENTIAL, 1);
+        String filename = HtmlToPdfCorpusGenerator.getFilename(documentKind, 0);
+        sourceFiles = List.of(workspace.getSourceDirectory().resolve(filename).toFile());
+    }
+
+    /**
+     * Fails the trial if any conversion failed, since failed conversions would make it look faster, and deletes the
+     * workspace
+     * @throws IOException if the workspace can't be deleted
+     * @throws HtmlToPdfLoggerException if the logger can't be closed
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, HtmlToPdfLoggerException {
+        long failureCount = workspace.getConverter().getRunSummary().getFileCount(HtmlToPdfConversionStatus.FAILURE);
+        workspace.close();
+        if(failureCount > 0){
+            throw new IllegalStateException(failureCount + " conversions failed");
+        }
+    }
+
+    /**
+     * Converts the HTML file
+     * @throws IOException if the PDF file can't be written
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    @Benchmark
+    public void convertFile() throws IOException, HtmlToPdfLoggerException {
+        workspace.getConverter().convertFiles(sourceFiles);
+    }
+}
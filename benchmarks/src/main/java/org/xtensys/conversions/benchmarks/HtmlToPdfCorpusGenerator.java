@@ -0,0 +1,256 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions.benchmarks;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates a synthetic corpus of HTML files for the benchmarks. The corpus only depends on the seed, so the same
+ * documents are converted by every run and the results of different runs can be compared. The stylesheet and images
+ * are written to a separate asset directory, since every file of the source directory is converted.
+ */
+public class HtmlToPdfCorpusGenerator {
+    private static final long SEED = 20250101L;
+    private static final String STYLESHEET_FILENAME = "style.css";
+    private static final String IMAGE_SUBDIRECTORY = "images";
+    private static final int IMAGE_COUNT = 24;
+    private static final int IMAGE_SIZE = 256;
+    private static final String[] WORDS = {
+            "invoice", "shipment", "customer", "account", "balance", "quarter", "report", "summary", "payment",
+            "delivery", "order", "product", "service", "contract", "region", "total", "amount", "period", "status",
+            "review", "approved", "pending", "schedule", "document", "reference", "number", "address", "detail"
+    };
+
+    /**
+     * The kinds of document generated
+     */
+    public enum DocumentKind {
+        /** A single short page of text */
+        SMALL,
+        /** A few pages of headings and paragraphs */
+        MEDIUM,
+        /** Several dozen pages of headings and paragraphs */
+        LARGE,
+        /** A long table spanning several pages */
+        TABLE,
+        /** A gallery of images read from the corpus directory */
+        IMAGE
+    }
+
+    /**
+     * Constructor is private as this class only holds static methods
+     */
+    private HtmlToPdfCorpusGenerator() {
+    }
+
+    /**
+     * Generates HTML files of the given kind in a directory, along with the stylesheet and images they reference
+     * @param directory the directory the HTML files are written to
+     * @param assetDirectory the directory the stylesheet and images are written to
+     * @param documentKind the kind of document generated
+     * @param count the number of HTML files generated
+     * @throws IOException if the files can't be written
+     */
+    public static void generate(Path directory, Path assetDirectory, DocumentKind documentKind, int count) throws IOException {
+        Files.createDirectories(directory);
+        Files.createDirectories(assetDirectory);
+        HtmlToPdfCorpusGenerator.writeStylesheet(assetDirectory.resolve(STYLESHEET_FILENAME));
+        if(documentKind == DocumentKind.IMAGE){
+            HtmlToPdfCorpusGenerator.writeImages(assetDirectory.resolve(IMAGE_SUBDIRECTORY));
+        }
+        Random random = new Random(SEED + documentKind.ordinal());
+        String assetUri = assetDirectory.toUri().toString();
+        for(int i = 0; i < count; i++){
+            Path htmlFile = directory.resolve(HtmlToPdfCorpusGenerator.getFilename(documentKind, i));
+            try (Writer writer = Files.newBufferedWriter(htmlFile, StandardCharsets.UTF_8)) {
+                writer.write(HtmlToPdfCorpusGenerator.createDocument(documentKind, assetUri, random));
+            }
+        }
+    }
+
+    /**
+     * Generates the same number of HTML files of every kind in a directory
+     * @param directory the directory the HTML files are written to
+     * @param assetDirectory the directory the stylesheet and images are written to
+     * @param countPerKind the number of HTML files generated for each kind
+     * @throws IOException if the files can't be written
+     */
+    public static void generateMixed(Path directory, Path assetDirectory, int countPerKind) throws IOException {
+        for(DocumentKind documentKind : DocumentKind.values()){
+            HtmlToPdfCorpusGenerator.generate(directory, assetDirectory, documentKind, countPerKind);
+        }
+    }
+
+    /**
+     * Gets the filename of a generated HTML file
+     * @param documentKind the kind of document
+     * @param index the index of the HTML file among the files of its kind
+     * @return the filename of the HTML file
+     */
+    public static String getFilename(DocumentKind documentKind, int index) {
+        return documentKind.name().toLowerCase(Locale.ROOT) + "_" + index + ".html";
+    }
+
+    /**
+     * Creates the HTML content of a document
+     * @param documentKind the kind of document created
+     * @param assetUri the URI of the asset directory
+     * @param random the random generator of the text
+     * @return the HTML content
+     */
+    private static String createDocument(DocumentKind documentKind, String assetUri, Random random) {
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>")
+                .append(documentKind.name()).append("</title>\n<link rel=\"stylesheet\" href=\"")
+                .append(assetUri).append(STYLESHEET_FILENAME).append("\">\n</head>\n<body>\n");
+        switch (documentKind) {
+            case SMALL -> HtmlToPdfCorpusGenerator.appendSections(html, random, 1, 3);
+            case MEDIUM -> HtmlToPdfCorpusGenerator.appendSections(html, random, 8, 5);
+            case LARGE -> HtmlToPdfCorpusGenerator.appendSections(html, random, 30, 6);
+            case TABLE -> HtmlToPdfCorpusGenerator.appendTable(html, random, 200, 8);
+            case IMAGE -> HtmlToPdfCorpusGenerator.appendImages(html, assetUri, random);
+        }
+        html.append("</body>\n</html>\n");
+        return html.toString();
+    }
+
+    /**
+     * Appends sections made of a heading and paragraphs of text
+     * @param html the HTML content
+     * @param random the random generator of the text
+     * @param sectionCount the number of sections
+     * @param paragraphCount the number of paragraphs per section
+     */
+    private static void appendSections(StringBuilder html, Random random, int sectionCount, int paragraphCount) {
+        for(int section = 0; section < sectionCount; section++){
+            html.append("<h2>").append(section + 1).append(". ").append(HtmlToPdfCorpusGenerator.createText(random, 4))
+                    .append("</h2>\n");
+            for(int paragraph = 0; paragraph < paragraphCount; paragraph++){
+                html.append("<p>").append(HtmlToPdfCorpusGenerator.createText(random, 60 + random.nextInt(60)))
+                        .append("</p>\n");
+            }
+        }
+    }
+
+    /**
+     * Appends a table with a header row
+     * @param html the HTML content
+     * @param random the random generator of the cells
+     * @param rowCount the number of rows after the header row
+     * @param columnCount the number of columns
+     */
+    private static void appendTable(StringBuilder html, Random random, int rowCount, int columnCount) {
+        html.append("<h1>").append(HtmlToPdfCorpusGenerator.createText(random, 3)).append("</h1>\n<table>\n<thead><tr>");
+        for(int column = 0; column < columnCount; column++){
+            html.append("<th>").append(WORDS[random.nextInt(WORDS.length)]).append("</th>");
+        }
+        html.append("</tr></thead>\n<tbody>\n");
+        for(int row = 0; row < rowCount; row++){
+            html.append("<tr>");
+            for(int column = 0; column < columnCount; column++){
+                if(column % 2 == 0){
+                    html.append("<td>").append(WORDS[random.nextInt(WORDS.length)]).append("</td>");
+                }else{
+                    html.append("<td class=\"amount\">").append(random.nextInt(1_000_000) / 100.0).append("</td>");
+                }
+            }
+            html.append("</tr>\n");
+        }
+        html.append("</tbody>\n</table>\n");
+    }
+
+    /**
+     * Appends every generated image with a caption
+     * @param html the HTML content
+     * @param assetUri the URI of the asset directory
+     * @param random the random generator of the captions
+     */
+    private static void appendImages(StringBuilder html, String assetUri, Random random) {
+        html.append("<h1>").append(HtmlToPdfCorpusGenerator.createText(random, 3)).append("</h1>\n");
+        for(int i = 0; i < IMAGE_COUNT; i++){
+            html.append("<figure><img src=\"").append(assetUri).append(IMAGE_SUBDIRECTORY).append("/image_").append(i)
+                    .append(".png\"><figcaption>").append(HtmlToPdfCorpusGenerator.createText(random, 8))
+                    .append("</figcaption></figure>\n");
+        }
+    }
+
+    /**
+     * Creates a text of random words
+     * @param random the random generator of the words
+     * @param wordCount the number of words
+     * @return the text
+     */
+    private static String createText(Random random, int wordCount) {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < wordCount; i++){
+            if(i > 0){
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes the stylesheet shared by the documents
+     * @param stylesheetFile the stylesheet file
+     * @throws IOException if the stylesheet can't be written
+     */
+    private static void writeStylesheet(Path stylesheetFile) throws IOException {
+        Files.writeString(stylesheetFile, """
+                body { font-family: Helvetica, sans-serif; font-size: 11pt; margin: 0; }
+                h1, h2 { color: #1f3864; }
+                p { text-align: justify; line-height: 1.4; }
+                table { width: 100%; border-collapse: collapse; }
+                th, td { border: 1px solid #999999; padding: 2pt 4pt; font-size: 9pt; }
+                th { background-color: #d9e2f3; }
+                td.amount { text-align: right; }
+                figure { display: inline-block; width: 45%; margin: 4pt; }
+                img { width: 100%; }
+                """, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the PNG images referenced by the image documents
+     * @param imageDirectory the directory the images are written to
+     * @throws IOException if the images can't be written
+     */
+    private static void writeImages(Path imageDirectory) throws IOException {
+        Files.createDirectories(imageDirectory);
+        Random random = new Random(SEED);
+        for(int i = 0; i < IMAGE_COUNT; i++){
+            BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+            for(int y = 0; y < IMAGE_SIZE; y++){
+                for(int x = 0; x < IMAGE_SIZE; x++){
+                    image.setRGB(x, y, (x * 255 / IMAGE_SIZE) << 16 | (y * 255 / IMAGE_SIZE) << 8 | random.nextInt(256));
+                }
+            }
+            ImageIO.write(image, "png", imageDirectory.resolve("image_" + i + ".png").toFile());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xtensys.conversions.HtmlToPdfLogger;
+import org.xtensys.conversions.HtmlToPdfLoggerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a log entry as seen by the conversion threads, with one thread and with as many threads as a
+ * typical fixed pool. The throughput is bounded by the writer thread once its queue is full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class HtmlToPdfLoggerBenchmark {
+    private File logDirectory;
+    private File htmlFile;
+    private File pdfFile;
+    private HtmlToPdfLogger logger;
+
+    /**
+     * Creates the logger in a temporary directory
+     * @throws IOException if the directory can't be created
+     * @throws HtmlToPdfLoggerException if the logger can't be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, HtmlToPdfLoggerException {
+        logDirectory = Files.createTempDirectory("html_to_pdf_logger_benchmark").toFile();
+        htmlFile = new File(logDirectory, "in/reports/2025/quarterly_report.html");
+        pdfFile = new File(logDirectory, "out/pdf/reports/2025/quarterly_report.pdf");
+        logger = new HtmlToPdfLogger(logDirectory);
+    }
+
+    /**
+     * Closes the logger and deletes the temporary directory
+     * @throws IOException if the directory can't be deleted
+     * @throws HtmlToPdfLoggerException if the logger fails to close
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, HtmlToPdfLoggerException {
+        try {
+            logger.close();
+        } finally {
+            FileUtils.deleteDirectory(logDirectory);
+        }
+    }
+
+    /**
+     * Logs a successful conversion from a single thread
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    @Benchmark
+    public void logSuccess() throws HtmlToPdfLoggerException {
+        logger.logSuccess(htmlFile, pdfFile);
+    }
+
+    /**
+     * Logs a successful conversion from four threads at the same time
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    @Benchmark
+    @Threads(4)
+    public void logSuccessConcurrently() throws HtmlToPdfLoggerException {
+        logger.logSuccess(htmlFile, pdfFile);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.itextpdf.styledxmlparser.resolver.resource.IResourceRetriever;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Resource retriever serving the assets sent along with an HTML document (stylesheets, images, fonts) from memory.
+ * <p>
+ * An asset is found by its path relative to the base URI of the assets, usually the base URI of the document, so
+ * {@code <img src="images/logo.png">} is served by the asset named {@code images/logo.png}. Resources outside the base
+ * URI of the assets are handed to the shared retriever, unless the retriever is restricted to a list of allowed URI
+ * prefixes, in which case the other resources are not retrieved at all.
+ */
+public class HtmlToPdfAssetResourceRetriever implements IResourceRetriever {
+    /**
+     * Base URI of the documents whose resources are only looked up among their assets. The .invalid top level domain
+     * is reserved, so this URI never reaches the network.
+     */
+    public static final String ASSET_BASE_URI = "http://assets.html-to-pdf.invalid/";
+    private final Map<String, byte[]> assets;
+    private final String baseUri;
+    private final IResourceRetriever resourceRetriever;
+    private final List<String> allowedUris;
+
+    /**
+     * Constructor for the asset resource retriever
+     * @param assets the bytes of the assets by path relative to the base URI
+     * @param baseUri the base URI the paths of the assets are relative to
+     * @param resourceRetriever the retriever of the resources that are not assets
+     */
+    public HtmlToPdfAssetResourceRetriever(Map<String, byte[]> assets, String baseUri, IResourceRetriever resourceRetriever) {
+        this(assets, baseUri, resourceRetriever, null);
+    }
+
+    /**
+     * Constructor for an asset resource retriever that only retrieves the resources that are not assets when their URI
+     * starts with one of the allowed prefixes
+     * @param assets the bytes of the assets by path relative to the base URI
+     * @param baseUri the base URI the paths of the assets are relative to
+     * @param resourceRetriever the retriever of the resources that are not assets
+     * @param allowedUris the URI prefixes of the resources that are not assets and may be retrieved, or null to
+     *                    retrieve any resource
+     */
+    public HtmlToPdfAssetResourceRetriever(Map<String, byte[]> assets, String baseUri, IResourceRetriever resourceRetriever,
+                                           List<String> allowedUris) {
+        this.assets = assets;
+        this.baseUri = baseUri;
+        this.resourceRetriever = resourceRetriever;
+        this.allowedUris = allowedUris;
+    }
+
+    /**
+     * Checks whether a URI is under one of the allowed URI prefixes: same scheme, host and port, and a path starting
+     * with the path of the prefix once the dot segments of both are removed, so a relative path can't climb out of an
+     * allowed directory
+     * @param uri the URI to check
+     * @param allowedUris the allowed URI prefixes
+     * @return true if the URI is allowed
+     */
+    public static boolean isAllowed(String uri, List<String> allowedUris) {
+        URI normalizedUri;
+        try {
+            normalizedUri = new URI(uri).normalize();
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        if(normalizedUri.getScheme() == null || normalizedUri.getRawPath() == null){
+            return false;
+        }
+        for(String allowedUri : allowedUris){
+            try {
+                URI prefix = new URI(allowedUri).normalize();
+                if(normalizedUri.getScheme().equalsIgnoreCase(prefix.getScheme())
+                        && Objects.equals(normalizedUri.getHost(), prefix.getHost())
+                        && normalizedUri.getPort() == prefix.getPort()
+                        && prefix.getRawPath() != null && normalizedUri.getRawPath().startsWith(prefix.getRawPath())){
+                    return true;
+                }
+            } catch (URISyntaxException e) {
+                // an invalid prefix allows nothing
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the input stream of a resource, from the assets if it is one of them
+     * @param url the URL of the resource
+     * @return the input stream of the resource, or null if the resource can't be retrieved
+     * @throws IOException if the resource can't be read
+     */
+    @Override
+    public InputStream getInputStreamByUrl(URL url) throws IOException {
+        byte[] bytes = this.getByteArrayByUrl(url);
+        return bytes == null ? null : new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * Gets the bytes of a resource, from the assets if it is one of them
+     * @param url the URL of the resource
+     * @return the bytes of the resource, or null if the resource can't be retrieved
+     * @throws IOException if the resource can't be read
+     */
+    @Override
+    public byte[] getByteArrayByUrl(URL url) throws IOException {
+        String externalForm = url.toExternalForm();
+        if(externalForm.startsWith(baseUri)){
+            String path = URLDecoder.decode(externalForm.substring(baseUri.length()), StandardCharsets.UTF_8);
+            byte[] asset = assets.get(path);
+            if(asset != null || baseUri.equals(ASSET_BASE_URI)){
+                return asset;
+            }
+        }
+        if(allowedUris != null && !HtmlToPdfAssetResourceRetriever.isAllowed(externalForm, allowedUris)){
+            return null;
+        }
+        return resourceRetriever.getByteArrayByUrl(url);
+    }
+}
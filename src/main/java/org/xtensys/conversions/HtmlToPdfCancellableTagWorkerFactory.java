@@ -0,0 +1,51 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.itextpdf.html2pdf.attach.ITagWorker;
+import com.itextpdf.html2pdf.attach.ProcessorContext;
+import com.itextpdf.html2pdf.attach.impl.DefaultTagWorkerFactory;
+import com.itextpdf.styledxmlparser.node.IElementNode;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tag worker factory that makes the processing of the HTML elements cancellable: once the thread of the conversion is
+ * interrupted, the next element throws a {@link CancellationException}. This covers the conversion of the HTML
+ * elements to layout elements, before the PDF document is first used.
+ */
+public class HtmlToPdfCancellableTagWorkerFactory extends DefaultTagWorkerFactory {
+
+    /**
+     * Checks that the conversion has not been cancelled before an element is processed, then lets the default tag
+     * workers process it
+     * @param tag the HTML element
+     * @param context the processor context
+     * @return null, to use the default tag worker of the element
+     * @throws CancellationException if the thread of the conversion is interrupted
+     */
+    @Override
+    public ITagWorker getCustomTagWorker(IElementNode tag, ProcessorContext context) {
+        if(Thread.currentThread().isInterrupted()){
+            throw new CancellationException("The conversion was interrupted");
+        }
+        return null;
+    }
+}
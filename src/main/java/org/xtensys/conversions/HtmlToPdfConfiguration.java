@@ -20,17 +20,112 @@
 package org.xtensys.conversions;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.itextpdf.styledxmlparser.css.media.MediaType;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Class to store the configuration elements and read the configuration from a JSON file
  */
 public class HtmlToPdfConfiguration {
+    private static final HtmlToPdfExecutionMode DEFAULT_EXECUTION_MODE = HtmlToPdfExecutionMode.SEQUENTIAL;
+    private static final HtmlToPdfSchedulingPolicy DEFAULT_SCHEDULING_POLICY = HtmlToPdfSchedulingPolicy.DISCOVERY;
+    private static final String DEFAULT_MEDIA_TYPE = MediaType.PRINT;
+    private static final int DEFAULT_OUTPUT_CACHE_SIZE = 10000;
+    private static final long DEFAULT_WATCH_DEBOUNCE_MILLIS = 2000;
+    private static final int DEFAULT_RESOURCE_CACHE_SIZE_MB = 64;
+    private static final int DEFAULT_STYLE_SHEET_CACHE_SIZE = 16;
+    private static final int DEFAULT_PDF_ARCHIVE_MEMORY_MB = 64;
+    private static final int DEFAULT_SOURCE_ARCHIVE_ASSETS_MB = 256;
+    private static final int DEFAULT_MERGE_MEMORY_MB = 64;
+    private static final long DEFAULT_LOG_FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int DEFAULT_LOG_FLUSH_ENTRIES = 1000;
+    private static final int DEFAULT_PROGRESS_INTERVAL_SECONDS = 10;
+    private static final String DEFAULT_SERVER_HOST = "127.0.0.1";
+    private static final int DEFAULT_SERVER_PORT = 8080;
+    private static final int DEFAULT_SERVER_QUEUED_CONVERSIONS_PER_THREAD = 4;
+    private static final int DEFAULT_SERVER_MAX_REQUEST_MB = 32;
+    private static final long DEFAULT_SHARD_LEASE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final int DEFAULT_JOURNAL_SYNC_ENTRIES = 100;
+    private static final int DEFAULT_MEMORY_BUDGET_PERCENT = 0;
+    private static final int DEFAULT_MEMORY_RETAINED_PERCENT = 12;
+    private static final int DEFAULT_QUARANTINE_FAILURES = 0;
+    private static final HtmlToPdfWriterProfile DEFAULT_WRITER_PROFILE = HtmlToPdfWriterProfile.DEFAULT;
+    private static final long DEFAULT_JOURNAL_SYNC_INTERVAL_MILLIS = 1000;
+    private static final List<String> DEFAULT_EXTENSIONS = List.of("html", "htm", "xhtml");
+    private static final Set<String> SHARED_SETTINGS = Set.of("executionMode", "threadCount", "memoryBudgetPercent", "memoryRetainedPercent",
+            "conversionTimeoutSeconds", "fontDirectories", "systemFonts", "resourceCacheSizeMb", "styleSheetCacheSize",
+            "styleSheetPruning", "warmUpIterations");
+    private static final Set<String> TOP_LEVEL_SETTINGS = Set.of("sourceDirectoryPath", "targetDirectoryPath", "name", "jobs");
     private final String sourceDirectoryPath;
     private final String targetDirectoryPath;
+    private String name;
+    private List<JsonObject> jobs;
+    private HtmlToPdfExecutionMode executionMode;
+    private Integer threadCount;
+    private HtmlToPdfSchedulingPolicy schedulingPolicy;
+    private Integer memoryBudgetPercent;
+    private Integer memoryRetainedPercent;
+    private Integer conversionTimeoutSeconds;
+    private Integer quarantineFailures;
+    private List<String> fontDirectories;
+    private Boolean systemFonts;
+    private String mediaType;
+    private String baseUri;
+    private HtmlToPdfWriterProfile writerProfile;
+    private Integer compressionLevel;
+    private Boolean fullCompression;
+    private Boolean smartMode;
+    private Boolean immediateFlush;
+    private Boolean incremental;
+    private Boolean manifestHashing;
+    private Boolean outputCache;
+    private Integer outputCacheSize;
+    private Boolean watch;
+    private Long watchDebounceMillis;
+    private Integer maxDepth;
+    private Boolean followSymlinks;
+    private List<String> extensions;
+    private List<String> includePatterns;
+    private List<String> excludePatterns;
+    private Boolean contentSniffing;
+    private Boolean pdfArchive;
+    private Integer pdfArchiveMemoryMb;
+    private Integer sourceArchiveAssetsMb;
+    private Boolean merge;
+    private Integer mergeGroupSize;
+    private Integer mergeMemoryMb;
+    private Integer resourceCacheSizeMb;
+    private Integer styleSheetCacheSize;
+    private Boolean styleSheetPruning;
+    private Integer warmUpIterations;
+    private Long logFlushIntervalMillis;
+    private Integer logFlushEntries;
+    private Integer progressIntervalSeconds;
+    private Boolean server;
+    private String serverHost;
+    private Integer serverPort;
+    private Integer serverMaxConversions;
+    private Integer serverQueueSize;
+    private Integer serverMaxRequestMb;
+    private List<String> serverAllowedResourceUris;
+    private Integer shardIndex;
+    private Integer shardCount;
+    private String shardLeaseRunId;
+    private Long shardLeaseTimeoutMillis;
+    private Integer journalSyncEntries;
+    private Long journalSyncIntervalMillis;
 
     /**
      * Constructor for Configuration object
@@ -67,4 +162,669 @@ public class HtmlToPdfConfiguration {
     public String getTargetDirectoryPath() {
         return targetDirectoryPath;
     }
+
+    /**
+     * Gets the name of the job in the summaries
+     * @return the configured name, or the name of the source directory if none is configured
+     */
+    public String getName() {
+        return name != null ? name : new File(sourceDirectoryPath).getName();
+    }
+
+    /**
+     * Checks whether the configuration holds a list of jobs, run one after another by the same process
+     * @return true if jobs are configured
+     */
+    public boolean hasJobs() {
+        return jobs != null;
+    }
+
+    /**
+     * Gets the configurations of the jobs. Each job inherits the settings of this configuration, except its
+     * directories and name, and overrides them with its own. The settings of the resources shared by the jobs can only
+     * be set for all jobs.
+     * @return the job configurations, empty if no jobs are configured
+     * @throws HtmlToPdfConfigurationException if a job sets a setting of the shared resources
+     */
+    public List<HtmlToPdfConfiguration> getJobs() throws HtmlToPdfConfigurationException {
+        if(jobs == null){
+            return Collections.emptyList();
+        }
+        Gson gson = new Gson();
+        JsonObject defaults = gson.toJsonTree(this).getAsJsonObject();
+        for(String setting : TOP_LEVEL_SETTINGS){
+            defaults.remove(setting);
+        }
+        List<HtmlToPdfConfiguration> jobConfigurations = new ArrayList<>();
+        for(JsonObject job : jobs){
+            JsonObject merged = defaults.deepCopy();
+            for(Map.Entry<String, JsonElement> setting : job.entrySet()){
+                if(SHARED_SETTINGS.contains(setting.getKey()) || "jobs".equals(setting.getKey())){
+                    throw new HtmlToPdfConfigurationException("The " + setting.getKey()
+                            + " setting is shared by every job and can only be set outside the jobs");
+                }
+                merged.add(setting.getKey(), setting.getValue());
+            }
+            jobConfigurations.add(gson.fromJson(merged, HtmlToPdfConfiguration.class));
+        }
+        return jobConfigurations;
+    }
+
+    /**
+     * Gets the mode the conversions are executed in, defaulting to sequential execution
+     * @return the mode the conversions are executed in
+     */
+    public HtmlToPdfExecutionMode getExecutionMode() {
+        return executionMode == null ? DEFAULT_EXECUTION_MODE : executionMode;
+    }
+
+    /**
+     * Gets the maximum number of conversions executed at the same time, defaulting to the number of available processors
+     * @return the maximum number of concurrent conversions
+     */
+    public int getThreadCount() {
+        return threadCount == null ? Runtime.getRuntime().availableProcessors() : threadCount;
+    }
+
+    /**
+     * Gets the order in which the files are handed to the workers, defaulting to the order they are found in
+     * @return the scheduling policy
+     */
+    public HtmlToPdfSchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy == null ? DEFAULT_SCHEDULING_POLICY : schedulingPolicy;
+    }
+
+    /**
+     * Gets the percentage of the maximum heap the conversions in flight may reserve, defaulting to 0
+     * @return the memory budget percentage, 0 if the conversions are not limited by their memory use
+     */
+    public int getMemoryBudgetPercent() {
+        return memoryBudgetPercent == null ? DEFAULT_MEMORY_BUDGET_PERCENT : memoryBudgetPercent;
+    }
+
+    /**
+     * Gets the percentage of the bytes allocated by a conversion it is estimated to hold at once, defaulting to 12
+     * @return the retained memory percentage
+     */
+    public int getMemoryRetainedPercent() {
+        return memoryRetainedPercent == null ? DEFAULT_MEMORY_RETAINED_PERCENT : memoryRetainedPercent;
+    }
+
+    /**
+     * Gets the time after which a conversion is cancelled, defaulting to no time limit
+     * @return the time limit of each conversion in seconds, 0 if the conversions have no time limit
+     */
+    public int getConversionTimeoutSeconds() {
+        return conversionTimeoutSeconds == null ? 0 : conversionTimeoutSeconds;
+    }
+
+    /**
+     * Gets the number of failures in a row after which a file is quarantined and no longer converted until it changes,
+     * defaulting to 0. A file whose conversion times out is quarantined straight away when the quarantine is enabled.
+     * @return the number of failures before a file is quarantined, 0 if files are never quarantined
+     */
+    public int getQuarantineFailures() {
+        return quarantineFailures == null ? DEFAULT_QUARANTINE_FAILURES : quarantineFailures;
+    }
+
+    /**
+     * Gets the directories additional fonts are loaded from
+     * @return the font directories, empty if none are configured
+     */
+    public List<String> getFontDirectories() {
+        return fontDirectories == null ? Collections.emptyList() : fontDirectories;
+    }
+
+    /**
+     * Gets whether the fonts installed on the system are made available to the conversions, defaulting to false
+     * @return true if the system fonts are used
+     */
+    public boolean isSystemFonts() {
+        return systemFonts != null && systemFonts;
+    }
+
+    /**
+     * Gets the CSS media type the HTML files are rendered for, defaulting to print
+     * @return the CSS media type
+     */
+    public String getMediaType() {
+        return mediaType == null ? DEFAULT_MEDIA_TYPE : mediaType;
+    }
+
+    /**
+     * Gets the base URI relative resources are resolved against
+     * @return the base URI, or null to resolve resources against the directory of each HTML file
+     */
+    public String getBaseUri() {
+        return baseUri;
+    }
+
+    /**
+     * Gets the preset of the PDF writer settings, defaulting to the iText defaults
+     * @return the writer profile
+     */
+    public HtmlToPdfWriterProfile getWriterProfile() {
+        return writerProfile == null ? DEFAULT_WRITER_PROFILE : writerProfile;
+    }
+
+    /**
+     * Gets the compression level of the PDF streams, defaulting to the level of the writer profile
+     * @return the compression level, from 0 to 9 or -1 for the default level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel == null ? this.getWriterProfile().getCompressionLevel() : compressionLevel;
+    }
+
+    /**
+     * Tests if the PDF objects are packed into compressed object streams, defaulting to the writer profile
+     * @return true if full compression is used
+     */
+    public boolean isFullCompression() {
+        return fullCompression == null ? this.getWriterProfile().isFullCompression() : fullCompression;
+    }
+
+    /**
+     * Tests if identical resources such as fonts and images are written once per PDF file, defaulting to the writer
+     * profile
+     * @return true if smart mode is used
+     */
+    public boolean isSmartMode() {
+        return smartMode == null ? this.getWriterProfile().isSmartMode() : smartMode;
+    }
+
+    /**
+     * Tests if the pages are written as soon as they are laid out rather than when the document is complete, defaulting
+     * to true
+     * @return true if the pages are flushed immediately
+     */
+    public boolean isImmediateFlush() {
+        return immediateFlush == null || immediateFlush;
+    }
+
+    /**
+     * Gets whether the source files whose PDF file is already up to date are skipped, defaulting to false
+     * @return true if the conversion is incremental
+     */
+    public boolean isIncremental() {
+        return incremental != null && incremental;
+    }
+
+    /**
+     * Gets whether the content hash of the source files is recorded in the manifest, so a file that was touched but
+     * not changed is still skipped. Defaults to false.
+     * @return true if the content hash of the source files is recorded
+     */
+    public boolean isManifestHashing() {
+        return manifestHashing != null && manifestHashing;
+    }
+
+    /**
+     * Gets whether the PDF files already rendered for identical HTML content are reused, defaulting to false
+     * @return true if the output cache is used
+     */
+    public boolean isOutputCache() {
+        return outputCache != null && outputCache;
+    }
+
+    /**
+     * Gets the maximum number of entries kept in the output cache index, defaulting to 10000
+     * @return the maximum number of entries in the output cache index
+     */
+    public int getOutputCacheSize() {
+        return outputCacheSize == null ? DEFAULT_OUTPUT_CACHE_SIZE : outputCacheSize;
+    }
+
+    /**
+     * Gets whether the converter keeps running and converts the HTML files as they land in the source directory,
+     * defaulting to false
+     * @return true if the source directory is watched
+     */
+    public boolean isWatch() {
+        return watch != null && watch;
+    }
+
+    /**
+     * Gets the time a watched file must remain unchanged before it is converted, defaulting to 2 seconds
+     * @return the debounce delay in milliseconds
+     */
+    public long getWatchDebounceMillis() {
+        return watchDebounceMillis == null ? DEFAULT_WATCH_DEBOUNCE_MILLIS : watchDebounceMillis;
+    }
+
+    /**
+     * Gets the maximum number of directory levels walked below the source directory, defaulting to no limit. A
+     * maximum depth of 1 only converts the files located directly in the source directory.
+     * @return the maximum depth of the source directory walk
+     */
+    public int getMaxDepth() {
+        return maxDepth == null ? Integer.MAX_VALUE : maxDepth;
+    }
+
+    /**
+     * Gets whether symbolic links in the source directory are followed, defaulting to true. Links are skipped if they
+     * are not followed.
+     * @return true if symbolic links are followed
+     */
+    public boolean isFollowSymlinks() {
+        return followSymlinks == null || followSymlinks;
+    }
+
+    /**
+     * Gets the extensions of the files converted, ignoring case, defaulting to html, htm and xhtml. An empty list
+     * converts files of any extension.
+     * @return the allowed extensions, without the leading dot
+     */
+    public List<String> getExtensions() {
+        return extensions == null ? DEFAULT_EXTENSIONS : extensions;
+    }
+
+    /**
+     * Gets the glob patterns a file must match, one of them at least, to be converted. The patterns are matched against
+     * the path relative to the source directory.
+     * @return the include patterns, empty if every file is included
+     */
+    public List<String> getIncludePatterns() {
+        return includePatterns == null ? Collections.emptyList() : includePatterns;
+    }
+
+    /**
+     * Gets the glob patterns of the files and directories that are not converted. The patterns are matched against the
+     * path relative to the source directory.
+     * @return the exclude patterns, empty if no file is excluded
+     */
+    public List<String> getExcludePatterns() {
+        return excludePatterns == null ? Collections.emptyList() : excludePatterns;
+    }
+
+    /**
+     * Gets whether the start of each file is read to check that it holds markup before it is converted, defaulting
+     * to false
+     * @return true if the content of the files is sniffed
+     */
+    public boolean isContentSniffing() {
+        return contentSniffing != null && contentSniffing;
+    }
+
+    /**
+     * Gets whether the PDF files are written to a single zip archive in the target directory instead of the pdf
+     * directory, defaulting to false
+     * @return true if the PDF files are written to a zip archive
+     */
+    public boolean isPdfArchive() {
+        return pdfArchive != null && pdfArchive;
+    }
+
+    /**
+     * Gets the memory the PDF documents waiting to be appended to the PDF archive may hold, beyond which they are
+     * written to temporary files, defaulting to 64
+     * @return the memory of the pending PDF documents in megabytes
+     */
+    public int getPdfArchiveMemoryMb() {
+        return pdfArchiveMemoryMb == null ? DEFAULT_PDF_ARCHIVE_MEMORY_MB : pdfArchiveMemoryMb;
+    }
+
+    /**
+     * Gets the maximum total size of the entries of a source archive that are not converted, which are kept in memory,
+     * defaulting to 256
+     * @return the maximum size of the source archive assets in megabytes
+     */
+    public int getSourceArchiveAssetsMb() {
+        return sourceArchiveAssetsMb == null ? DEFAULT_SOURCE_ARCHIVE_ASSETS_MB : sourceArchiveAssetsMb;
+    }
+
+    /**
+     * Gets whether the HTML files of each directory are rendered into merged PDF files, one section per HTML file,
+     * instead of a PDF file each, defaulting to false
+     * @return true if the HTML files are rendered into merged PDF files
+     */
+    public boolean isMerge() {
+        return merge != null && merge;
+    }
+
+    /**
+     * Gets the maximum number of HTML files rendered into each merged PDF file, defaulting to 0
+     * @return the maximum number of HTML files per merged PDF file, or 0 to render all the HTML files of a directory
+     * into a single PDF file
+     */
+    public int getMergeGroupSize() {
+        return mergeGroupSize != null ? mergeGroupSize : 0;
+    }
+
+    /**
+     * Gets the maximum size of the HTML files of a source archive held in memory by a merged PDF file until it is
+     * rendered, beyond which the merged PDF file is split, defaulting to 64
+     * @return the maximum size of the HTML files held by a merged PDF file in megabytes
+     */
+    public int getMergeMemoryMb() {
+        return mergeMemoryMb == null ? DEFAULT_MERGE_MEMORY_MB : mergeMemoryMb;
+    }
+
+    /**
+     * Gets the maximum size of the stylesheets, images and fonts kept in memory to be shared by the conversions,
+     * defaulting to 64 MB. A size of 0 disables the resource cache.
+     * @return the maximum size of the resource cache in megabytes
+     */
+    public int getResourceCacheSizeMb() {
+        return resourceCacheSizeMb == null ? DEFAULT_RESOURCE_CACHE_SIZE_MB : resourceCacheSizeMb;
+    }
+
+    /**
+     * Gets the maximum number of parsed stylesheets shared between conversions, defaulting to 16
+     * @return the stylesheet cache size, 0 if the stylesheet cache is disabled
+     */
+    public int getStyleSheetCacheSize() {
+        return styleSheetCacheSize == null ? DEFAULT_STYLE_SHEET_CACHE_SIZE : styleSheetCacheSize;
+    }
+
+    /**
+     * Gets whether the cached stylesheets are reduced for each document to the rule sets that can match its elements,
+     * defaulting to false
+     * @return true if the cached stylesheets are reduced for each document
+     */
+    public boolean isStyleSheetPruning() {
+        return styleSheetPruning != null && styleSheetPruning;
+    }
+
+    /**
+     * Gets the number of times the built-in sample document is rendered before the first HTML file, defaulting to 0
+     * @return the number of warm-up renders, 0 if there is no warm-up
+     */
+    public int getWarmUpIterations() {
+        return warmUpIterations == null ? 0 : warmUpIterations;
+    }
+
+    /**
+     * Gets the maximum time a log entry waits before the log file is flushed, defaulting to 1 second
+     * @return the log flush interval in milliseconds
+     */
+    public long getLogFlushIntervalMillis() {
+        return logFlushIntervalMillis == null ? DEFAULT_LOG_FLUSH_INTERVAL_MILLIS : logFlushIntervalMillis;
+    }
+
+    /**
+     * Gets the maximum number of log entries written before the log file is flushed, defaulting to 1000
+     * @return the number of log entries between flushes
+     */
+    public int getLogFlushEntries() {
+        return logFlushEntries == null ? DEFAULT_LOG_FLUSH_ENTRIES : logFlushEntries;
+    }
+
+    /**
+     * Gets the time between two progress lines printed while files are converted, defaulting to 10 seconds
+     * @return the progress interval in seconds, 0 if no progress is printed
+     */
+    public int getProgressIntervalSeconds() {
+        return progressIntervalSeconds == null ? DEFAULT_PROGRESS_INTERVAL_SECONDS : progressIntervalSeconds;
+    }
+
+    /**
+     * Tests if the converter runs as a local HTTP server instead of converting the source directory
+     * @return true if the converter runs as a server
+     */
+    public boolean isServer() {
+        return server != null && server;
+    }
+
+    /**
+     * Gets the address the server listens on, defaulting to the loopback address
+     * @return the host name or IP address of the server
+     */
+    public String getServerHost() {
+        return serverHost == null ? DEFAULT_SERVER_HOST : serverHost;
+    }
+
+    /**
+     * Gets the port the server listens on, defaulting to 8080. A port of 0 picks a free port.
+     * @return the port of the server
+     */
+    public int getServerPort() {
+        return serverPort == null ? DEFAULT_SERVER_PORT : serverPort;
+    }
+
+    /**
+     * Gets the maximum number of conversions the server executes at the same time, defaulting to the thread count
+     * @return the maximum number of conversions in flight
+     */
+    public int getServerMaxConversions() {
+        return serverMaxConversions == null ? this.getThreadCount() : serverMaxConversions;
+    }
+
+    /**
+     * Gets the maximum number of requests waiting for a conversion slot before the server answers 503, defaulting to
+     * four times the thread count
+     * @return the maximum number of queued requests
+     */
+    public int getServerQueueSize() {
+        return serverQueueSize == null ? this.getThreadCount() * DEFAULT_SERVER_QUEUED_CONVERSIONS_PER_THREAD : serverQueueSize;
+    }
+
+    /**
+     * Gets the maximum size of a request body accepted by the server, defaulting to 32 MB
+     * @return the maximum size of a request in megabytes
+     */
+    public int getServerMaxRequestMb() {
+        return serverMaxRequestMb == null ? DEFAULT_SERVER_MAX_REQUEST_MB : serverMaxRequestMb;
+    }
+
+    /**
+     * Gets the URI prefixes of the resources the documents posted to the server may reference besides their assets,
+     * defaulting to none
+     * @return the allowed resource URI prefixes
+     */
+    public List<String> getServerAllowedResourceUris() {
+        return serverAllowedResourceUris == null ? Collections.emptyList() : serverAllowedResourceUris;
+    }
+
+    /**
+     * Gets the index of the shard of the source files converted by this process, defaulting to 0
+     * @return the shard index, between 0 and the shard count excluded
+     */
+    public int getShardIndex() {
+        return shardIndex == null ? 0 : shardIndex;
+    }
+
+    /**
+     * Gets the number of shards the source files are split into, defaulting to 1
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shardCount == null ? 1 : shardCount;
+    }
+
+    /**
+     * Gets the identifier of the batch whose files are claimed with lease files, so idle shards can take the files of
+     * slow shards. Each batch must use a new identifier.
+     * @return the identifier of the batch, or null if lease files are not used
+     */
+    public String getShardLeaseRunId() {
+        return shardLeaseRunId;
+    }
+
+    /**
+     * Gets the time after which the lease of a file that is still not converted is considered abandoned and can be
+     * taken by another shard, defaulting to 10 minutes
+     * @return the lease timeout in milliseconds
+     */
+    public long getShardLeaseTimeoutMillis() {
+        return shardLeaseTimeoutMillis == null ? DEFAULT_SHARD_LEASE_TIMEOUT_MILLIS : shardLeaseTimeoutMillis;
+    }
+
+    /**
+     * Gets the maximum number of finished files journaled before the journal is fsynced, defaulting to 100
+     * @return the number of journal entries between fsyncs
+     */
+    public int getJournalSyncEntries() {
+        return journalSyncEntries == null ? DEFAULT_JOURNAL_SYNC_ENTRIES : journalSyncEntries;
+    }
+
+    /**
+     * Gets the maximum time a finished file waits before the journal is fsynced, defaulting to 1 second
+     * @return the journal fsync interval in milliseconds
+     */
+    public long getJournalSyncIntervalMillis() {
+        return journalSyncIntervalMillis == null ? DEFAULT_JOURNAL_SYNC_INTERVAL_MILLIS : journalSyncIntervalMillis;
+    }
+
+    /**
+     * Validates the optional configuration elements
+     * @throws HtmlToPdfConfigurationException if an optional configuration element is invalid
+     */
+    public void validate() throws HtmlToPdfConfigurationException {
+        if(jobs != null){
+            this.validateJobs();
+        }
+        if(threadCount != null && threadCount < 1){
+            throw new HtmlToPdfConfigurationException("The thread count must be at least 1: " + threadCount);
+        }
+        if(memoryBudgetPercent != null && (memoryBudgetPercent < 0 || memoryBudgetPercent > 100)){
+            throw new HtmlToPdfConfigurationException("The memory budget percentage must be between 0 and 100: " + memoryBudgetPercent);
+        }
+        if(memoryRetainedPercent != null && (memoryRetainedPercent < 1 || memoryRetainedPercent > 100)){
+            throw new HtmlToPdfConfigurationException("The retained memory percentage must be between 1 and 100: " + memoryRetainedPercent);
+        }
+        if(conversionTimeoutSeconds != null && conversionTimeoutSeconds < 0){
+            throw new HtmlToPdfConfigurationException("The conversion timeout can't be negative: " + conversionTimeoutSeconds);
+        }
+        if(quarantineFailures != null && quarantineFailures < 0){
+            throw new HtmlToPdfConfigurationException("The quarantine failure count can't be negative: " + quarantineFailures);
+        }
+        if((this.isPdfArchive() || HtmlToPdfSourceArchive.isArchive(sourceDirectoryPath))
+                && (this.isIncremental() || this.isOutputCache() || this.isWatch())){
+            throw new HtmlToPdfConfigurationException("The incremental mode, the output cache and the watch mode can't be used with a source or PDF archive");
+        }
+        if(mergeGroupSize != null && mergeGroupSize < 0){
+            throw new HtmlToPdfConfigurationException("The merge group size can't be negative: " + mergeGroupSize);
+        }
+        if(mergeMemoryMb != null && mergeMemoryMb < 1){
+            throw new HtmlToPdfConfigurationException("The merge memory must be at least 1 MB: " + mergeMemoryMb);
+        }
+        if(this.isMerge() && (this.isIncremental() || this.isOutputCache() || this.isWatch() || this.isPdfArchive()
+                || this.getShardCount() > 1)){
+            throw new HtmlToPdfConfigurationException("The incremental mode, the output cache, the watch mode, the PDF archive and sharding can't be used with merged PDF files");
+        }
+        for(String pattern : this.getIncludePatterns()){
+            validatePattern(pattern);
+        }
+        for(String pattern : this.getExcludePatterns()){
+            validatePattern(pattern);
+        }
+        if(compressionLevel != null && (compressionLevel < -1 || compressionLevel > 9)){
+            throw new HtmlToPdfConfigurationException("The compression level must be between -1 and 9: " + compressionLevel);
+        }
+        if(outputCacheSize != null && outputCacheSize < 1){
+            throw new HtmlToPdfConfigurationException("The output cache size must be at least 1: " + outputCacheSize);
+        }
+        if(watchDebounceMillis != null && watchDebounceMillis < 0){
+            throw new HtmlToPdfConfigurationException("The watch debounce delay can't be negative: " + watchDebounceMillis);
+        }
+        if(maxDepth != null && maxDepth < 1){
+            throw new HtmlToPdfConfigurationException("The maximum depth must be at least 1: " + maxDepth);
+        }
+        if(pdfArchiveMemoryMb != null && pdfArchiveMemoryMb < 0){
+            throw new HtmlToPdfConfigurationException("The PDF archive memory can't be negative: " + pdfArchiveMemoryMb);
+        }
+        if(sourceArchiveAssetsMb != null && sourceArchiveAssetsMb < 0){
+            throw new HtmlToPdfConfigurationException("The source archive assets size can't be negative: " + sourceArchiveAssetsMb);
+        }
+        if(resourceCacheSizeMb != null && resourceCacheSizeMb < 0){
+            throw new HtmlToPdfConfigurationException("The resource cache size can't be negative: " + resourceCacheSizeMb);
+        }
+        if(styleSheetCacheSize != null && styleSheetCacheSize < 0){
+            throw new HtmlToPdfConfigurationException("The stylesheet cache size can't be negative: " + styleSheetCacheSize);
+        }
+        if(warmUpIterations != null && warmUpIterations < 0){
+            throw new HtmlToPdfConfigurationException("The warm-up iteration count can't be negative: " + warmUpIterations);
+        }
+        if(logFlushIntervalMillis != null && logFlushIntervalMillis < 1){
+            throw new HtmlToPdfConfigurationException("The log flush interval must be at least 1 millisecond: " + logFlushIntervalMillis);
+        }
+        if(logFlushEntries != null && logFlushEntries < 1){
+            throw new HtmlToPdfConfigurationException("The log flush entry count must be at least 1: " + logFlushEntries);
+        }
+        if(progressIntervalSeconds != null && progressIntervalSeconds < 0){
+            throw new HtmlToPdfConfigurationException("The progress interval can't be negative: " + progressIntervalSeconds);
+        }
+        if(serverPort != null && (serverPort < 0 || serverPort > 65535)){
+            throw new HtmlToPdfConfigurationException("The server port must be between 0 and 65535: " + serverPort);
+        }
+        if(serverMaxConversions != null && serverMaxConversions < 1){
+            throw new HtmlToPdfConfigurationException("The server maximum conversions must be at least 1: " + serverMaxConversions);
+        }
+        if(serverQueueSize != null && serverQueueSize < 0){
+            throw new HtmlToPdfConfigurationException("The server queue size can't be negative: " + serverQueueSize);
+        }
+        if(serverMaxRequestMb != null && serverMaxRequestMb < 1){
+            throw new HtmlToPdfConfigurationException("The server maximum request size must be at least 1 MB: " + serverMaxRequestMb);
+        }
+        for(String allowedResourceUri : this.getServerAllowedResourceUris()){
+            try {
+                if(!URI.create(allowedResourceUri).isAbsolute()){
+                    throw new HtmlToPdfConfigurationException("The server allowed resource URI must be absolute: " + allowedResourceUri);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new HtmlToPdfConfigurationException("The server allowed resource URI is not valid: " + allowedResourceUri);
+            }
+        }
+        if(shardCount != null && shardCount < 1){
+            throw new HtmlToPdfConfigurationException("The shard count must be at least 1: " + shardCount);
+        }
+        if(this.getShardIndex() < 0 || this.getShardIndex() >= this.getShardCount()){
+            throw new HtmlToPdfConfigurationException("The shard index must be between 0 and " + (this.getShardCount() - 1)
+                    + ": " + this.getShardIndex());
+        }
+        if(shardLeaseRunId != null && !shardLeaseRunId.matches("[A-Za-z0-9._-]+")){
+            throw new HtmlToPdfConfigurationException("The shard lease run id may only contain letters, digits, '.', '_' and '-': "
+                    + shardLeaseRunId);
+        }
+        if(shardLeaseTimeoutMillis != null && shardLeaseTimeoutMillis < 1){
+            throw new HtmlToPdfConfigurationException("The shard lease timeout must be at least 1 millisecond: " + shardLeaseTimeoutMillis);
+        }
+        if(journalSyncEntries != null && journalSyncEntries < 1){
+            throw new HtmlToPdfConfigurationException("The journal sync entry count must be at least 1: " + journalSyncEntries);
+        }
+        if(journalSyncIntervalMillis != null && journalSyncIntervalMillis < 1){
+            throw new HtmlToPdfConfigurationException("The journal sync interval must be at least 1 millisecond: " + journalSyncIntervalMillis);
+        }
+        for(String fontDirectory : this.getFontDirectories()){
+            if(!new File(fontDirectory).isDirectory()){
+                throw new HtmlToPdfConfigurationException("The font directory is not a valid directory: " + fontDirectory);
+            }
+        }
+    }
+
+    /**
+     * Validates the jobs, which can't be combined with the server or the watch mode
+     * @throws HtmlToPdfConfigurationException if there are no jobs, or a job is invalid
+     */
+    private void validateJobs() throws HtmlToPdfConfigurationException {
+        if(jobs.isEmpty()){
+            throw new HtmlToPdfConfigurationException("The list of jobs is empty");
+        }
+        for(HtmlToPdfConfiguration job : this.getJobs()){
+            if(job.isServer() || job.isWatch()){
+                throw new HtmlToPdfConfigurationException("The server and the watch mode can't be used with jobs");
+            }
+            if(job.getSourceDirectoryPath() == null || job.getTargetDirectoryPath() == null){
+                throw new HtmlToPdfConfigurationException("Every job needs a source and a target directory");
+            }
+            try {
+                job.validate();
+            } catch (HtmlToPdfConfigurationException e) {
+                throw new HtmlToPdfConfigurationException("Invalid job " + job.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Validates a glob pattern of the file filter
+     * @param pattern the glob pattern
+     * @throws HtmlToPdfConfigurationException if the pattern is not a valid glob
+     */
+    private static void validatePattern(String pattern) throws HtmlToPdfConfigurationException {
+        try {
+            HtmlToPdfFileFilter.createMatcher(pattern);
+        } catch (PatternSyntaxException e) {
+            throw new HtmlToPdfConfigurationException("The file pattern is not a valid glob: " + pattern + " (" + e.getDescription() + ")");
+        }
+    }
 }
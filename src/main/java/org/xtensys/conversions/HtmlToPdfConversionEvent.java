@@ -0,0 +1,56 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the conversion of a source file, from the moment a worker picks it up until its outcome is
+ * known. The parse, layout and write events of the conversion are recorded within it, on the same thread.
+ */
+@Name("org.xtensys.conversions.Conversion")
+@Label("HTML to PDF Conversion")
+@Category("HTML to PDF")
+@Description("Conversion of a source file by a worker")
+@StackTrace(false)
+public class HtmlToPdfConversionEvent extends Event {
+    @Label("Path")
+    @Description("Path of the source file relative to the source directory or archive")
+    String path;
+
+    @Label("Status")
+    String status;
+
+    @Label("Input Size")
+    @DataAmount
+    long inputBytes;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputBytes;
+
+    @Label("Pages")
+    int pageCount;
+}
@@ -0,0 +1,160 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+/**
+ * The outcome and measurements of the conversion of a single HTML file
+ */
+public class HtmlToPdfConversionResult {
+    private final HtmlToPdfConversionStatus status;
+    private final long wallTimeNanos;
+    private final long inputBytes;
+    private final long outputBytes;
+    private final int pageCount;
+    private final String reason;
+    private final boolean timedOut;
+    private final HtmlToPdfPdfArchive.PendingPdf pdfContent;
+
+    /**
+     * Constructor for the conversion result
+     * @param status the outcome of the conversion
+     * @param wallTimeNanos the time the conversion took in nanoseconds
+     * @param inputBytes the size of the HTML file
+     * @param outputBytes the size of the PDF file, 0 if no PDF file was created
+     * @param pageCount the number of pages of the PDF file, 0 if the PDF file was not rendered by this conversion
+     */
+    public HtmlToPdfConversionResult(HtmlToPdfConversionStatus status, long wallTimeNanos, long inputBytes, long outputBytes, int pageCount) {
+        this(status, wallTimeNanos, inputBytes, outputBytes, pageCount, null, false);
+    }
+
+    /**
+     * Constructor for the result of a conversion that failed or was not attempted
+     * @param status the outcome of the conversion
+     * @param wallTimeNanos the time the conversion took in nanoseconds
+     * @param inputBytes the size of the HTML file
+     * @param outputBytes the size of the PDF file, 0 if no PDF file was created
+     * @param pageCount the number of pages of the PDF file, 0 if the PDF file was not rendered by this conversion
+     * @param reason the reason the conversion failed or was not attempted, or null if there is none
+     * @param timedOut true if the conversion was cancelled for running past its time limit
+     */
+    public HtmlToPdfConversionResult(HtmlToPdfConversionStatus status, long wallTimeNanos, long inputBytes, long outputBytes,
+                                     int pageCount, String reason, boolean timedOut) {
+        this.status = status;
+        this.wallTimeNanos = wallTimeNanos;
+        this.inputBytes = inputBytes;
+        this.outputBytes = outputBytes;
+        this.pageCount = pageCount;
+        this.reason = reason;
+        this.timedOut = timedOut;
+        this.pdfContent = null;
+    }
+
+    /**
+     * Constructor for the result of a successful conversion whose PDF document is held until it is written to the PDF
+     * archive
+     * @param wallTimeNanos the time the conversion took in nanoseconds
+     * @param inputBytes the size of the HTML file
+     * @param pageCount the number of pages of the PDF document
+     * @param pdfContent the rendered PDF document
+     */
+    public HtmlToPdfConversionResult(long wallTimeNanos, long inputBytes, int pageCount, HtmlToPdfPdfArchive.PendingPdf pdfContent) {
+        this.status = HtmlToPdfConversionStatus.SUCCESS;
+        this.wallTimeNanos = wallTimeNanos;
+        this.inputBytes = inputBytes;
+        this.outputBytes = pdfContent.size();
+        this.pageCount = pageCount;
+        this.reason = null;
+        this.timedOut = false;
+        this.pdfContent = pdfContent;
+    }
+
+    /**
+     * Creates the result of a conversion that failed without being measured
+     * @param reason the reason the conversion failed
+     * @return a failed conversion result
+     */
+    public static HtmlToPdfConversionResult failure(String reason) {
+        return new HtmlToPdfConversionResult(HtmlToPdfConversionStatus.FAILURE, 0, 0, 0, 0, reason, false);
+    }
+
+    /**
+     * Gets the outcome of the conversion
+     * @return the outcome of the conversion
+     */
+    public HtmlToPdfConversionStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the time the conversion took
+     * @return the wall time of the conversion in nanoseconds
+     */
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * Gets the size of the HTML file
+     * @return the size of the HTML file in bytes
+     */
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    /**
+     * Gets the size of the PDF file
+     * @return the size of the PDF file in bytes
+     */
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    /**
+     * Gets the number of pages of the PDF file
+     * @return the number of pages of the PDF file
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Gets the reason the conversion failed or was not attempted
+     * @return the reason, or null if there is none
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Tests if the conversion was cancelled for running past its time limit
+     * @return true if the conversion timed out
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Gets the rendered PDF document when it is written to the PDF archive
+     * @return the rendered PDF document, or null if it was written to a file or not created
+     */
+    public HtmlToPdfPdfArchive.PendingPdf getPdfContent() {
+        return pdfContent;
+    }
+}
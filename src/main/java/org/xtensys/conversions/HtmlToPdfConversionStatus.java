@@ -0,0 +1,46 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+/**
+ * The outcome of the conversion of a single HTML file
+ */
+public enum HtmlToPdfConversionStatus {
+    /**
+     * The HTML file was converted to PDF
+     */
+    SUCCESS,
+    /**
+     * The HTML file could not be converted to PDF
+     */
+    FAILURE,
+    /**
+     * The HTML file was not converted because its PDF file is already up to date
+     */
+    SKIPPED,
+    /**
+     * The PDF file was created from a PDF file already rendered for identical HTML content
+     */
+    CACHED,
+    /**
+     * The HTML file was not converted because it is quarantined after failing to convert
+     */
+    QUARANTINED
+}
@@ -0,0 +1,97 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.io.File;
+
+/**
+ * A single HTML file discovered in the source directory along with the PDF file it is converted to. An entry of a
+ * source archive is held in memory, its source file only naming the entry inside the archive.
+ */
+public class HtmlToPdfConversionTask {
+    private final File sourceFile;
+    private final File pdfFile;
+    private final String relativePath;
+    private final byte[] content;
+
+    /**
+     * Constructor for the conversion task
+     * @param sourceFile the source HTML file
+     * @param pdfFile the target PDF file
+     * @param relativePath the path of the source file relative to the source directory
+     */
+    public HtmlToPdfConversionTask(File sourceFile, File pdfFile, String relativePath) {
+        this(sourceFile, pdfFile, relativePath, null);
+    }
+
+    /**
+     * Constructor for the conversion task of an HTML document held in memory
+     * @param sourceFile the source HTML file, or the path of the entry inside its archive
+     * @param pdfFile the target PDF file, or the path of the entry inside the PDF archive
+     * @param relativePath the path of the source file relative to the source directory or archive
+     * @param content the content of the HTML document, or null if it is read from the source file
+     */
+    public HtmlToPdfConversionTask(File sourceFile, File pdfFile, String relativePath, byte[] content) {
+        this.sourceFile = sourceFile;
+        this.pdfFile = pdfFile;
+        this.relativePath = relativePath;
+        this.content = content;
+    }
+
+    /**
+     * Gets the source HTML file
+     * @return the source HTML file
+     */
+    public File getSourceFile() {
+        return sourceFile;
+    }
+
+    /**
+     * Gets the target PDF file
+     * @return the target PDF file
+     */
+    public File getPdfFile() {
+        return pdfFile;
+    }
+
+    /**
+     * Gets the path of the source file relative to the source directory
+     * @return the relative path of the source file
+     */
+    public String getRelativePath() {
+        return relativePath;
+    }
+
+    /**
+     * Gets the content of the HTML document when it is held in memory
+     * @return the content of the HTML document, or null if it is read from the source file
+     */
+    public byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * Gets the size of the HTML document
+     * @return the size of the HTML document in bytes
+     */
+    public long getSourceLength() {
+        return content != null ? content.length : sourceFile.length();
+    }
+}
@@ -19,123 +19,1013 @@
 
 package org.xtensys.conversions;
 
-import com.itextpdf.html2pdf.HtmlConverter;
-import org.apache.commons.io.FilenameUtils;
+import com.google.gson.JsonObject;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.Objects;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * HTML to PDF converter
  */
-public class HtmlToPdfConverter {
-    private static final String PDF_EXTENSION = ".pdf";
+public class HtmlToPdfConverter implements AutoCloseable {
+    private static final int PENDING_RESULTS_PER_THREAD = 64;
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    private final HtmlToPdfConfiguration configuration;
     private final HtmlToPdfFileManager fileManager;
     private final HtmlToPdfLogger htmlToPdfLogger;
+    private final HtmlToPdfConverterPropertiesFactory converterPropertiesFactory;
+    private final HtmlToPdfStreamConverter streamConverter;
+    private final HtmlToPdfManifest manifest;
+    private final HtmlToPdfOutputCache outputCache;
+    private final HtmlToPdfWorkerPool workerPool;
+    private final HtmlToPdfFileFilter fileFilter;
+    private final HtmlToPdfFileWalker fileWalker;
+    private final HtmlToPdfSourceArchive sourceArchive;
+    private final HtmlToPdfPdfArchive pdfArchive;
+    private final HtmlToPdfMerger merger;
+    private final HtmlToPdfShard shard;
+    private final HtmlToPdfJournal journal;
+    private final HtmlToPdfScheduler scheduler;
+    private final HtmlToPdfMemoryBudget memoryBudget;
+    private final HtmlToPdfWatchdog watchdog;
+    private final HtmlToPdfQuarantine quarantine;
+    private final HtmlToPdfProgress progress;
+    private final HtmlToPdfSharedResources sharedResources;
+    private final boolean ownsSharedResources;
+    private final int maxPendingResults;
+    private final HtmlToPdfRunSummary runSummary = new HtmlToPdfRunSummary();
+    private boolean sourceDirectoryComplete;
+    private volatile boolean stopping;
+    private JsonObject summary;
 
     /**
      * Constructor for the converter
+     * @param configuration the converter configuration
      * @param fileManager the file manager class
      * @throws IOException if there is an error writing to File
      * @throws HtmlToPdfLoggerException if the logger can't write to file
      */
-    public HtmlToPdfConverter(HtmlToPdfFileManager fileManager) throws IOException, HtmlToPdfLoggerException {
+    public HtmlToPdfConverter(HtmlToPdfConfiguration configuration, HtmlToPdfFileManager fileManager) throws IOException, HtmlToPdfLoggerException {
+        this(configuration, fileManager, false);
+    }
+
+    /**
+     * Constructor for the converter, optionally resuming an interrupted batch
+     * @param configuration the converter configuration
+     * @param fileManager the file manager class
+     * @param resume true to skip the files the journal records as converted, skipped or copied from the cache by the
+     *               interrupted batch, false to start a new journal
+     * @throws IOException if there is an error writing to File
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    public HtmlToPdfConverter(HtmlToPdfConfiguration configuration, HtmlToPdfFileManager fileManager, boolean resume) throws IOException, HtmlToPdfLoggerException {
+        this(configuration, fileManager, resume, new HtmlToPdfSharedResources(configuration), true);
+    }
+
+    /**
+     * Constructor for the converter of one of several jobs run by the same process, sharing the fonts, the resource
+     * cache, the output buffers, the worker pool, the memory budget and the watchdog with the other jobs. The shared
+     * resources are left open when the converter is closed.
+     * @param configuration the converter configuration of the job
+     * @param fileManager the file manager class of the job
+     * @param resume true to skip the files the journal records as converted, skipped or copied from the cache by the
+     *               interrupted batch, false to start a new journal
+     * @param sharedResources the resources shared by the jobs
+     * @throws IOException if there is an error writing to File
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    public HtmlToPdfConverter(HtmlToPdfConfiguration configuration, HtmlToPdfFileManager fileManager, boolean resume,
+                              HtmlToPdfSharedResources sharedResources) throws IOException, HtmlToPdfLoggerException {
+        this(configuration, fileManager, resume, sharedResources, false);
+    }
+
+    /**
+     * Constructor for the converter
+     * @param configuration the converter configuration
+     * @param fileManager the file manager class
+     * @param resume true to skip the files the journal records as finished by the interrupted batch
+     * @param sharedResources the fonts, resource cache, output buffers, worker pool, memory budget and watchdog
+     * @param ownsSharedResources true if the shared resources were created for this converter alone, and are closed
+     *                            along with it
+     * @throws IOException if there is an error writing to File
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private HtmlToPdfConverter(HtmlToPdfConfiguration configuration, HtmlToPdfFileManager fileManager, boolean resume,
+                               HtmlToPdfSharedResources sharedResources, boolean ownsSharedResources) throws IOException, HtmlToPdfLoggerException {
+        this.configuration = configuration;
         this.fileManager = fileManager;
-        this.htmlToPdfLogger = new HtmlToPdfLogger(fileManager.getLogDirectory());
+        this.sharedResources = sharedResources;
+        this.ownsSharedResources = ownsSharedResources;
+        this.htmlToPdfLogger = new HtmlToPdfLogger(fileManager.getLogDirectory(), fileManager.getShardName(),
+                configuration.getLogFlushIntervalMillis(), configuration.getLogFlushEntries());
+        this.converterPropertiesFactory = ownsSharedResources ? sharedResources.getConverterPropertiesFactory()
+                : new HtmlToPdfConverterPropertiesFactory(configuration, sharedResources.getConverterPropertiesFactory());
+        this.streamConverter = new HtmlToPdfStreamConverter(converterPropertiesFactory, sharedResources.getOutputBufferPool());
+        this.manifest = configuration.isIncremental()
+                ? new HtmlToPdfManifest(fileManager.getManifestFile(), configuration.isManifestHashing()) : null;
+        this.outputCache = configuration.isOutputCache()
+                ? new HtmlToPdfOutputCache(fileManager.getOutputCacheFile(), fileManager.getPdfDirectory(), configuration.getOutputCacheSize())
+                : null;
+        this.workerPool = sharedResources.getWorkerPool();
+        this.fileFilter = new HtmlToPdfFileFilter(configuration);
+        this.sourceArchive = fileManager.isSourceArchive() ? new HtmlToPdfSourceArchive(configuration, fileManager, fileFilter) : null;
+        this.fileWalker = sourceArchive == null ? new HtmlToPdfFileWalker(configuration, fileManager, fileFilter) : null;
+        this.pdfArchive = fileManager.getPdfArchiveFile() != null ? new HtmlToPdfPdfArchive(fileManager.getPdfArchiveFile(),
+                configuration.getPdfArchiveMemoryMb() * BYTES_PER_MEGABYTE) : null;
+        this.merger = configuration.isMerge() ? new HtmlToPdfMerger(configuration, fileManager) : null;
+        this.shard = new HtmlToPdfShard(configuration, fileManager);
+        if(resume && pdfArchive != null){
+            System.out.println("Can't resume a batch written to a PDF archive, converting every file again");
+        }else if(resume && merger != null){
+            System.out.println("Can't resume a batch of merged PDF files, converting every file again");
+        }
+        boolean resumed = resume && pdfArchive == null && merger == null;
+        this.journal = new HtmlToPdfJournal(fileManager.getJournalFile(), resumed,
+                configuration.getJournalSyncEntries(), configuration.getJournalSyncIntervalMillis());
+        this.scheduler = configuration.getSchedulingPolicy() != HtmlToPdfSchedulingPolicy.DISCOVERY && sourceArchive == null && merger == null
+                ? new HtmlToPdfScheduler(configuration.getSchedulingPolicy(), fileManager.getLogDirectory()) : null;
+        this.memoryBudget = sharedResources.getMemoryBudget();
+        this.watchdog = sharedResources.getWatchdog();
+        this.quarantine = configuration.getQuarantineFailures() > 0
+                ? new HtmlToPdfQuarantine(fileManager.getQuarantineFile(), configuration.getQuarantineFailures()) : null;
+        this.progress = configuration.getProgressIntervalSeconds() > 0
+                ? new HtmlToPdfProgress(configuration.getProgressIntervalSeconds()) : null;
+        if(resumed){
+            System.out.println("Resuming: " + journal.getFinishedCount() + " files already finished");
+        }
+        this.maxPendingResults = configuration.getThreadCount() * PENDING_RESULTS_PER_THREAD;
     }
 
     /**
-     * Executes the HTML to PDF conversion
-     * @return true if it is successful without throwing exceptions
+     * Executes the HTML to PDF conversion of the whole source directory and closes the converter
+     * @return true if every HTML file was converted, skipped or copied from the cache without failure
      * @throws IOException if there is an error writing to File
      * @throws HtmlToPdfLoggerException if the logger can't write to file
      */
     public boolean executeConversion() throws IOException, HtmlToPdfLoggerException {
         try{
-            this.processDirectory(fileManager.getSourceDirectory(), fileManager.getPdfDirectory());
+            this.convertSourceDirectory();
         }finally {
-            htmlToPdfLogger.close();
+            this.close();
         }
 
-        return true;
+        return runSummary.getFileCount(HtmlToPdfConversionStatus.FAILURE) == 0;
+    }
+
+    /**
+     * Gets the stream converter the files are converted with, sharing the fonts, resource cache and output buffers of
+     * this converter
+     * @return the stream converter
+     */
+    public HtmlToPdfStreamConverter getStreamConverter() {
+        return streamConverter;
+    }
+
+    /**
+     * Gets the measurements of the conversions executed so far
+     * @return the run summary
+     */
+    public HtmlToPdfRunSummary getRunSummary() {
+        return runSummary;
+    }
+
+    /**
+     * Gets the JSON summary of the run, written to the logs directory when the converter is closed
+     * @return the JSON summary, or null if the converter is still open
+     */
+    public JsonObject getSummary() {
+        return summary;
     }
 
     /**
-     * Reads the HTML files from the source directory, and attempts to write them to PDF in target directory
-     * @param sourceDirectory the source directory read from
-     * @param targetDirectory the target directory written to
+     * Converts every file of the source directory that belongs to the configured shard, leaving the converter open for
+     * further conversions. When lease files are used, the source directory is then walked again to take the files the
+     * other shards have not claimed yet. The files the journal records as finished by an interrupted batch are left
+     * out. Unless the files are converted in the order they are found, each walk is completed and its files ordered by
+     * estimated cost before the first conversion starts.
      * @throws IOException if there is an error writing to File
      * @throws HtmlToPdfLoggerException if the logger can't write to file
      */
-    private void processDirectory(File sourceDirectory, File targetDirectory) throws IOException, HtmlToPdfLoggerException {
-        for(File sourceFile : Objects.requireNonNull(sourceDirectory.listFiles())){
-            if(sourceFile.isDirectory()){
-                this.processSubdirectory(sourceFile, targetDirectory);
-            }else {
-                this.createPdfFile(sourceFile, targetDirectory);
+    public void convertSourceDirectory() throws IOException, HtmlToPdfLoggerException {
+        Deque<Map.Entry<HtmlToPdfConversionTask, Future<HtmlToPdfConversionResult>>> pendingResults = new ArrayDeque<>();
+        List<HtmlToPdfConversionTask> scheduledTasks = new ArrayList<>();
+        try {
+            this.walkSource(conversionTask -> {
+                if(shard.owns(conversionTask.getRelativePath()) && !journal.isFinished(conversionTask.getRelativePath())){
+                    this.scheduleTask(conversionTask, scheduledTasks, pendingResults);
+                }
+            });
+            this.submitScheduledTasks(scheduledTasks, pendingResults);
+            if(shard.isLeased()){
+                this.walkSource(conversionTask -> {
+                    if(!journal.isFinished(conversionTask.getRelativePath())){
+                        this.scheduleTask(conversionTask, scheduledTasks, pendingResults);
+                    }
+                });
+                this.submitScheduledTasks(scheduledTasks, pendingResults);
+            }
+            if(merger != null){
+                for(HtmlToPdfMerger.Group group : merger.drain()){
+                    this.submitGroup(group, pendingResults);
+                }
+            }
+            this.logResults(pendingResults);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the PDF conversions to finish");
+        }
+        this.sourceDirectoryComplete = !stopping;
+    }
+
+    /**
+     * Stops taking files: the walk in progress ends at the next file, and the files found but not submitted yet are
+     * left out. The conversions already submitted to the worker pool still finish. Thread safe.
+     */
+    public void stopTakingFiles() {
+        stopping = true;
+    }
+
+    /**
+     * Walks the source archive if there is one, or the source directory, recording the walk as a flight recorder event
+     * @param listener the listener the conversions are handed to
+     * @throws IOException if the source can't be read or the listener fails to take a file
+     * @throws HtmlToPdfLoggerException if the listener can't write to the log file
+     * @throws InterruptedException if interrupted while handing a file over
+     */
+    private void walkSource(HtmlToPdfFileWalker.Listener listener) throws IOException, HtmlToPdfLoggerException, InterruptedException {
+        HtmlToPdfTraversalEvent event = new HtmlToPdfTraversalEvent();
+        event.begin();
+        long filteredCount = fileFilter.getFilteredCount();
+        HtmlToPdfFileWalker.Listener countingListener = new HtmlToPdfFileWalker.Listener() {
+            @Override
+            public void fileFound(HtmlToPdfConversionTask conversionTask) throws IOException, HtmlToPdfLoggerException, InterruptedException {
+                event.filesFound++;
+                listener.fileFound(conversionTask);
+            }
+
+            @Override
+            public boolean isStopped() {
+                return stopping;
             }
+        };
+        if(progress != null){
+            progress.setWalking(true);
+        }
+        try {
+            if(sourceArchive != null){
+                sourceArchive.walk(countingListener);
+            }else{
+                fileWalker.walk(countingListener);
+            }
+        } finally {
+            if(progress != null){
+                progress.setWalking(false);
+            }
+            event.source = fileManager.getSourceDirectory().getPath();
+            event.filteredOut = fileFilter.getFilteredCount() - filteredCount;
+            event.commit();
         }
     }
 
     /**
-     * Reads the HTML files from the source directory, and attempts to write them to PDF in target directory
-     * @param sourceSubdirectory the source directory read from
-     * @param targetDirectory the target directory written to
+     * Converts some files of the source directory, leaving the converter open for further conversions. The files
+     * rejected by the file filter are left out.
+     * @param sourceFiles the HTML files, which must be located in the source directory
      * @throws IOException if there is an error writing to File
      * @throws HtmlToPdfLoggerException if the logger can't write to file
      */
-    private void processSubdirectory(File sourceSubdirectory, File targetDirectory) throws IOException, HtmlToPdfLoggerException {
-        File targetSubdirectory = new File(targetDirectory, sourceSubdirectory.getName());
-        if(!targetDirectory.exists()){
-            targetSubdirectory.mkdirs();
+    public void convertFiles(List<File> sourceFiles) throws IOException, HtmlToPdfLoggerException {
+        List<HtmlToPdfConversionTask> conversionTasks = new ArrayList<>();
+        for(File sourceFile : sourceFiles){
+            if(fileFilter.acceptsWithParents(sourceFile.toPath(), fileManager.getRelativePath(sourceFile))){
+                conversionTasks.add(this.createConversionTask(sourceFile));
+            }
+        }
+        this.executeTasks(conversionTasks);
+    }
+
+    /**
+     * Waits for the conversions in flight unless the worker pool is shared with other jobs, persists the state of the
+     * incremental mode, the output cache and the quarantine, and closes the journal and the logger
+     * @throws IOException if the state can't be written to file
+     * @throws HtmlToPdfLoggerException if the logger fails to close
+     */
+    @Override
+    public void close() throws IOException, HtmlToPdfLoggerException {
+        try {
+            if(ownsSharedResources){
+                sharedResources.close();
+            }
+            if(progress != null){
+                progress.close();
+            }
+            shard.close();
+            if(manifest != null){
+                manifest.save(sourceDirectoryComplete);
+            }
+            if(outputCache != null){
+                try {
+                    outputCache.save();
+                } catch (IOException e) {
+                    System.out.println("Failed to save the output cache index: " + e.getMessage());
+                }
+            }
+            if(quarantine != null){
+                quarantine.save();
+            }
+            if(pdfArchive != null){
+                pdfArchive.close();
+            }
+            if(merger != null){
+                merger.save();
+            }
+            journal.close();
+            summary = runSummary.toJson(outputCache, converterPropertiesFactory.getResourceCache());
+            summary.add("writer", converterPropertiesFactory.writerJson());
+            summary.add("filtered", fileFilter.toJson());
+            if(converterPropertiesFactory.getStyleSheetCache() != null){
+                summary.add("styleSheetCache", converterPropertiesFactory.getStyleSheetCache().toJson());
+            }
+            if(sharedResources.getWarmUpNanos() > 0){
+                summary.addProperty("warmUpMillis", sharedResources.getWarmUpNanos() / 1_000_000);
+            }
+            if(memoryBudget != null){
+                summary.add("memoryBudget", memoryBudget.toJson());
+            }
+            if(pdfArchive != null){
+                summary.addProperty("pdfArchiveSpilledFiles", pdfArchive.getSpilledFiles());
+            }
+            File summaryFile = runSummary.write(fileManager.getLogDirectory(), fileManager.getShardName(), summary);
+            System.out.println("Processed " + runSummary.getTotalFileCount() + " files: "
+                    + runSummary.getFileCount(HtmlToPdfConversionStatus.SUCCESS) + " converted, "
+                    + runSummary.getFileCount(HtmlToPdfConversionStatus.FAILURE) + " failed, "
+                    + runSummary.getFileCount(HtmlToPdfConversionStatus.SKIPPED) + " skipped, "
+                    + runSummary.getFileCount(HtmlToPdfConversionStatus.CACHED) + " copied from cache, "
+                    + runSummary.getFileCount(HtmlToPdfConversionStatus.QUARANTINED) + " quarantined, "
+                    + fileFilter.getFilteredCount() + " filtered out");
+            System.out.println("Run summary written to: " + summaryFile.getPath());
+        } finally {
+            htmlToPdfLogger.close();
         }
-        this.processDirectory(sourceSubdirectory, targetSubdirectory);
     }
 
     /**
-     * Makes call to covert HTML file to PDF and logs result
+     * Creates the conversion of an HTML file, making sure the directory of the PDF file exists before any worker
+     * starts writing to it
      * @param sourceFile the HTML file
-     * @param targetDirectory the directory the PDF file will be created in
-     * @throws IOException if there is an error writing to File
-     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     * @return the conversion task
      */
-    private void createPdfFile(File sourceFile, File targetDirectory) throws IOException, HtmlToPdfLoggerException {
-        File pdfFile = this.getTargetFile(targetDirectory, sourceFile);
+    private HtmlToPdfConversionTask createConversionTask(File sourceFile) {
+        File pdfFile = fileManager.getPdfFile(sourceFile);
         if(!pdfFile.getParentFile().exists()){
             pdfFile.getParentFile().mkdirs();
         }
-        boolean success = this.convertToPdf(sourceFile, pdfFile);
-        if(success){
-            htmlToPdfLogger.logSuccess(sourceFile, pdfFile);
+        return new HtmlToPdfConversionTask(sourceFile, pdfFile, fileManager.getRelativePath(sourceFile));
+    }
+
+    /**
+     * Fans the conversions out to the worker pool in the order of the scheduling policy and logs the results in the
+     * order the conversions were submitted
+     * @param conversionTasks the conversions to execute
+     * @throws IOException if interrupted while waiting for the workers
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private void executeTasks(List<HtmlToPdfConversionTask> conversionTasks) throws IOException, HtmlToPdfLoggerException {
+        Deque<Map.Entry<HtmlToPdfConversionTask, Future<HtmlToPdfConversionResult>>> pendingResults = new ArrayDeque<>();
+        try {
+            for(HtmlToPdfConversionTask conversionTask : scheduler != null ? scheduler.order(conversionTasks) : conversionTasks){
+                if(stopping){
+                    break;
+                }
+                if(progress != null){
+                    progress.recordFound();
+                }
+                if(merger != null){
+                    this.mergeTask(conversionTask, pendingResults);
+                }else{
+                    this.submitTask(conversionTask, pendingResults);
+                }
+            }
+            if(merger != null){
+                for(HtmlToPdfMerger.Group group : merger.drain()){
+                    this.submitGroup(group, pendingResults);
+                }
+            }
+            this.logResults(pendingResults);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the PDF conversions to finish");
+        }
+    }
+
+    /**
+     * Submits a conversion found while walking the source directory right away if the files are converted in the order
+     * they are found, or holds it back to be ordered with the other files of the walk otherwise. The file is claimed
+     * when it is submitted, so a held back file can still be taken by another shard.
+     * @param conversionTask the conversion to execute
+     * @param scheduledTasks the conversions held back until the walk is complete
+     * @param pendingResults the conversions whose results have not been logged yet
+     * @throws InterruptedException if interrupted while waiting for a worker or a result
+     * @throws IOException if the lease file can't be created or the journal can't be written
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private void scheduleTask(HtmlToPdfConversionTask conversionTask, List<HtmlToPdfConversionTask> scheduledTasks,
+                              Deque<Map.Entry<HtmlToPdfConversionTask, Future<HtmlToPdfConversionResult>>> pendingResults)
+            throws InterruptedException, IOException, HtmlToPdfLoggerException {
+        if(merger != null){
+            this.mergeTask(conversionTask, pendingResults);
+        }else if(scheduler != null){
+            scheduledTasks.add(conversionTask);
+        }else if(shard.claim(conversionTask.getRelativePath())){
+            this.submitTask(conversionTask, pendingResults);
         }else{
-            htmlToPdfLogger.logFailure(sourceFile, pdfFile);
+            return;
+        }
+        if(progress != null){
+            progress.recordFound();
         }
     }
 
     /**
-     * Converts HTML file to PDF
-     * @param sourceFile the HTML file
-     * @param pdfFile the PDF file
-     * @return true if PDF conversion is successful
+     * Submits the conversions held back during the walk of the source directory in the order of the scheduling policy,
+     * skipping the files claimed by another shard in the meantime
+     * @param scheduledTasks the conversions held back until the walk is complete, emptied once submitted
+     * @param pendingResults the conversions whose results have not been logged yet
+     * @throws InterruptedException if interrupted while waiting for a worker or a result
+     * @throws IOException if a lease file can't be created or the journal can't be written
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private void submitScheduledTasks(List<HtmlToPdfConversionTask> scheduledTasks,
+                                      Deque<Map.Entry<HtmlToPdfConversionTask, Future<HtmlToPdfConversionResult>>> pendingResults)
+            throws InterruptedException, IOException, HtmlToPdfLoggerException {
+        if(scheduledTasks.isEmpty()){
+            return;
+        }
+        for(HtmlToPdfConversionTask conversionTask : scheduler.order(scheduledTasks)){
+            if(stopping){
+                break;
+            }
+            if(shard.claim(conversionTask.getRelativePath())){
+                this.submitTask(conversionTask, pendingResults);
+            }else if(progress != null){
+                progress.recordNotClaimed();
+            }
+        }
+        scheduledTasks.clear();
+    }
+
+    /**
+     * Submits a conversion to the worker pool, then logs the results that are ready in the order the conversions were
+     * submitted. The number of results waiting to be logged is bounded, so a slow conversion at the head of the queue
+     * makes the caller wait instead of letting the results pile up.
+     * @param conversionTask the conversion to execute
+     * @param pendingResults the conversions whose results have not been logged yet
+     * @throws InterruptedException if interrupted while waiting for a worker or a result
+     * @throws IOException if the journal can't be written
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private void submitTask(HtmlToPdfConversionTask conversionTask,
+                            Deque<Map.Entry<HtmlToPdfConversionTask, Future<HtmlToPdfConversionResult>>> pendingResults)
+            throws InterruptedException, IOException, HtmlToPdfLoggerException {
+        Future<HtmlToPdfConversionResult> result = workerPool.submit(() -> this.executeRecordedTask(conversionTask));
+        pendingResults.add(Map.entry(conversionTask, result));
+        while(!pendingResults.isEmpty() && (pendingResults.peek().getValue().isDone() || pendingResults.size() > maxPendingResults)){
+            this.logResult(pendingResults.poll());
+        }
+    }
+
+    /**
+     * Adds a conversion to the group of its directory, submitting the group once it is full
+     * @param conversionTask the conversion to execute
+     * @param pendingResults the conversions whose results have not been logged yet
+     * @throws InterruptedException if interrupted while waiting for a worker or a result
+     * @throws IOException if the journal can't be written
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
      */
-    private boolean convertToPdf(File sourceFile, File pdfFile) {
+    private void mergeTask(HtmlToPdfConversionTask conversionTask,
+                           Deque<Map.Entry<HtmlToPdfConversionTask, Future<HtmlToPdfConversionResult>>> pendingResults)
+            throws InterruptedException, IOException, HtmlToPdfLoggerException {
+        HtmlToPdfMerger.Group group = merger.add(conversionTask);
+        if(group != null){
+            this.submitGroup(group, pendingResults);
+        }
+    }
+
+    /**
+     * Submits the rendering of a merged PDF file to the worker pool, then logs the results that are ready in the order
+     * the conversions were submitted. Each HTML file of the group gets a result of its own, logged with the merged PDF
+     * file, once the merged PDF file is written.
+     * @param group the HTML files rendered into the merged PDF file
+     * @param pendingResults the conversions whose results have not been logged yet
+     * @throws InterruptedException if interrupted while waiting for a worker or a result
+     * @throws IOException if the journal can't be written
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private void submitGroup(HtmlToPdfMerger.Group group,
+                             Deque<Map.Entry<HtmlToPdfConversionTask, Future<HtmlToPdfConversionResult>>> pendingResults)
+            throws InterruptedException, IOException, HtmlToPdfLoggerException {
+        List<HtmlToPdfConversionTask> conversionTasks = new ArrayList<>();
+        List<CompletableFuture<HtmlToPdfConversionResult>> results = new ArrayList<>();
+        for(HtmlToPdfConversionTask conversionTask : group.conversionTasks()){
+            HtmlToPdfConversionTask mergedTask = new HtmlToPdfConversionTask(conversionTask.getSourceFile(),
+                    group.mergedFile(), conversionTask.getRelativePath(), conversionTask.getContent());
+            CompletableFuture<HtmlToPdfConversionResult> result = new CompletableFuture<>();
+            conversionTasks.add(mergedTask);
+            results.add(result);
+            pendingResults.add(Map.entry(mergedTask, result));
+        }
+        workerPool.submit(() -> {
+            try {
+                List<HtmlToPdfConversionResult> groupResults = this.executeGroup(group.mergedFile(), conversionTasks);
+                for(int i = 0; i < results.size(); i++){
+                    results.get(i).complete(groupResults.get(i));
+                }
+            } catch (Throwable e) {
+                results.forEach(result -> result.completeExceptionally(e));
+            }
+            return null;
+        });
+        while(!pendingResults.isEmpty() && (pendingResults.peek().getValue().isDone() || pendingResults.size() > maxPendingResults)){
+            this.logResult(pendingResults.poll());
+        }
+    }
+
+    /**
+     * Waits for all the remaining results and logs them in the order the conversions were submitted
+     * @param pendingResults the conversions whose results have not been logged yet
+     * @throws InterruptedException if interrupted while waiting for a result
+     * @throws IOException if the journal can't be written
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private void logResults(Deque<Map.Entry<HtmlToPdfConversionTask, Future<HtmlToPdfConversionResult>>> pendingResults)
+            throws InterruptedException, IOException, HtmlToPdfLoggerException {
+        while(!pendingResults.isEmpty()){
+            this.logResult(pendingResults.poll());
+        }
+    }
+
+    /**
+     * Waits for the result of a conversion, appends its PDF file to the PDF archive if one is used, records it in the
+     * run summary, the journal and the quarantine and logs it. A PDF file that can't be appended to the PDF archive is
+     * logged as a failure of its conversion.
+     * @param pendingResult the conversion and its pending result
+     * @throws InterruptedException if interrupted while waiting for the result
+     * @throws IOException if the journal can't be written
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private void logResult(Map.Entry<HtmlToPdfConversionTask, Future<HtmlToPdfConversionResult>> pendingResult)
+            throws InterruptedException, IOException, HtmlToPdfLoggerException {
+        HtmlToPdfConversionTask conversionTask = pendingResult.getKey();
+        HtmlToPdfConversionResult result;
         try {
-            HtmlConverter.convertToPdf(sourceFile, pdfFile);
-        } catch (Exception e) {
-            return false;
+            result = pendingResult.getValue().get();
+        } catch (ExecutionException e) {
+            result = HtmlToPdfConversionResult.failure(e.getCause().toString());
+        }
+        if(result.getPdfContent() != null){
+            try {
+                pdfArchive.write(conversionTask.getPdfFile(), result.getPdfContent());
+            } catch (IOException e) {
+                result = HtmlToPdfConversionResult.failure("Failed to write to the PDF archive: " + e.getMessage());
+            }
+        }
+        runSummary.record(conversionTask, result);
+        if(quarantine != null && conversionTask.getContent() == null){
+            this.recordQuarantine(conversionTask, result);
+        }
+        journal.record(conversionTask.getRelativePath(), result.getStatus());
+        try {
+            shard.complete(conversionTask.getRelativePath());
+        } catch (IOException e) {
+            System.out.println("Failed to mark as converted: " + conversionTask.getRelativePath() + " (" + e.getMessage() + ")");
+        }
+        switch (result.getStatus()) {
+            case SUCCESS -> htmlToPdfLogger.logSuccess(conversionTask.getSourceFile(), conversionTask.getPdfFile());
+            case SKIPPED -> htmlToPdfLogger.logSkipped(conversionTask.getSourceFile(), conversionTask.getPdfFile());
+            case CACHED -> htmlToPdfLogger.logCached(conversionTask.getSourceFile(), conversionTask.getPdfFile());
+            case QUARANTINED -> htmlToPdfLogger.logQuarantined(conversionTask.getSourceFile(), conversionTask.getPdfFile(), result.getReason());
+            default -> htmlToPdfLogger.logFailure(conversionTask.getSourceFile(), conversionTask.getPdfFile(), result.getReason());
+        }
+    }
+
+    /**
+     * Records the failures of a file in the quarantine, and clears them once the file is converted
+     * @param conversionTask the conversion
+     * @param result the outcome of the conversion
+     */
+    private void recordQuarantine(HtmlToPdfConversionTask conversionTask, HtmlToPdfConversionResult result) {
+        switch (result.getStatus()) {
+            case FAILURE -> {
+                if(quarantine.recordFailure(conversionTask.getRelativePath(), conversionTask.getSourceFile(),
+                        result.getReason(), result.isTimedOut())){
+                    System.out.println("Quarantined until it changes: " + conversionTask.getRelativePath() + " (" + result.getReason() + ")");
+                }
+            }
+            case SUCCESS, CACHED -> quarantine.recordSuccess(conversionTask.getRelativePath());
+            default -> {
+            }
         }
-       return true;
     }
 
     /**
-     * Get the name and path for the target PDF file
-     * @param targetDirectory the target directory
-     * @param sourceFile the source HTML file
-     * @return the new PDF file
+     * Executes a single conversion on a worker, recording it as a flight recorder event and in the progress
+     * @param conversionTask the conversion to execute
+     * @return the outcome and measurements of the conversion
+     * @throws IOException if the source file can't be read to compute its hash
      */
-    private File getTargetFile(File targetDirectory, File sourceFile) {
-        String filename = FilenameUtils.getBaseName(sourceFile.getName()) + PDF_EXTENSION;
-        return new File(targetDirectory, filename);
+    private HtmlToPdfConversionResult executeRecordedTask(HtmlToPdfConversionTask conversionTask) throws IOException {
+        HtmlToPdfConversionEvent event = new HtmlToPdfConversionEvent();
+        event.begin();
+        HtmlToPdfConversionResult result = this.executeTask(conversionTask);
+        if(result.getStatus() == HtmlToPdfConversionStatus.SUCCESS || result.getStatus() == HtmlToPdfConversionStatus.CACHED){
+            runSummary.recordPdfCreated();
+        }
+        event.path = conversionTask.getRelativePath();
+        event.status = result.getStatus().name();
+        event.inputBytes = result.getInputBytes();
+        event.outputBytes = result.getOutputBytes();
+        event.pageCount = result.getPageCount();
+        event.commit();
+        if(progress != null){
+            progress.recordFinished();
+        }
+        return result;
+    }
+
+    /**
+     * Executes and measures a single conversion on a worker, skipping it if it is quarantined, or if incremental and
+     * the PDF file is already up to date. The entries of a source archive are never quarantined.
+     * @param conversionTask the conversion to execute
+     * @return the outcome and measurements of the conversion
+     * @throws IOException if the source file can't be read to compute its hash
+     */
+    private HtmlToPdfConversionResult executeTask(HtmlToPdfConversionTask conversionTask) throws IOException {
+        long startNanos = System.nanoTime();
+        File sourceFile = conversionTask.getSourceFile();
+        File pdfFile = conversionTask.getPdfFile();
+        HtmlToPdfConversionResult quarantinedResult = this.getQuarantinedResult(conversionTask, startNanos);
+        if(quarantinedResult != null){
+            return quarantinedResult;
+        }
+        HtmlToPdfManifestEntry manifestEntry = null;
+        if(manifest != null){
+            if(manifest.isUpToDate(conversionTask.getRelativePath(), sourceFile, pdfFile)){
+                return this.createResult(HtmlToPdfConversionStatus.SKIPPED, startNanos, conversionTask, 0);
+            }
+            manifestEntry = manifest.describe(sourceFile);
+        }
+        HtmlToPdfConversionResult result = this.createPdfFile(conversionTask, manifestEntry, startNanos);
+        if(manifest != null && result.getStatus() != HtmlToPdfConversionStatus.FAILURE){
+            manifest.recordConversion(conversionTask.getRelativePath(), manifestEntry);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the result of a conversion skipped because its source file is quarantined. The entries of a source archive
+     * are never quarantined.
+     * @param conversionTask the conversion to execute
+     * @param startNanos the time the conversion started
+     * @return the quarantined result, or null if the source file is not quarantined
+     */
+    private HtmlToPdfConversionResult getQuarantinedResult(HtmlToPdfConversionTask conversionTask, long startNanos) {
+        if(quarantine == null || conversionTask.getContent() != null){
+            return null;
+        }
+        File sourceFile = conversionTask.getSourceFile();
+        HtmlToPdfQuarantineEntry quarantineEntry = quarantine.getQuarantined(conversionTask.getRelativePath(), sourceFile);
+        if(quarantineEntry == null){
+            return null;
+        }
+        return new HtmlToPdfConversionResult(HtmlToPdfConversionStatus.QUARANTINED, System.nanoTime() - startNanos,
+                sourceFile.length(), 0, 0, quarantineEntry.getReason(), false);
+    }
+
+    /**
+     * Renders the HTML files of a group into their merged PDF file on a worker, one section per HTML file, recording
+     * each HTML file as a flight recorder event and in the progress. The merged PDF file is written next to its final
+     * location and then moved into place, and its sections are recorded in the merge index. A failed HTML file is left
+     * out of the merged PDF file, which is not written at all if none of its HTML files could be rendered. The rendered
+     * HTML files only fail with the merged PDF file if it can't be written: a merged PDF file that can't be recorded in
+     * the merge index is only reported. The size of the merged PDF file is shared out between its HTML files by
+     * number of pages.
+     * @param mergedFile the merged PDF file
+     * @param conversionTasks the conversions of the HTML files, in the order they are rendered
+     * @return the outcome and measurements of each conversion, in the same order
+     */
+    private List<HtmlToPdfConversionResult> executeGroup(File mergedFile, List<HtmlToPdfConversionTask> conversionTasks) {
+        List<HtmlToPdfConversionResult> results = new ArrayList<>();
+        List<HtmlToPdfConversionEvent> events = new ArrayList<>();
+        List<HtmlToPdfMerger.Section> sections = new ArrayList<>();
+        File partialFile = HtmlToPdfFileManager.getPartialFile(mergedFile);
+        String writeFailure = null;
+        int pageCount = 0;
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(partialFile.toPath()));
+                 HtmlToPdfMergedDocument mergedDocument = streamConverter.createMergedDocument(outputStream)) {
+                for(HtmlToPdfConversionTask conversionTask : conversionTasks){
+                    HtmlToPdfConversionEvent event = new HtmlToPdfConversionEvent();
+                    event.begin();
+                    results.add(this.executeSection(mergedDocument, conversionTask, sections));
+                    if(mergedDocument.isIncomplete()){
+                        throw new IOException("the pages of " + conversionTask.getRelativePath() + " were written before it failed");
+                    }
+                    event.end();
+                    events.add(event);
+                    if(progress != null){
+                        progress.recordFinished();
+                    }
+                }
+                pageCount = mergedDocument.getNumberOfPages();
+            }
+            if(!sections.isEmpty()){
+                Files.move(partialFile.toPath(), mergedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException | RuntimeException e) {
+            writeFailure = "Failed to write the merged PDF file: " + e.getMessage();
+        } finally {
+            partialFile.delete();
+        }
+        if(writeFailure == null && !sections.isEmpty()){
+            runSummary.recordPdfCreated();
+            try {
+                merger.record(mergedFile, pageCount, sections);
+            } catch (RuntimeException e) {
+                System.out.println("Failed to record the merged PDF file in the merge index: " + mergedFile + " (" + e.getMessage() + ")");
+            }
+        }
+        long mergedBytes = writeFailure == null && !sections.isEmpty() ? mergedFile.length() : 0;
+        List<HtmlToPdfConversionResult> groupResults = new ArrayList<>();
+        for(int i = 0; i < conversionTasks.size(); i++){
+            HtmlToPdfConversionResult result = i < results.size() ? results.get(i) : HtmlToPdfConversionResult.failure(writeFailure);
+            if(result.getStatus() == HtmlToPdfConversionStatus.SUCCESS){
+                result = writeFailure == null
+                        ? new HtmlToPdfConversionResult(HtmlToPdfConversionStatus.SUCCESS, result.getWallTimeNanos(),
+                                result.getInputBytes(), pageCount > 0 ? mergedBytes * result.getPageCount() / pageCount : 0,
+                                result.getPageCount())
+                        : new HtmlToPdfConversionResult(HtmlToPdfConversionStatus.FAILURE, result.getWallTimeNanos(),
+                                result.getInputBytes(), 0, 0, writeFailure, false);
+            }
+            groupResults.add(result);
+            if(i < events.size()){
+                HtmlToPdfConversionEvent event = events.get(i);
+                event.path = conversionTasks.get(i).getRelativePath();
+                event.status = result.getStatus().name();
+                event.inputBytes = result.getInputBytes();
+                event.outputBytes = result.getOutputBytes();
+                event.pageCount = result.getPageCount();
+                event.commit();
+            }
+        }
+        return groupResults;
+    }
+
+    /**
+     * Renders an HTML file as the next section of a merged PDF file, unless it is quarantined
+     * @param mergedDocument the merged PDF document
+     * @param conversionTask the conversion to execute
+     * @param sections the sections rendered so far, to which the section of the HTML file is added
+     * @return the outcome and measurements of the conversion, without the size of the PDF file
+     */
+    private HtmlToPdfConversionResult executeSection(HtmlToPdfMergedDocument mergedDocument, HtmlToPdfConversionTask conversionTask,
+                                                     List<HtmlToPdfMerger.Section> sections) {
+        long startNanos = System.nanoTime();
+        HtmlToPdfConversionResult quarantinedResult = this.getQuarantinedResult(conversionTask, startNanos);
+        if(quarantinedResult != null){
+            return quarantinedResult;
+        }
+        int firstPage = mergedDocument.getNumberOfPages() + 1;
+        long renderStartNanos = startNanos;
+        int pageCount;
+        try {
+            HtmlToPdfMemoryBudget.Reservation reservation = this.reserveMemory(conversionTask);
+            try {
+                renderStartNanos = System.nanoTime();
+                pageCount = this.addSection(mergedDocument, conversionTask);
+            } finally {
+                this.releaseMemory(reservation);
+            }
+        } catch (HtmlToPdfConversionException e) {
+            return new HtmlToPdfConversionResult(HtmlToPdfConversionStatus.FAILURE, System.nanoTime() - renderStartNanos,
+                    conversionTask.getSourceLength(), 0, 0, e.getMessage(), e instanceof HtmlToPdfTimeoutException);
+        }
+        if(pageCount > 0){
+            sections.add(new HtmlToPdfMerger.Section(conversionTask.getRelativePath(), firstPage, firstPage + pageCount - 1));
+        }
+        return new HtmlToPdfConversionResult(HtmlToPdfConversionStatus.SUCCESS, System.nanoTime() - renderStartNanos,
+                conversionTask.getSourceLength(), 0, pageCount);
+    }
+
+    /**
+     * Reserves the estimated memory use of a conversion, waiting until it fits in the memory budget
+     * @param conversionTask the conversion to execute
+     * @return the reservation, to be released once the conversion is finished, or null if there is no memory budget
+     * @throws HtmlToPdfConversionException if interrupted while waiting for the memory budget
+     */
+    private HtmlToPdfMemoryBudget.Reservation reserveMemory(HtmlToPdfConversionTask conversionTask) throws HtmlToPdfConversionException {
+        if(memoryBudget == null){
+            return null;
+        }
+        try {
+            return memoryBudget.reserve(conversionTask.getSourceLength());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HtmlToPdfConversionException("Interrupted while waiting for the memory budget", e);
+        }
+    }
+
+    /**
+     * Returns the memory reserved by a conversion to the memory budget
+     * @param reservation the reservation of the conversion, or null if there is no memory budget
+     */
+    private void releaseMemory(HtmlToPdfMemoryBudget.Reservation reservation) {
+        if(reservation != null){
+            reservation.close();
+        }
+    }
+
+    /**
+     * Renders an HTML file as the next section of a merged PDF file, bookmarked with the name of the HTML file. The
+     * section is cancelled by the watchdog if it runs past its time limit. The documents of a source archive resolve their relative references against the other
+     * entries of the archive.
+     * @param mergedDocument the merged PDF document
+     * @param conversionTask the conversion to execute
+     * @return the number of pages of the section
+     * @throws HtmlToPdfConversionException if the HTML file can't be converted, or a {@link HtmlToPdfTimeoutException}
+     *                                      if it timed out
+     */
+    private int addSection(HtmlToPdfMergedDocument mergedDocument, HtmlToPdfConversionTask conversionTask) throws HtmlToPdfConversionException {
+        String title = conversionTask.getSourceFile().getName();
+        try (HtmlToPdfWatchdog.Watch watch = watchdog != null ? watchdog.watch() : null) {
+            try {
+                if(conversionTask.getContent() != null){
+                    return mergedDocument.addSection(new ByteArrayInputStream(conversionTask.getContent()),
+                            HtmlToPdfSourceArchive.getBaseUri(conversionTask.getRelativePath()),
+                            HtmlToPdfAssetResourceRetriever.ASSET_BASE_URI, sourceArchive.getAssets(), title);
+                }
+                try (InputStream inputStream = Files.newInputStream(conversionTask.getSourceFile().toPath())) {
+                    return mergedDocument.addSection(inputStream, converterPropertiesFactory.getBaseUri(conversionTask.getSourceFile()), title);
+                }
+            } catch (HtmlToPdfConversionException | IOException | RuntimeException e) {
+                if(watch != null && watch.isTimedOut()){
+                    throw new HtmlToPdfTimeoutException("Timed out after " + watchdog.getTimeoutMillis() / 1000 + " seconds", e);
+                }
+                if(e instanceof HtmlToPdfConversionException conversionException){
+                    throw conversionException;
+                }
+                throw new HtmlToPdfConversionException("Failed to read the HTML file: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Creates the PDF file of an HTML file, reusing the PDF file already rendered for identical content if the output
+     * cache is used. An already rendered PDF file that can't be reused is reported and the HTML file converted again,
+     * so the output cache never turns a conversion into a failure. A PDF file written to the PDF archive is kept in the
+     * result until the result is logged. The conversion waits until its estimated memory use fits in the memory
+     * budget, and the time of a rendered PDF file is measured from then on, so the wait for the budget is only
+     * reported by the memory budget.
+     * @param conversionTask the conversion to execute
+     * @param manifestEntry the manifest entry of the HTML file, holding its content hash if already computed
+     * @param startNanos the time the conversion started
+     * @return the outcome and measurements of the conversion
+     * @throws IOException if the source file can't be read to compute its hash
+     */
+    private HtmlToPdfConversionResult createPdfFile(HtmlToPdfConversionTask conversionTask, HtmlToPdfManifestEntry manifestEntry, long startNanos) throws IOException {
+        File sourceFile = conversionTask.getSourceFile();
+        File pdfFile = conversionTask.getPdfFile();
+        String key = null;
+        if(outputCache != null){
+            String contentHash = manifestEntry != null && manifestEntry.getHash() != null
+                    ? manifestEntry.getHash() : HtmlToPdfFileHasher.hash(sourceFile);
+            key = HtmlToPdfOutputCache.createKey(contentHash, converterPropertiesFactory.getBaseUri(sourceFile),
+                    converterPropertiesFactory.getRenderingFingerprint());
+            File cachedPdfFile = outputCache.lookup(key);
+            if(cachedPdfFile != null){
+                try {
+                    outputCache.copy(cachedPdfFile, pdfFile);
+                    return this.createResult(HtmlToPdfConversionStatus.CACHED, startNanos, conversionTask, 0);
+                } catch (IOException e) {
+                    System.out.println("Failed to reuse the cached PDF file, converting again: " + conversionTask.getRelativePath()
+                            + " (" + e.getMessage() + ")");
+                }
+            }
+        }
+        HtmlToPdfPdfArchive.PendingPdf pdfContent = pdfArchive != null ? pdfArchive.createPendingPdf() : null;
+        long renderStartNanos = startNanos;
+        int pageCount;
+        try {
+            HtmlToPdfMemoryBudget.Reservation reservation = this.reserveMemory(conversionTask);
+            try {
+                renderStartNanos = System.nanoTime();
+                pageCount = this.convertToPdf(conversionTask, pdfContent);
+            } finally {
+                this.releaseMemory(reservation);
+            }
+        } catch (HtmlToPdfConversionException e) {
+            return new HtmlToPdfConversionResult(HtmlToPdfConversionStatus.FAILURE, System.nanoTime() - renderStartNanos,
+                    conversionTask.getSourceLength(), 0, 0, e.getMessage(), e instanceof HtmlToPdfTimeoutException);
+        }
+        if(pdfContent != null){
+            return new HtmlToPdfConversionResult(System.nanoTime() - renderStartNanos, conversionTask.getSourceLength(),
+                    pageCount, pdfContent);
+        }
+        if(outputCache != null){
+            outputCache.store(key, pdfFile);
+        }
+        return this.createResult(HtmlToPdfConversionStatus.SUCCESS, renderStartNanos, conversionTask, pageCount);
+    }
+
+    /**
+     * Creates the result of a conversion, measuring the time since it started and the size of its files
+     * @param status the outcome of the conversion
+     * @param startNanos the time the conversion started
+     * @param conversionTask the conversion
+     * @param pageCount the number of pages rendered
+     * @return the outcome and measurements of the conversion
+     */
+    private HtmlToPdfConversionResult createResult(HtmlToPdfConversionStatus status, long startNanos, HtmlToPdfConversionTask conversionTask, int pageCount) {
+        boolean pdfCreated = status == HtmlToPdfConversionStatus.SUCCESS || status == HtmlToPdfConversionStatus.CACHED;
+        return new HtmlToPdfConversionResult(status, System.nanoTime() - startNanos, conversionTask.getSourceLength(),
+                pdfCreated ? conversionTask.getPdfFile().length() : 0, pageCount);
+    }
+
+    /**
+     * Converts HTML file to PDF. The PDF file is written next to its final location and then moved into place, so an
+     * interrupted conversion never leaves a truncated PDF file behind and the PDF files hard linked to an existing PDF
+     * file by the output cache are left untouched. The partial PDF file of a failed conversion is deleted. The
+     * conversion is cancelled by the watchdog if it runs past its time limit.
+     * @param conversionTask the conversion to execute
+     * @param pdfContent the pending PDF document written to the PDF archive, discarded if the conversion fails, or null
+     *                   to write the PDF file
+     * @return the number of pages of the PDF file
+     * @throws HtmlToPdfConversionException if the PDF conversion failed, or a {@link HtmlToPdfTimeoutException} if it
+     *                                      timed out
+     */
+    private int convertToPdf(HtmlToPdfConversionTask conversionTask, HtmlToPdfPdfArchive.PendingPdf pdfContent) throws HtmlToPdfConversionException {
+        File partialFile = HtmlToPdfFileManager.getPartialFile(conversionTask.getPdfFile());
+        try (HtmlToPdfWatchdog.Watch watch = watchdog != null ? watchdog.watch() : null) {
+            try {
+                if(pdfContent != null){
+                    int pageCount = this.render(conversionTask, pdfContent);
+                    pdfContent.close();
+                    return pageCount;
+                }
+                int pageCount;
+                try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(partialFile.toPath()))) {
+                    pageCount = this.render(conversionTask, outputStream);
+                }
+                Files.move(partialFile.toPath(), conversionTask.getPdfFile().toPath(), StandardCopyOption.ATOMIC_MOVE);
+                return pageCount;
+            } catch (HtmlToPdfConversionException | IOException | RuntimeException e) {
+                if(pdfContent != null){
+                    pdfContent.discard();
+                }else{
+                    partialFile.delete();
+                }
+                if(watch != null && watch.isTimedOut()){
+                    throw new HtmlToPdfTimeoutException("Timed out after " + watchdog.getTimeoutMillis() / 1000 + " seconds", e);
+                }
+                if(e instanceof HtmlToPdfConversionException conversionException){
+                    throw conversionException;
+                }
+                throw new HtmlToPdfConversionException("Failed to write the PDF file: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Renders the HTML document of a conversion straight to a stream, which is discarded if the conversion fails. The
+     * documents of a source archive resolve their relative references against the other entries of the archive.
+     * @param conversionTask the conversion to execute
+     * @param outputStream the stream the PDF document is written to
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     * @throws IOException if the HTML file can't be read or the PDF document can't be written
+     */
+    private int render(HtmlToPdfConversionTask conversionTask, OutputStream outputStream) throws HtmlToPdfConversionException, IOException {
+        if(conversionTask.getContent() != null){
+            return streamConverter.convertUnbuffered(new ByteArrayInputStream(conversionTask.getContent()),
+                    HtmlToPdfSourceArchive.getBaseUri(conversionTask.getRelativePath()),
+                    HtmlToPdfAssetResourceRetriever.ASSET_BASE_URI, sourceArchive.getAssets(), outputStream);
+        }
+        try (InputStream inputStream = Files.newInputStream(conversionTask.getSourceFile().toPath())) {
+            return streamConverter.convertUnbuffered(inputStream, converterPropertiesFactory.getBaseUri(conversionTask.getSourceFile()), outputStream);
+        }
     }
 }
@@ -0,0 +1,273 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.JsonObject;
+import com.itextpdf.html2pdf.ConverterProperties;
+import com.itextpdf.html2pdf.resolver.font.DefaultFontProvider;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.layout.font.FontInfo;
+import com.itextpdf.layout.font.FontProvider;
+import com.itextpdf.layout.font.FontSet;
+import com.itextpdf.styledxmlparser.css.media.MediaDeviceDescription;
+import com.itextpdf.styledxmlparser.node.IDocumentNode;
+import com.itextpdf.styledxmlparser.resolver.font.BasicFontProvider;
+import com.itextpdf.styledxmlparser.resolver.resource.DefaultResourceRetriever;
+import com.itextpdf.styledxmlparser.resolver.resource.IResourceRetriever;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the iText converter properties once and hands out a copy to every conversion.
+ * <p>
+ * The expensive parts (discovering and parsing the fonts, the media device description, the resource cache) are
+ * created when the factory is constructed and shared by all conversions. A font provider keeps per document state while a document is being
+ * rendered, so each conversion gets a light provider of its own that is backed by the shared font set.
+ */
+public class HtmlToPdfConverterPropertiesFactory {
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    private final ConverterProperties converterProperties;
+    private final FontSet fontSet;
+    private final String defaultFontFamily;
+    private final String baseUri;
+    private final HtmlToPdfResourceCache resourceCache;
+    private final HtmlToPdfStyleSheetCache styleSheetCache;
+    private final HtmlToPdfWriterProfile writerProfile;
+    private final int compressionLevel;
+    private final boolean fullCompression;
+    private final boolean smartMode;
+    private final String renderingFingerprint;
+
+    /**
+     * Constructor for the converter properties factory
+     * @param configuration the converter configuration
+     */
+    public HtmlToPdfConverterPropertiesFactory(HtmlToPdfConfiguration configuration) {
+        FontProvider fontProvider = new DefaultFontProvider(true, true, configuration.isSystemFonts());
+        for(String fontDirectory : configuration.getFontDirectories()){
+            fontProvider.addDirectory(fontDirectory);
+        }
+        this.fontSet = fontProvider.getFontSet();
+        this.defaultFontFamily = fontProvider.getDefaultFontFamily();
+        this.resourceCache = configuration.getResourceCacheSizeMb() > 0
+                ? new HtmlToPdfResourceCache(configuration.getResourceCacheSizeMb() * BYTES_PER_MEGABYTE) : null;
+        this.styleSheetCache = configuration.getStyleSheetCacheSize() > 0
+                ? new HtmlToPdfStyleSheetCache(configuration.getStyleSheetCacheSize(), configuration.isStyleSheetPruning()) : null;
+        this.converterProperties = this.createConverterProperties(configuration);
+        this.baseUri = configuration.getBaseUri();
+        this.writerProfile = configuration.getWriterProfile();
+        this.compressionLevel = configuration.getCompressionLevel();
+        this.fullCompression = configuration.isFullCompression();
+        this.smartMode = configuration.isSmartMode();
+        this.renderingFingerprint = this.createRenderingFingerprint(configuration);
+        this.warmUpDefaultFonts();
+    }
+
+    /**
+     * Constructor for a converter properties factory that shares the fonts, the resource cache and the stylesheet cache
+     * of another factory, so several jobs of the same process only discover and parse the fonts once. Every other
+     * setting is taken from the configuration.
+     * @param configuration the converter configuration
+     * @param sharedFactory the factory whose font set, resource cache and stylesheet cache are shared
+     */
+    public HtmlToPdfConverterPropertiesFactory(HtmlToPdfConfiguration configuration, HtmlToPdfConverterPropertiesFactory sharedFactory) {
+        this.fontSet = sharedFactory.fontSet;
+        this.defaultFontFamily = sharedFactory.defaultFontFamily;
+        this.resourceCache = sharedFactory.resourceCache;
+        this.styleSheetCache = sharedFactory.styleSheetCache;
+        this.converterProperties = this.createConverterProperties(configuration);
+        this.baseUri = configuration.getBaseUri();
+        this.writerProfile = configuration.getWriterProfile();
+        this.compressionLevel = configuration.getCompressionLevel();
+        this.fullCompression = configuration.isFullCompression();
+        this.smartMode = configuration.isSmartMode();
+        this.renderingFingerprint = this.createRenderingFingerprint(configuration);
+    }
+
+    /**
+     * Creates the converter properties for the conversion of one HTML file
+     * @param sourceFile the source HTML file, used to resolve relative resources if no base URI is configured
+     * @return converter properties that are only used by this conversion
+     */
+    public ConverterProperties create(File sourceFile) {
+        return this.create(this.getBaseUri(sourceFile));
+    }
+
+    /**
+     * Creates the converter properties for the conversion of one HTML document
+     * @param baseUri the URI relative resources are resolved against, or null to use the configured base URI
+     * @return converter properties that are only used by this conversion
+     */
+    public ConverterProperties create(String baseUri) {
+        ConverterProperties properties = new ConverterProperties(converterProperties)
+                .setFontProvider(this.createFontProvider());
+        String documentBaseUri = baseUri != null ? baseUri : this.baseUri;
+        if(documentBaseUri != null){
+            properties.setBaseUri(documentBaseUri);
+        }
+        return properties;
+    }
+
+    /**
+     * Serves the stylesheets linked by a parsed HTML document from the stylesheet cache, reduced to the rule sets that
+     * can match its elements if pruning is enabled, if the stylesheet cache is enabled
+     * @param properties the converter properties of the conversion of the document
+     * @param documentNode the parsed HTML document
+     */
+    public void useStyleSheetCache(ConverterProperties properties, IDocumentNode documentNode) {
+        if(styleSheetCache != null){
+            IResourceRetriever resourceRetriever = properties.getResourceRetriever() != null
+                    ? properties.getResourceRetriever() : new DefaultResourceRetriever();
+            properties.setResourceRetriever(new HtmlToPdfStyleSheetResourceRetriever(styleSheetCache, documentNode,
+                    properties.getBaseUri(), resourceRetriever));
+        }
+    }
+
+    /**
+     * Creates a font provider backed by the shared font set. The fonts it loads are embedded in a single PDF document,
+     * so the HTML documents rendered into the same PDF document can share it.
+     * @return a font provider that is only used by one PDF document
+     */
+    public FontProvider createFontProvider() {
+        return new BasicFontProvider(fontSet, defaultFontFamily);
+    }
+
+    /**
+     * Creates the PDF writer settings for the conversion of one HTML document
+     * @return writer properties that are only used by this conversion
+     */
+    public WriterProperties createWriterProperties() {
+        WriterProperties writerProperties = new WriterProperties()
+                .setCompressionLevel(compressionLevel)
+                .setFullCompressionMode(fullCompression);
+        if(smartMode){
+            writerProperties.useSmartMode();
+        }
+        return writerProperties;
+    }
+
+    /**
+     * Creates the JSON representation of the PDF writer settings, reported along with the size and time of the
+     * rendered PDF files
+     * @return the JSON writer settings
+     */
+    public JsonObject writerJson() {
+        JsonObject writer = new JsonObject();
+        writer.addProperty("profile", writerProfile.name());
+        writer.addProperty("compressionLevel", compressionLevel);
+        writer.addProperty("fullCompression", fullCompression);
+        writer.addProperty("smartMode", smartMode);
+        writer.addProperty("immediateFlush", converterProperties.isImmediateFlush());
+        return writer;
+    }
+
+    /**
+     * Gets the base URI the resources of an HTML file are resolved against
+     * @param sourceFile the source HTML file
+     * @return the configured base URI, or the URI of the directory of the HTML file if none is configured
+     */
+    public String getBaseUri(File sourceFile) {
+        return baseUri != null ? baseUri : sourceFile.getAbsoluteFile().getParentFile().toURI().toString();
+    }
+
+    /**
+     * Gets the fingerprint of the settings that change the rendered PDF documents: the media type, the writer settings
+     * and the fonts
+     * @return the hexadecimal hash of the rendering settings
+     */
+    public String getRenderingFingerprint() {
+        return renderingFingerprint;
+    }
+
+    /**
+     * Gets the retriever of the resources referenced by the HTML documents
+     * @return the shared resource cache, or the default iText retriever if the cache is disabled
+     */
+    public IResourceRetriever getResourceRetriever() {
+        return resourceCache != null ? resourceCache : new DefaultResourceRetriever();
+    }
+
+    /**
+     * Gets the resource cache shared by the conversions
+     * @return the resource cache, or null if it is disabled
+     */
+    public HtmlToPdfResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    /**
+     * Gets the stylesheet cache shared by the conversions
+     * @return the stylesheet cache, or null if it is disabled
+     */
+    public HtmlToPdfStyleSheetCache getStyleSheetCache() {
+        return styleSheetCache;
+    }
+
+    /**
+     * Creates the converter properties every conversion starts from, reading the resources through the resource cache
+     * if there is one
+     * @param configuration the converter configuration
+     * @return the base converter properties
+     */
+    private ConverterProperties createConverterProperties(HtmlToPdfConfiguration configuration) {
+        ConverterProperties properties = new ConverterProperties()
+                .setMediaDeviceDescription(new MediaDeviceDescription(configuration.getMediaType()))
+                .setTagWorkerFactory(new HtmlToPdfCancellableTagWorkerFactory())
+                .setImmediateFlush(configuration.isImmediateFlush());
+        if(resourceCache != null){
+            properties.setResourceRetriever(resourceCache);
+        }
+        return properties;
+    }
+
+    /**
+     * Computes the fingerprint of the settings that change the rendered PDF documents
+     * @param configuration the converter configuration
+     * @return the hexadecimal hash of the rendering settings
+     */
+    private String createRenderingFingerprint(HtmlToPdfConfiguration configuration) {
+        List<String> fontNames = new ArrayList<>();
+        for(FontInfo fontInfo : fontSet.getFonts()){
+            fontNames.add(String.valueOf(fontInfo.getFontName()));
+        }
+        Collections.sort(fontNames);
+        return HtmlToPdfFileHasher.hash(String.join("\n", configuration.getMediaType(), writerProfile.name(),
+                String.valueOf(compressionLevel), String.valueOf(fullCompression), String.valueOf(smartMode),
+                defaultFontFamily, String.join("|", fontNames)));
+    }
+
+    /**
+     * Loads the programs of the default font family, so the first conversions don't pay for parsing them
+     */
+    private void warmUpDefaultFonts() {
+        FontProvider fontProvider = new BasicFontProvider(fontSet, defaultFontFamily);
+        String family = defaultFontFamily.toLowerCase(Locale.ROOT);
+        for(FontInfo fontInfo : fontSet.getFonts()){
+            if(family.equals(fontInfo.getDescriptor().getFamilyNameLowerCase())){
+                fontProvider.getPdfFont(fontInfo);
+            }
+        }
+        fontProvider.reset();
+    }
+}
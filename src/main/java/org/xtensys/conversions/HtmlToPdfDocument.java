@@ -0,0 +1,75 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * PDF document that remembers its number of pages when it is closed, as a closed document can no longer be queried.
+ * <p>
+ * The document also makes the conversion cancellable: once the thread rendering it is interrupted, the next use of the
+ * document by the layout throws a {@link CancellationException}, which iText checks on almost every operation on the
+ * document.
+ */
+public class HtmlToPdfDocument extends PdfDocument {
+    private int pageCount;
+
+    /**
+     * Constructor for the PDF document
+     * @param writer the writer the document is written to
+     */
+    public HtmlToPdfDocument(PdfWriter writer) {
+        super(writer);
+    }
+
+    /**
+     * Records the number of pages and closes the document
+     */
+    @Override
+    public void close() {
+        if(!this.isClosed()){
+            pageCount = this.getNumberOfPages();
+        }
+        super.close();
+    }
+
+    /**
+     * Checks the document is still open, and that the conversion has not been cancelled by interrupting its thread
+     * @throws CancellationException if the thread rendering the document is interrupted
+     */
+    @Override
+    protected void checkClosingStatus() {
+        super.checkClosingStatus();
+        if(Thread.currentThread().isInterrupted()){
+            throw new CancellationException("The conversion was interrupted");
+        }
+    }
+
+    /**
+     * Gets the number of pages of the document once it is closed
+     * @return the number of pages of the closed document
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+/**
+ * The modes in which the converter can execute the HTML to PDF conversions
+ */
+public enum HtmlToPdfExecutionMode {
+    /**
+     * Conversions are executed one at a time on the calling thread
+     */
+    SEQUENTIAL,
+    /**
+     * Conversions are executed on a fixed size pool of platform threads
+     */
+    FIXED_POOL,
+    /**
+     * Conversions are executed on virtual threads, bounded by the configured thread count
+     */
+    VIRTUAL_THREADS
+}
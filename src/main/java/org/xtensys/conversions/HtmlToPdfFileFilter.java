@@ -0,0 +1,271 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import com.google.gson.JsonObject;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which files of the source directory are converted, so stylesheets, images and other assets are skipped
+ * during the walk instead of being handed to the renderer. A file is converted if its extension is allowed, it matches
+ * an include pattern and no exclude pattern and, when content sniffing is enabled, it starts with markup. The patterns
+ * are globs matched against the path relative to the source directory, and a directory matching an exclude pattern is
+ * not walked at all. The filtered files are counted per reason for the run summary.
+ */
+public class HtmlToPdfFileFilter {
+    private static final int SNIFF_LENGTH = 512;
+    private final Set<String> extensions = new HashSet<>();
+    private final List<PathMatcher> includeMatchers = new ArrayList<>();
+    private final List<PathMatcher> excludeMatchers = new ArrayList<>();
+    private final boolean contentSniffing;
+    private final AtomicLong extensionCount = new AtomicLong();
+    private final AtomicLong patternCount = new AtomicLong();
+    private final AtomicLong contentCount = new AtomicLong();
+    private final AtomicLong directoryCount = new AtomicLong();
+
+    /**
+     * Constructor for the file filter
+     * @param configuration the converter configuration, which must have been validated
+     */
+    public HtmlToPdfFileFilter(HtmlToPdfConfiguration configuration) {
+        for(String extension : configuration.getExtensions()){
+            extensions.add(extension.toLowerCase(Locale.ROOT));
+        }
+        for(String pattern : configuration.getIncludePatterns()){
+            includeMatchers.add(createMatcher(pattern));
+        }
+        for(String pattern : configuration.getExcludePatterns()){
+            excludeMatchers.add(createMatcher(pattern));
+        }
+        this.contentSniffing = configuration.isContentSniffing();
+    }
+
+    /**
+     * Creates the matcher of a glob pattern
+     * @param pattern the glob pattern
+     * @return the path matcher of the pattern
+     * @throws java.util.regex.PatternSyntaxException if the pattern is not a valid glob
+     */
+    public static PathMatcher createMatcher(String pattern) {
+        return FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    }
+
+    /**
+     * Tests whether the files of a directory may be converted, which is the case unless the directory matches an
+     * exclude pattern
+     * @param relativePath the path of the directory relative to the source directory, using forward slashes
+     * @return true if the directory is walked
+     */
+    public boolean acceptsDirectory(String relativePath) {
+        if(relativePath.isEmpty() || !matchesAny(excludeMatchers, relativePath)){
+            return true;
+        }
+        directoryCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Tests whether a file is converted, checking the extension and the patterns before reading the start of the file
+     * @param file the source file
+     * @param relativePath the path of the file relative to the source directory, using forward slashes
+     * @return true if the file is converted
+     */
+    public boolean accepts(Path file, String relativePath) {
+        return count(this.reject(relativePath, false, file, null));
+    }
+
+    /**
+     * Tests whether a file found outside of a walk is converted, which also requires that none of its parent
+     * directories matches an exclude pattern
+     * @param file the source file
+     * @param relativePath the path of the file relative to the source directory, using forward slashes
+     * @return true if the file is converted
+     */
+    public boolean acceptsWithParents(Path file, String relativePath) {
+        return count(this.reject(relativePath, true, file, null));
+    }
+
+    /**
+     * Tests whether an entry of a source archive is converted. None of the parent directories of the entry may match
+     * an exclude pattern.
+     * @param relativePath the path of the entry in the archive, using forward slashes
+     * @param content the content of the entry
+     * @return true if the entry is converted
+     */
+    public boolean accepts(String relativePath, byte[] content) {
+        return count(this.reject(relativePath, true, null, content));
+    }
+
+    /**
+     * Tests whether an entry of a source archive would be converted, without counting it as filtered out
+     * @param relativePath the path of the entry in the archive, using forward slashes
+     * @param content the content of the entry
+     * @return true if the entry would be converted
+     */
+    public boolean matches(String relativePath, byte[] content) {
+        return this.reject(relativePath, true, null, content) == null;
+    }
+
+    /**
+     * Gets the number of files and directories filtered out so far
+     * @return the number of files filtered out, plus the number of directories that were not walked
+     */
+    public long getFilteredCount() {
+        return extensionCount.get() + patternCount.get() + contentCount.get() + directoryCount.get();
+    }
+
+    /**
+     * Gets the number of files and directories filtered out, per reason
+     * @return the filter counts as a JSON object
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("extension", extensionCount.get());
+        json.addProperty("pattern", patternCount.get());
+        json.addProperty("content", contentCount.get());
+        json.addProperty("directories", directoryCount.get());
+        return json;
+    }
+
+    /**
+     * Finds the reason a file is filtered out, checking the extension and the patterns before its content
+     * @param relativePath the path of the file relative to the source directory, using forward slashes
+     * @param checkParents true to also filter out the file if one of its parent directories matches an exclude pattern
+     * @param file the file to sniff if the content is not given
+     * @param content the content of the file, or null to read the start of the file when sniffing
+     * @return the counter of the reason the file is filtered out, or null if it is converted
+     */
+    private AtomicLong reject(String relativePath, boolean checkParents, Path file, byte[] content) {
+        if(!extensions.isEmpty() && !extensions.contains(FilenameUtils.getExtension(relativePath).toLowerCase(Locale.ROOT))){
+            return extensionCount;
+        }
+        if((!includeMatchers.isEmpty() && !matchesAny(includeMatchers, relativePath)) || matchesAny(excludeMatchers, relativePath)){
+            return patternCount;
+        }
+        if(checkParents){
+            int separator = relativePath.indexOf('/');
+            while (separator >= 0){
+                if(matchesAny(excludeMatchers, relativePath.substring(0, separator))){
+                    return patternCount;
+                }
+                separator = relativePath.indexOf('/', separator + 1);
+            }
+        }
+        if(contentSniffing && !(content != null ? startsWithMarkup(content) : startsWithMarkup(file))){
+            return contentCount;
+        }
+        return null;
+    }
+
+    /**
+     * Counts a file filtered out
+     * @param rejection the counter of the reason the file is filtered out, or null if it is converted
+     * @return true if the file is converted
+     */
+    private static boolean count(AtomicLong rejection) {
+        if(rejection == null){
+            return true;
+        }
+        rejection.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Tests whether a path matches any of the matchers
+     * @param matchers the matchers
+     * @param relativePath the relative path, using forward slashes
+     * @return true if one of the matchers matches the path
+     */
+    private static boolean matchesAny(List<PathMatcher> matchers, String relativePath) {
+        if(matchers.isEmpty()){
+            return false;
+        }
+        Path path = Path.of(relativePath);
+        for(PathMatcher matcher : matchers){
+            if(matcher.matches(path)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests whether a file starts with markup: a '<' followed by a letter, '!' or '?', after an optional byte order
+     * mark and whitespace. A file holding a NUL byte in the bytes read is binary and never starts with markup.
+     * @param file the file to read
+     * @return true if the file starts with markup, false if it doesn't or can't be read
+     */
+    private static boolean startsWithMarkup(Path file) {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            return startsWithMarkup(inputStream.readNBytes(SNIFF_LENGTH));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests whether content starts with markup, looking at its first bytes only
+     * @param content the content
+     * @return true if the content starts with markup
+     */
+    private static boolean startsWithMarkup(byte[] content) {
+        int length = Math.min(content.length, SNIFF_LENGTH);
+        int position = 0;
+        int step = 1;
+        int offset = 0;
+        if(length >= 3 && (content[0] & 0xFF) == 0xEF && (content[1] & 0xFF) == 0xBB && (content[2] & 0xFF) == 0xBF){
+            position = 3;
+        }else if(length >= 2 && (content[0] & 0xFF) == 0xFF && (content[1] & 0xFF) == 0xFE){
+            position = 2;
+            step = 2;
+        }else if(length >= 2 && (content[0] & 0xFF) == 0xFE && (content[1] & 0xFF) == 0xFF){
+            position = 2;
+            step = 2;
+            offset = 1;
+        }
+        if(step == 1){
+            for(int i = 0; i < length; i++){
+                if(content[i] == 0){
+                    return false;
+                }
+            }
+        }
+        while (position + offset + step < length && Character.isWhitespace(content[position + offset])){
+            position += step;
+        }
+        if(position + offset + step >= length || content[position + offset] != '<'){
+            return false;
+        }
+        char next = (char) (content[position + offset + step] & 0xFF);
+        return Character.isLetter(next) || next == '!' || next == '?';
+    }
+}
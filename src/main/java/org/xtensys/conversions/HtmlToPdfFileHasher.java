@@ -0,0 +1,88 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Computes the content hashes of source files
+ */
+public class HtmlToPdfFileHasher {
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 8192;
+
+    private HtmlToPdfFileHasher() {
+    }
+
+    /**
+     * Computes the hash of the content of a file
+     * @param file the file to hash
+     * @return the hexadecimal SHA-256 hash of the file content
+     * @throws IOException if the file can't be read
+     */
+    public static String hash(File file) throws IOException {
+        MessageDigest messageDigest = HtmlToPdfFileHasher.createMessageDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    /**
+     * Computes the hash of a text
+     * @param text the text to hash
+     * @return the hexadecimal SHA-256 hash of the UTF-8 encoded text
+     */
+    public static String hash(String text) {
+        return HtmlToPdfFileHasher.hash(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes the hash of a byte array
+     * @param bytes the bytes to hash
+     * @return the hexadecimal SHA-256 hash of the bytes
+     */
+    public static String hash(byte[] bytes) {
+        return HexFormat.of().formatHex(HtmlToPdfFileHasher.createMessageDigest().digest(bytes));
+    }
+
+    /**
+     * Creates the message digest used for hashing
+     * @return a new message digest
+     */
+    private static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not supported by this JVM", e);
+        }
+    }
+}
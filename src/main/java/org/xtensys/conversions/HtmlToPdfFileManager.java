@@ -19,32 +19,82 @@
 
 package org.xtensys.conversions;
 
+import org.apache.commons.io.FilenameUtils;
+
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A class designed to manage all the directories needed for the converter
+ * A class designed to manage all the directories needed for the converter. The configured paths are made absolute and
+ * normalized once, so every file handed out can be compared with and relativized against any other.
  */
 public class HtmlToPdfFileManager {
     private static final String LOGGING_SUBDIRECTORY = "logs";
     private static final String PDF_SUBDIRECTORY = "pdf";
+    private static final String PDF_EXTENSION = ".pdf";
+    private static final String LEASE_SUBDIRECTORY = "leases";
+    private static final String MANIFEST_BASE_FILENAME = "html_to_pdf_manifest";
+    private static final String OUTPUT_CACHE_BASE_FILENAME = "html_to_pdf_output_cache";
+    private static final String JOURNAL_BASE_FILENAME = "html_to_pdf_journal";
+    private static final String QUARANTINE_BASE_FILENAME = "html_to_pdf_quarantine";
+    private static final String MERGE_INDEX_BASE_FILENAME = "html_to_pdf_merge_index";
+    private static final String JSON_EXTENSION = ".json";
+    private static final String TEXT_EXTENSION = ".txt";
+    private static final String ZIP_EXTENSION = ".zip";
+    private static final String PARTIAL_FILE_PREFIX = ".";
+    private static final String PARTIAL_FILE_EXTENSION = ".part";
+    private static final String PARTIAL_FILE_OWNER = "." + HtmlToPdfFileHasher.hash(ManagementFactory.getRuntimeMXBean().getName()).substring(0, 8);
+    private static final AtomicLong PARTIAL_FILE_SEQUENCE = new AtomicLong();
     private final File sourceDirectory;
     private final File targetDirectory;
     private final File pdfDirectory;
+    private final File pdfArchiveFile;
+    private final boolean sourceArchive;
     private final File logDirectory;
+    private final File manifestFile;
+    private final File outputCacheFile;
+    private final File journalFile;
+    private final File quarantineFile;
+    private final File mergeIndexFile;
+    private final File leaseDirectory;
+    private final String shardName;
 
     /**
      * Constructor for the file manager classs
      * @param htmlToPdfConfiguration the file configuration
      */
     public HtmlToPdfFileManager(HtmlToPdfConfiguration htmlToPdfConfiguration) {
-        this.sourceDirectory = new File(htmlToPdfConfiguration.getSourceDirectoryPath());
-        this.targetDirectory = new File(htmlToPdfConfiguration.getTargetDirectoryPath());
+        this.sourceDirectory = HtmlToPdfFileManager.getAbsoluteFile(htmlToPdfConfiguration.getSourceDirectoryPath());
+        this.targetDirectory = HtmlToPdfFileManager.getAbsoluteFile(htmlToPdfConfiguration.getTargetDirectoryPath());
         this.pdfDirectory = new File(targetDirectory, PDF_SUBDIRECTORY);
         this.logDirectory = new File(targetDirectory, LOGGING_SUBDIRECTORY);
+        this.shardName = htmlToPdfConfiguration.getShardCount() > 1
+                ? "shard_" + htmlToPdfConfiguration.getShardIndex() + "_of_" + htmlToPdfConfiguration.getShardCount() : null;
+        String fileSuffix = shardName != null ? "_" + shardName : "";
+        this.manifestFile = new File(targetDirectory, MANIFEST_BASE_FILENAME + fileSuffix + JSON_EXTENSION);
+        this.outputCacheFile = new File(targetDirectory, OUTPUT_CACHE_BASE_FILENAME + fileSuffix + JSON_EXTENSION);
+        this.journalFile = new File(targetDirectory, JOURNAL_BASE_FILENAME + fileSuffix + TEXT_EXTENSION);
+        this.quarantineFile = new File(targetDirectory, QUARANTINE_BASE_FILENAME + fileSuffix + JSON_EXTENSION);
+        this.mergeIndexFile = new File(targetDirectory, MERGE_INDEX_BASE_FILENAME + fileSuffix + JSON_EXTENSION);
+        this.pdfArchiveFile = htmlToPdfConfiguration.isPdfArchive()
+                ? new File(targetDirectory, PDF_SUBDIRECTORY + fileSuffix + ZIP_EXTENSION) : null;
+        this.sourceArchive = HtmlToPdfSourceArchive.isArchive(htmlToPdfConfiguration.getSourceDirectoryPath());
+        this.leaseDirectory = htmlToPdfConfiguration.getShardLeaseRunId() != null
+                ? new File(new File(targetDirectory, LEASE_SUBDIRECTORY), htmlToPdfConfiguration.getShardLeaseRunId()) : null;
+    }
+
+    /**
+     * Resolves a configured path against the working directory and removes its redundant segments
+     * @param path the configured path, absolute or relative to the working directory
+     * @return the absolute and normalized file
+     */
+    private static File getAbsoluteFile(String path) {
+        return new File(path).toPath().toAbsolutePath().normalize().toFile();
     }
 
     /**
-     * Returns the source directory
+     * Returns the source directory, or the source archive
      * @return the source directory
      */
     public File getSourceDirectory() {
@@ -67,6 +117,22 @@ public class HtmlToPdfFileManager {
         return pdfDirectory;
     }
 
+    /**
+     * Returns the zip archive the PDF files are written to instead of the pdf directory
+     * @return the PDF archive, or null if the PDF files are written to the pdf directory
+     */
+    public File getPdfArchiveFile() {
+        return pdfArchiveFile;
+    }
+
+    /**
+     * Tests whether the source is a zip or tar archive rather than a directory
+     * @return true if the HTML files are read from a source archive
+     */
+    public boolean isSourceArchive() {
+        return sourceArchive;
+    }
+
     /**
      * Returns the log directory
      * @return the log directory
@@ -75,24 +141,150 @@ public class HtmlToPdfFileManager {
         return logDirectory;
     }
 
+    /**
+     * Returns the manifest file used by the incremental conversion
+     * @return the manifest file
+     */
+    public File getManifestFile() {
+        return manifestFile;
+    }
+
+    /**
+     * Returns the index file of the output cache
+     * @return the output cache index file
+     */
+    public File getOutputCacheFile() {
+        return outputCacheFile;
+    }
+
+    /**
+     * Returns the journal of the files whose conversion is finished, used to resume an interrupted batch
+     * @return the journal file
+     */
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * Returns the record of the source files that keep failing to convert
+     * @return the quarantine file
+     */
+    public File getQuarantineFile() {
+        return quarantineFile;
+    }
+
+    /**
+     * Returns the file mapping every HTML file to the merged PDF file and the pages it was rendered to
+     * @return the merge index file
+     */
+    public File getMergeIndexFile() {
+        return mergeIndexFile;
+    }
+
+    /**
+     * Returns the directory holding the lease files of the current batch
+     * @return the lease directory, or null if lease files are not used
+     */
+    public File getLeaseDirectory() {
+        return leaseDirectory;
+    }
+
+    /**
+     * Returns the name of the shard converted by this process, which sets apart the files each shard writes to the
+     * shared target directory
+     * @return the shard name, or null if the source files are not sharded
+     */
+    public String getShardName() {
+        return shardName;
+    }
+
+    /**
+     * Gets a new hidden file a PDF file is written to before being moved into place, in the same directory so the move
+     * is atomic. The name of the partial PDF file is unique to this process and to this call, so neither two processes
+     * sharing the target directory nor two conversions to the same PDF file, such as "a.html" and "a.htm", ever write
+     * to the same partial PDF file.
+     * @param pdfFile the PDF file
+     * @return the partial PDF file
+     */
+    public static File getPartialFile(File pdfFile) {
+        return new File(pdfFile.getParentFile(), PARTIAL_FILE_PREFIX + pdfFile.getName() + PARTIAL_FILE_OWNER + "."
+                + PARTIAL_FILE_SEQUENCE.incrementAndGet() + PARTIAL_FILE_EXTENSION);
+    }
+
+    /**
+     * Gets the name of the PDF file an HTML file is converted to
+     * @param htmlFilename the name of the HTML file
+     * @return the name of the PDF file
+     */
+    public static String getPdfFilename(String htmlFilename) {
+        return FilenameUtils.getBaseName(htmlFilename) + PDF_EXTENSION;
+    }
+
+    /**
+     * Gets the path of a source file relative to the source directory, always using forward slashes
+     * @param sourceFile the source file
+     * @return the relative path of the source file
+     */
+    public String getRelativePath(File sourceFile) {
+        String relativePath = sourceDirectory.toPath().toAbsolutePath().relativize(sourceFile.toPath().toAbsolutePath()).toString();
+        return relativePath.replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Gets the PDF file a source file is converted to, recreating the subdirectory structure of the source directory
+     * in the pdf directory
+     * @param sourceFile the source file, which must be located in the source directory
+     * @return the PDF file
+     */
+    public File getPdfFile(File sourceFile) {
+        String relativePath = this.getRelativePath(sourceFile);
+        File pdfFile = new File(pdfDirectory, relativePath);
+        return new File(pdfFile.getParentFile(), HtmlToPdfFileManager.getPdfFilename(sourceFile.getName()));
+    }
+
     /**
      * Tests to see if the configured directories are valid and can be written to
      * @return true if the configured directories are valid
      */
     public boolean hasValidDirectories() {
-        boolean sourceDirectoryExists = this.testDirectory(sourceDirectory);
+        boolean sourceDirectoryExists = sourceArchive ? this.testArchive(sourceDirectory) : this.testDirectory(sourceDirectory);
         boolean targetDirectoryExists = this.testDirectory(targetDirectory);
         if(sourceDirectoryExists && targetDirectoryExists){
-            pdfDirectory.mkdirs();
-            boolean pdfDirectoryExists = this.testDirectory(pdfDirectory);
+            boolean pdfDirectoryExists = true;
+            if(pdfArchiveFile == null){
+                pdfDirectory.mkdirs();
+                pdfDirectoryExists = this.testDirectory(pdfDirectory);
+            }
             logDirectory.mkdirs();
             boolean logDirectoryExists = this.testDirectory(logDirectory);
-            return pdfDirectoryExists && logDirectoryExists;
+            boolean leaseDirectoryExists = true;
+            if(leaseDirectory != null){
+                leaseDirectory.mkdirs();
+                leaseDirectoryExists = this.testDirectory(leaseDirectory);
+            }
+            return pdfDirectoryExists && logDirectoryExists && leaseDirectoryExists;
         }else{
             return false;
         }
     }
 
+    /**
+     * Tests to see if the source archive is a file that can be read
+     * @param archive the file being tested
+     * @return true if the archive can be read
+     */
+    private boolean testArchive(File archive){
+        if(!archive.isFile()){
+            System.out.println("The specified archive does not exist: " + archive.getPath());
+            return false;
+        }
+        if(!archive.canRead()){
+            System.out.println("The specified archive can't be read: " + archive.getPath());
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Tests to see if the directory is a valid directory
      * @param directory the file being tested
@@ -0,0 +1,188 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Streams the files of the source directory to a listener as they are found, without ever holding a whole directory
+ * listing in memory. Unless the PDF files are written to an archive, the target directory of every source directory is
+ * created once, when the source directory is entered. Directories that can't be read are reported and skipped, as is the target directory if it is located
+ * inside the source directory. The files and directories rejected by the file filter are skipped without being handed
+ * to the listener.
+ */
+public class HtmlToPdfFileWalker {
+    private final Path sourceDirectory;
+    private final Path pdfDirectory;
+    private final Path excludedDirectory;
+    private final int maxDepth;
+    private final boolean followSymlinks;
+    private final boolean createTargetDirectories;
+    private final HtmlToPdfFileFilter fileFilter;
+
+    /**
+     * Receives the files found by the walker
+     */
+    public interface Listener {
+        /**
+         * Called for every file found in the source directory, in the order the files are found
+         * @param conversionTask the conversion of the file
+         * @throws IOException if the file can't be handed over, which terminates the walk
+         * @throws HtmlToPdfLoggerException if the logger can't write to file
+         * @throws InterruptedException if interrupted while handing the file over
+         */
+        void fileFound(HtmlToPdfConversionTask conversionTask) throws IOException, HtmlToPdfLoggerException, InterruptedException;
+
+        /**
+         * Tells whether the walk ends before the next file
+         * @return true to end the walk
+         */
+        default boolean isStopped() {
+            return false;
+        }
+    }
+
+    /**
+     * Constructor for the file walker
+     * @param configuration the converter configuration
+     * @param fileManager the file manager class
+     * @param fileFilter the filter deciding which files and directories are handed to the listener
+     * @throws IOException if the source or target directory can't be resolved
+     */
+    public HtmlToPdfFileWalker(HtmlToPdfConfiguration configuration, HtmlToPdfFileManager fileManager, HtmlToPdfFileFilter fileFilter) throws IOException {
+        this.sourceDirectory = fileManager.getSourceDirectory().toPath().toRealPath();
+        this.pdfDirectory = (fileManager.getPdfArchiveFile() != null ? fileManager.getPdfArchiveFile() : fileManager.getPdfDirectory())
+                .toPath().toAbsolutePath();
+        this.createTargetDirectories = fileManager.getPdfArchiveFile() == null;
+        this.excludedDirectory = fileManager.getTargetDirectory().toPath().toRealPath();
+        this.maxDepth = configuration.getMaxDepth();
+        this.followSymlinks = configuration.isFollowSymlinks();
+        this.fileFilter = fileFilter;
+    }
+
+    /**
+     * Walks the source directory, handing every file found to the listener
+     * @param listener the listener the files are handed to
+     * @throws IOException if the source directory can't be walked or the listener fails to take a file
+     * @throws HtmlToPdfLoggerException if the listener can't write to the log file
+     * @throws InterruptedException if interrupted while handing a file over
+     */
+    public void walk(Listener listener) throws IOException, HtmlToPdfLoggerException, InterruptedException {
+        Set<FileVisitOption> options = followSymlinks ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+        Visitor visitor = new Visitor(listener);
+        Files.walkFileTree(sourceDirectory, options, maxDepth, visitor);
+        if(visitor.loggerException != null){
+            throw visitor.loggerException;
+        }
+        if(visitor.interruptedException != null){
+            throw visitor.interruptedException;
+        }
+    }
+
+    /**
+     * Gets the target directory of a source directory
+     * @param directory the source directory
+     * @return the directory the PDF files of the source directory are written to, inside the PDF archive if one is
+     *         used
+     */
+    private Path getTargetDirectory(Path directory) {
+        return pdfDirectory.resolve(sourceDirectory.relativize(directory).toString());
+    }
+
+    /**
+     * Gets the path of a source file or directory relative to the source directory
+     * @param path the source file or directory
+     * @return the relative path, using forward slashes
+     */
+    private String getRelativePath(Path path) {
+        return sourceDirectory.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * The file visitor handing the files over to the listener, keeping the exceptions of the listener so they can be
+     * rethrown once the walk is terminated
+     */
+    private class Visitor extends SimpleFileVisitor<Path> {
+        private final Listener listener;
+        private HtmlToPdfLoggerException loggerException;
+        private InterruptedException interruptedException;
+
+        /**
+         * Constructor for the visitor
+         * @param listener the listener the files are handed to
+         */
+        private Visitor(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+            if(listener.isStopped()){
+                return FileVisitResult.TERMINATE;
+            }
+            if(directory.startsWith(excludedDirectory) || !fileFilter.acceptsDirectory(getRelativePath(directory))){
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            if(createTargetDirectories){
+                Files.createDirectories(getTargetDirectory(directory));
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+            if(listener.isStopped()){
+                return FileVisitResult.TERMINATE;
+            }
+            if(!attributes.isRegularFile()){
+                return FileVisitResult.CONTINUE;
+            }
+            String relativePath = getRelativePath(file);
+            if(!fileFilter.accepts(file, relativePath)){
+                return FileVisitResult.CONTINUE;
+            }
+            Path pdfFile = getTargetDirectory(file.getParent()).resolve(HtmlToPdfFileManager.getPdfFilename(file.getFileName().toString()));
+            try {
+                listener.fileFound(new HtmlToPdfConversionTask(file.toFile(), pdfFile.toFile(), relativePath));
+            } catch (HtmlToPdfLoggerException e) {
+                loggerException = e;
+                return FileVisitResult.TERMINATE;
+            } catch (InterruptedException e) {
+                interruptedException = e;
+                return FileVisitResult.TERMINATE;
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exception) {
+            System.out.println("Skipping a path that can't be read: " + file + " (" + exception + ")");
+            return FileVisitResult.CONTINUE;
+        }
+    }
+}
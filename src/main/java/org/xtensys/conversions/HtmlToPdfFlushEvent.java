@@ -0,0 +1,41 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a flush of the conversion log, or of a sync of the journal to the storage device
+ */
+@Name("org.xtensys.conversions.Flush")
+@Label("Log Flush")
+@Category("HTML to PDF")
+@Description("Flush of the conversion log or sync of the journal")
+public class HtmlToPdfFlushEvent extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Entries")
+    @Description("Number of entries written since the previous flush")
+    int entryCount;
+}
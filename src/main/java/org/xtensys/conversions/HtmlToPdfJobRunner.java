@@ -0,0 +1,227 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the jobs of a configuration one after another in the same process. The jobs share the fonts, the resource
+ * cache, the output buffers, the worker pool, the memory budget and the watchdog, so only the first job pays for
+ * warming them up. Every job writes its own logs and run summary to its target directory, and the totals of all the
+ * jobs are written to a jobs summary.
+ */
+public class HtmlToPdfJobRunner {
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final String BASE_FILENAME = "html_to_pdf_jobs_summary_";
+    private static final String EXTENSION = ".json";
+    private static final String LOGGING_SUBDIRECTORY = "logs";
+    private static final String[] SUMMED_PROPERTIES = {"inputBytes", "outputBytes", "pages", "renderedInputBytes"};
+    private final HtmlToPdfConfiguration configuration;
+    private final boolean resume;
+
+    /**
+     * Constructor for the job runner
+     * @param configuration the converter configuration holding the jobs and the settings of the shared resources
+     * @param resume true to skip the files the journal of each job records as finished by an interrupted batch
+     */
+    public HtmlToPdfJobRunner(HtmlToPdfConfiguration configuration, boolean resume) {
+        this.configuration = configuration;
+        this.resume = resume;
+    }
+
+    /**
+     * Runs every job, carrying on with the next job if one fails, and reports the totals of all the jobs
+     * @return true if every job converted, skipped or copied all of its HTML files from the cache without failure
+     * @throws HtmlToPdfConfigurationException if the jobs are not valid
+     * @throws IOException if the jobs summary can't be written
+     */
+    public boolean run() throws HtmlToPdfConfigurationException, IOException {
+        LocalDateTime startTime = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        List<HtmlToPdfConfiguration> jobs = configuration.getJobs();
+        JsonArray jobSummaries = new JsonArray();
+        JsonObject totals = new JsonObject();
+        boolean success = true;
+        HtmlToPdfResourceCache resourceCache;
+        HtmlToPdfStyleSheetCache styleSheetCache;
+        HtmlToPdfMemoryBudget memoryBudget;
+        long warmUpNanos;
+        try (HtmlToPdfSharedResources sharedResources = new HtmlToPdfSharedResources(configuration)) {
+            resourceCache = sharedResources.getConverterPropertiesFactory().getResourceCache();
+            styleSheetCache = sharedResources.getConverterPropertiesFactory().getStyleSheetCache();
+            memoryBudget = sharedResources.getMemoryBudget();
+            warmUpNanos = sharedResources.getWarmUpNanos();
+            for(int i = 0; i < jobs.size(); i++){
+                HtmlToPdfConfiguration job = jobs.get(i);
+                System.out.println("Running job " + (i + 1) + " of " + jobs.size() + ": " + job.getName());
+                JsonObject jobSummary = this.runJob(job, sharedResources);
+                success &= jobSummary.get("success").getAsBoolean();
+                HtmlToPdfJobRunner.addTotals(totals, jobSummary);
+                jobSummaries.add(jobSummary);
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        JsonObject summary = new JsonObject();
+        summary.addProperty("startTime", startTime.toString());
+        summary.addProperty("elapsedMillis", Duration.ofNanos(elapsedNanos).toMillis());
+        summary.addProperty("success", success);
+        if(warmUpNanos > 0){
+            summary.addProperty("warmUpMillis", warmUpNanos / 1_000_000);
+        }
+        for(Map.Entry<String, JsonElement> total : totals.entrySet()){
+            summary.add(total.getKey(), total.getValue());
+        }
+        double elapsedSeconds = elapsedNanos / 1_000_000_000d;
+        long convertedFiles = totals.has("files") ? totals.getAsJsonObject("files").get("success").getAsLong() : 0;
+        summary.addProperty("filesPerSecond", elapsedSeconds > 0 ? convertedFiles / elapsedSeconds : 0);
+        if(resourceCache != null){
+            JsonObject cache = new JsonObject();
+            cache.addProperty("hits", resourceCache.getHits());
+            cache.addProperty("misses", resourceCache.getMisses());
+            cache.addProperty("evictions", resourceCache.getEvictions());
+            summary.add("resourceCache", cache);
+        }
+        if(styleSheetCache != null){
+            summary.add("styleSheetCache", styleSheetCache.toJson());
+        }
+        if(memoryBudget != null){
+            summary.add("memoryBudget", memoryBudget.toJson());
+        }
+        summary.add("jobs", jobSummaries);
+
+        for(JsonElement jobSummary : jobSummaries){
+            JsonObject job = jobSummary.getAsJsonObject();
+            System.out.println(job.get("name").getAsString() + ": " + (job.has("files")
+                    ? job.getAsJsonObject("files").get("total").getAsLong() + " files, "
+                    + job.getAsJsonObject("files").get("failure").getAsLong() + " failed"
+                    : job.get("error").getAsString()));
+        }
+        JsonObject files = totals.has("files") ? totals.getAsJsonObject("files") : new JsonObject();
+        System.out.println("Ran " + jobs.size() + " jobs in " + Duration.ofNanos(elapsedNanos).toSeconds() + " seconds: "
+                + (files.has("total") ? files.get("total").getAsLong() : 0) + " files processed, "
+                + (files.has("failure") ? files.get("failure").getAsLong() : 0) + " failed");
+        if(configuration.getTargetDirectoryPath() != null){
+            File summaryFile = HtmlToPdfJobRunner.write(new File(configuration.getTargetDirectoryPath(), LOGGING_SUBDIRECTORY),
+                    startTime, summary);
+            System.out.println("Jobs summary written to: " + summaryFile.getPath());
+        }
+        return success;
+    }
+
+    /**
+     * Runs one job, reporting a job whose directories are invalid or whose conversion can't be executed as failed
+     * instead of stopping the other jobs
+     * @param job the configuration of the job
+     * @param sharedResources the resources shared by the jobs
+     * @return the JSON summary of the job
+     */
+    private JsonObject runJob(HtmlToPdfConfiguration job, HtmlToPdfSharedResources sharedResources) {
+        JsonObject jobSummary = new JsonObject();
+        jobSummary.addProperty("name", job.getName());
+        jobSummary.addProperty("source", job.getSourceDirectoryPath());
+        jobSummary.addProperty("target", job.getTargetDirectoryPath());
+        HtmlToPdfFileManager fileManager = new HtmlToPdfFileManager(job);
+        if(!fileManager.hasValidDirectories()){
+            jobSummary.addProperty("success", false);
+            jobSummary.addProperty("error", "The job contains invalid directories");
+            return jobSummary;
+        }
+        HtmlToPdfConverter converter = null;
+        boolean success;
+        String error = null;
+        try {
+            converter = new HtmlToPdfConverter(job, fileManager, resume, sharedResources);
+            success = converter.executeConversion();
+        } catch (IOException | HtmlToPdfLoggerException e) {
+            success = false;
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        jobSummary.addProperty("success", success);
+        if(error != null){
+            jobSummary.addProperty("error", error);
+        }
+        JsonObject converterSummary = converter != null ? converter.getSummary() : null;
+        if(converterSummary != null){
+            jobSummary.addProperty("elapsedMillis", converterSummary.get("elapsedMillis").getAsLong());
+            jobSummary.add("files", converterSummary.get("files"));
+            for(String property : SUMMED_PROPERTIES){
+                jobSummary.add(property, converterSummary.get(property));
+            }
+            jobSummary.add("latencyMillis", converterSummary.get("latencyMillis"));
+        }else if(error == null){
+            jobSummary.addProperty("error", "The job did not finish");
+        }
+        return jobSummary;
+    }
+
+    /**
+     * Adds the file counts and sizes of a job to the totals of all the jobs
+     * @param totals the totals of all the jobs
+     * @param jobSummary the JSON summary of the job
+     */
+    private static void addTotals(JsonObject totals, JsonObject jobSummary) {
+        if(!jobSummary.has("files")){
+            return;
+        }
+        if(!totals.has("files")){
+            totals.add("files", new JsonObject());
+        }
+        JsonObject files = totals.getAsJsonObject("files");
+        for(Map.Entry<String, JsonElement> count : jobSummary.getAsJsonObject("files").entrySet()){
+            files.addProperty(count.getKey(), (files.has(count.getKey()) ? files.get(count.getKey()).getAsLong() : 0)
+                    + count.getValue().getAsLong());
+        }
+        for(String property : SUMMED_PROPERTIES){
+            totals.addProperty(property, (totals.has(property) ? totals.get(property).getAsLong() : 0)
+                    + jobSummary.get(property).getAsLong());
+        }
+    }
+
+    /**
+     * Writes the jobs summary to a new JSON file in the logs directory
+     * @param logDirectory the logs directory
+     * @param startTime the time the jobs started
+     * @param summary the JSON jobs summary
+     * @return the jobs summary file
+     * @throws IOException if the jobs summary file can't be written
+     */
+    private static File write(File logDirectory, LocalDateTime startTime, JsonObject summary) throws IOException {
+        Files.createDirectories(logDirectory.toPath());
+        File summaryFile = new File(logDirectory, BASE_FILENAME + TIMESTAMP_FORMATTER.format(startTime) + EXTENSION);
+        try (Writer writer = Files.newBufferedWriter(summaryFile.toPath(), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(summary, writer);
+        }
+        return summaryFile;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only journal of the files whose conversion is finished, so an interrupted batch can be resumed.
+ * <p>
+ * Each finished file is appended as a {@code STATUS|relative path} line. The lines are buffered and written and
+ * fsynced in batches, every configured number of entries or interval, and when the journal is closed. A file is only
+ * journaled once its PDF file has been moved into place, so a PDF file that was half written when the process died is
+ * never taken for a finished one. A journal cut in the middle of a line by a crash is truncated to its last complete
+ * line when it is resumed.
+ */
+public class HtmlToPdfJournal implements AutoCloseable {
+    private static final String DELIMITER = "|";
+    private static final char END_OF_LINE = '\n';
+    private final File journalFile;
+    private final FileChannel channel;
+    private final Map<String, HtmlToPdfConversionStatus> finishedFiles = new HashMap<>();
+    private final int syncEntryCount;
+    private final long syncIntervalNanos;
+    private final StringBuilder pendingLines = new StringBuilder();
+    private int pendingEntryCount;
+    private long lastSyncNanos = System.nanoTime();
+
+    /**
+     * Constructor for the journal, starting a new journal or resuming the existing one
+     * @param journalFile the journal file
+     * @param resume true to read the files already finished from the existing journal and append to it, false to
+     *               start a new journal
+     * @param syncEntryCount the maximum number of entries buffered before the journal is fsynced
+     * @param syncIntervalMillis the maximum time an entry is buffered before the journal is fsynced, checked whenever an
+     *                           entry is added
+     * @throws IOException if the journal can't be read or opened
+     */
+    public HtmlToPdfJournal(File journalFile, boolean resume, int syncEntryCount, long syncIntervalMillis) throws IOException {
+        this.journalFile = journalFile;
+        this.syncEntryCount = syncEntryCount;
+        this.syncIntervalNanos = syncIntervalMillis * 1_000_000;
+        if(resume && journalFile.exists()){
+            this.channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.channel.truncate(this.readFinishedFiles(journalFile));
+            this.channel.position(this.channel.size());
+        }else{
+            this.channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+    }
+
+    /**
+     * Tests if a file was already converted, skipped or copied from the cache by the run being resumed. Failed files
+     * are converted again.
+     * @param relativePath the path of the source file relative to the source directory
+     * @return true if the file doesn't need to be converted again
+     */
+    public synchronized boolean isFinished(String relativePath) {
+        HtmlToPdfConversionStatus status = finishedFiles.get(relativePath);
+        return status != null && status != HtmlToPdfConversionStatus.FAILURE;
+    }
+
+    /**
+     * Gets the number of files that don't need to be converted again
+     * @return the number of files finished by the run being resumed
+     */
+    public synchronized long getFinishedCount() {
+        return finishedFiles.values().stream().filter(status -> status != HtmlToPdfConversionStatus.FAILURE).count();
+    }
+
+    /**
+     * Appends a finished file to the journal, fsyncing the journal if enough entries or time have accumulated
+     * @param relativePath the path of the source file relative to the source directory
+     * @param status the outcome of the conversion
+     * @throws IOException if the journal can't be written
+     */
+    public synchronized void record(String relativePath, HtmlToPdfConversionStatus status) throws IOException {
+        pendingLines.append(status.name()).append(DELIMITER).append(relativePath).append(END_OF_LINE);
+        pendingEntryCount++;
+        if(pendingEntryCount >= syncEntryCount || System.nanoTime() - lastSyncNanos >= syncIntervalNanos){
+            this.sync();
+        }
+    }
+
+    /**
+     * Writes and fsyncs the buffered entries, then closes the journal
+     * @throws IOException if the journal can't be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            this.sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the buffered entries and forces them to the storage device
+     * @throws IOException if the journal can't be written
+     */
+    private void sync() throws IOException {
+        if(pendingEntryCount > 0){
+            HtmlToPdfFlushEvent event = new HtmlToPdfFlushEvent();
+            event.begin();
+            ByteBuffer buffer = ByteBuffer.wrap(pendingLines.toString().getBytes(StandardCharsets.UTF_8));
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            channel.force(false);
+            event.file = journalFile.getPath();
+            event.entryCount = pendingEntryCount;
+            event.commit();
+            pendingLines.setLength(0);
+            pendingEntryCount = 0;
+        }
+        lastSyncNanos = System.nanoTime();
+    }
+
+    /**
+     * Reads the files finished by the run being resumed, the latest entry of a file winning
+     * @param journalFile the journal file
+     * @return the length of the complete lines of the journal
+     * @throws IOException if the journal can't be read
+     */
+    private long readFinishedFiles(File journalFile) throws IOException {
+        byte[] bytes = Files.readAllBytes(journalFile.toPath());
+        int completeLength = 0;
+        for(int i = 0; i < bytes.length; i++){
+            if(bytes[i] == END_OF_LINE){
+                this.readLine(new String(bytes, completeLength, i - completeLength, StandardCharsets.UTF_8));
+                completeLength = i + 1;
+            }
+        }
+        return completeLength;
+    }
+
+    /**
+     * Reads a journal line, ignoring lines that are not valid entries
+     * @param line the journal line
+     */
+    private void readLine(String line) {
+        int delimiterIndex = line.indexOf(DELIMITER);
+        if(delimiterIndex < 0){
+            return;
+        }
+        try {
+            HtmlToPdfConversionStatus status = HtmlToPdfConversionStatus.valueOf(line.substring(0, delimiterIndex));
+            finishedFiles.put(line.substring(delimiterIndex + 1), status);
+        } catch (IllegalArgumentException e) {
+            // not an entry written by this journal
+        }
+    }
+}
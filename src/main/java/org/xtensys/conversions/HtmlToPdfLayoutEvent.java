@@ -0,0 +1,41 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the layout of a parsed HTML document: resolving its styles, loading its resources and laying
+ * out its pages. With immediate flush, the pages are written as soon as they are laid out, within this event.
+ */
+@Name("org.xtensys.conversions.Layout")
+@Label("PDF Layout")
+@Category("HTML to PDF")
+@Description("Style resolution, resource loading and layout of the pages of a parsed HTML document")
+@StackTrace(false)
+public class HtmlToPdfLayoutEvent extends Event {
+    @Label("Pages")
+    @Description("Number of pages laid out so far")
+    int pageCount;
+}
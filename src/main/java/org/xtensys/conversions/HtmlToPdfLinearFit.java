@@ -0,0 +1,89 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+/**
+ * Fits a cost to a fixed part plus a part proportional to a size with the least squares method. With fewer than two
+ * distinct sizes the slope can't be fitted, so the cost is the mean cost as a fixed part. A fit with a negative part
+ * falls back to a cost proportional to the size. Not thread safe.
+ */
+public class HtmlToPdfLinearFit {
+    private long count;
+    private double sumSizes;
+    private double sumCosts;
+    private double sumSquaredSizes;
+    private double sumSizesTimesCosts;
+
+    /**
+     * Adds a measurement to the fit
+     * @param size the size, for example in bytes
+     * @param cost the cost measured for the size, for example in nanoseconds
+     */
+    public void add(double size, double cost) {
+        count++;
+        sumSizes += size;
+        sumCosts += cost;
+        sumSquaredSizes += size * size;
+        sumSizesTimesCosts += size * cost;
+    }
+
+    /**
+     * Gets the number of measurements of the fit
+     * @return the number of measurements
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the fixed part of the cost
+     * @return the cost of a size of 0, never negative
+     */
+    public double getFixedCost() {
+        return this.fit()[0];
+    }
+
+    /**
+     * Gets the part of the cost proportional to the size
+     * @return the cost per unit of size, never negative
+     */
+    public double getCostPerUnit() {
+        return this.fit()[1];
+    }
+
+    /**
+     * Computes the fit
+     * @return the fixed cost and the cost per unit of size
+     */
+    private double[] fit() {
+        double costPerUnit = 0;
+        double fixedCost = count > 0 ? sumCosts / count : 0;
+        double denominator = count * sumSquaredSizes - sumSizes * sumSizes;
+        if(denominator > 0){
+            costPerUnit = (count * sumSizesTimesCosts - sumSizes * sumCosts) / denominator;
+            fixedCost = (sumCosts - costPerUnit * sumSizes) / count;
+        }
+        if(costPerUnit < 0 || fixedCost < 0){
+            costPerUnit = sumSquaredSizes > 0 ? sumSizesTimesCosts / sumSquaredSizes : 0;
+            fixedCost = 0;
+        }
+        return new double[]{fixedCost, costPerUnit};
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the log files written by the shards of a batch into a single log file ordered by timestamp.
+ * <p>
+ * The entries of each shard log file are already in timestamp order, so the files are merged as streams and only one
+ * entry per file is held in memory. Entries logged in the same second keep the order of the shard log files.
+ */
+public class HtmlToPdfLogMerger {
+    private static final String SHARD_LOG_PREFIX = HtmlToPdfLogger.BASE_FILENAME + "shard_";
+    private static final String MERGED_LOG_PREFIX = HtmlToPdfLogger.BASE_FILENAME + "merged_";
+
+    /**
+     * Constructor is private as this class only holds static methods
+     */
+    private HtmlToPdfLogMerger() {
+    }
+
+    /**
+     * Merges every shard log file of the logs directory into a new merged log file
+     * @param logDirectory the logs directory shared by the shards
+     * @return the merged log file, or null if the logs directory holds no shard log file
+     * @throws IOException if a log file can't be read or the merged log file can't be written
+     */
+    public static File merge(File logDirectory) throws IOException {
+        File[] shardLogFiles = logDirectory.listFiles((directory, name) ->
+                name.startsWith(SHARD_LOG_PREFIX) && name.endsWith(HtmlToPdfLogger.EXTENSION));
+        if(shardLogFiles == null || shardLogFiles.length == 0){
+            return null;
+        }
+        Arrays.sort(shardLogFiles);
+        File mergedLogFile = new File(logDirectory, MERGED_LOG_PREFIX
+                + HtmlToPdfLogger.TIMESTAMP_FORMATTER.format(LocalDateTime.now()) + HtmlToPdfLogger.EXTENSION);
+        List<BufferedReader> readers = new ArrayList<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(mergedLogFile.toPath(), Charset.defaultCharset())) {
+            PriorityQueue<Line> lines = new PriorityQueue<>(Comparator.comparing(Line::timestamp).thenComparingInt(Line::fileIndex));
+            for(File shardLogFile : shardLogFiles){
+                BufferedReader reader = Files.newBufferedReader(shardLogFile.toPath(), Charset.defaultCharset());
+                readers.add(reader);
+                reader.readLine();
+                HtmlToPdfLogMerger.readLine(reader, readers.size() - 1, lines);
+            }
+            writer.append(HtmlToPdfLogger.HEADER);
+            while(!lines.isEmpty()){
+                Line line = lines.poll();
+                writer.newLine();
+                writer.append(line.text());
+                HtmlToPdfLogMerger.readLine(readers.get(line.fileIndex()), line.fileIndex(), lines);
+            }
+        } finally {
+            for(BufferedReader reader : readers){
+                reader.close();
+            }
+        }
+        return mergedLogFile;
+    }
+
+    /**
+     * Reads the next entry of a shard log file
+     * @param reader the reader of the shard log file
+     * @param fileIndex the index of the shard log file
+     * @param lines the entries waiting to be merged
+     * @throws IOException if the shard log file can't be read
+     */
+    private static void readLine(BufferedReader reader, int fileIndex, PriorityQueue<Line> lines) throws IOException {
+        String text;
+        while((text = reader.readLine()) != null){
+            if(!text.isEmpty()){
+                int delimiterIndex = text.indexOf(HtmlToPdfLogger.DELIMITER);
+                lines.add(new Line(delimiterIndex < 0 ? text : text.substring(0, delimiterIndex), fileIndex, text));
+                return;
+            }
+        }
+    }
+
+    /**
+     * An entry of a shard log file waiting to be merged
+     * @param timestamp the timestamp of the entry, which sorts in chronological order
+     * @param fileIndex the index of the shard log file
+     * @param text the entry
+     */
+    private record Line(String timestamp, int fileIndex, String text) {
+    }
+}
@@ -23,121 +23,290 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Logging class for the application
+ * Logging class for the application.
+ * <p>
+ * The log methods can be called from any thread. They hand the entries to a dedicated writer thread through a bounded
+ * queue, blocking only while the queue is full. The writer thread flushes the log file every time the configured
+ * number of entries has been written or the configured interval has elapsed, so little is lost if the process dies.
  */
 public class HtmlToPdfLogger {
-    private static final String HEADER = "Timestamp|Code|Message|HTML File|PDF File";
-    private static final String TIMESTAMP_FORMAT = "yyyyMMdd_HHmmss";
-    private static final String BASE_FILENAME = "html_to_pdf_log_";
-    private static final String EXTENSION = ".txt";
-    private static final String DELIMITER = "|";
+    static final String HEADER = "Timestamp|Code|Message|HTML File|PDF File";
+    static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    static final String BASE_FILENAME = "html_to_pdf_log_";
+    static final String EXTENSION = ".txt";
+    static final String DELIMITER = "|";
     private static final String PDF_CONVERSION_SUCCESS_CODE = "0";
     private static final String PDF_CONVERSION_SUCCESS_MESSAGE = "PDF CONVERSION SUCCESS";
     private static final String PDF_CONVERSION_ERROR_CODE = "1";
     private static final String PDF_CONVERSION_ERROR_MESSAGE = "PDF CONVERSION FAILURE";
-    private final SimpleDateFormat sdf;
+    private static final String PDF_CONVERSION_SKIPPED_CODE = "2";
+    private static final String PDF_CONVERSION_SKIPPED_MESSAGE = "PDF CONVERSION SKIPPED";
+    private static final String PDF_CONVERSION_CACHED_CODE = "3";
+    private static final String PDF_CONVERSION_CACHED_MESSAGE = "PDF COPIED FROM CACHE";
+    private static final String PDF_CONVERSION_QUARANTINED_CODE = "4";
+    private static final String PDF_CONVERSION_QUARANTINED_MESSAGE = "PDF CONVERSION QUARANTINED";
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int DEFAULT_FLUSH_ENTRY_COUNT = 1000;
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final Entry END_OF_LOG = new Entry(null, null, null, null, null);
     private final File logFile;
-    private final BufferedWriter writer;
+    private final BlockingQueue<Entry> entries = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final long flushIntervalMillis;
+    private final int flushEntryCount;
+    private final Thread writerThread;
+    private volatile IOException writeException;
+    private volatile boolean closed;
 
     /**
-     * Constructor for the logging application
+     * Constructor for the logging application, flushing the log file every second or every 1000 entries
      * @param loggingDirectory the directory where the log file will be written
      * @throws HtmlToPdfLoggerException if the BufferedWriter throws an IOException
      */
     public HtmlToPdfLogger(File loggingDirectory) throws HtmlToPdfLoggerException {
-        sdf = new SimpleDateFormat(TIMESTAMP_FORMAT);
-        this.logFile = new File(loggingDirectory, this.getFilename());
+        this(loggingDirectory, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_FLUSH_ENTRY_COUNT);
+    }
+
+    /**
+     * Constructor for the logging application
+     * @param loggingDirectory the directory where the log file will be written
+     * @param flushIntervalMillis the maximum time an entry waits before the log file is flushed
+     * @param flushEntryCount the maximum number of entries written before the log file is flushed
+     * @throws HtmlToPdfLoggerException if the BufferedWriter throws an IOException
+     */
+    public HtmlToPdfLogger(File loggingDirectory, long flushIntervalMillis, int flushEntryCount) throws HtmlToPdfLoggerException {
+        this(loggingDirectory, null, flushIntervalMillis, flushEntryCount);
+    }
+
+    /**
+     * Constructor for the logging application of one shard, whose log file is named after the shard so the shards can
+     * share a logs directory
+     * @param loggingDirectory the directory where the log file will be written
+     * @param shardName the name of the shard, or null if the source files are not sharded
+     * @param flushIntervalMillis the maximum time an entry waits before the log file is flushed
+     * @param flushEntryCount the maximum number of entries written before the log file is flushed
+     * @throws HtmlToPdfLoggerException if the BufferedWriter throws an IOException
+     */
+    public HtmlToPdfLogger(File loggingDirectory, String shardName, long flushIntervalMillis, int flushEntryCount) throws HtmlToPdfLoggerException {
+        this.logFile = new File(loggingDirectory, this.getFilename(shardName));
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushEntryCount = flushEntryCount;
+        BufferedWriter writer;
         try {
             writer = new BufferedWriter(new FileWriter(logFile));
             writer.append(HEADER);
+            writer.flush();
         } catch (IOException e) {
             throw new HtmlToPdfLoggerException(HtmlToPdfLoggerException.MESSAGE + logFile.getPath());
         }
+        this.writerThread = Thread.ofPlatform().name("html-to-pdf-logger").daemon().start(() -> this.writeEntries(writer));
     }
 
     /**
      * Logs success in converting an HTML file to a PDF file
      * @param htmlFile the source HTML file
      * @param pdfFile the target PDF file
-     * @throws HtmlToPdfLoggerException if the BufferedWriter throws an IOException
+     * @throws HtmlToPdfLoggerException if the log file can't be written to
      */
     public void logSuccess(File htmlFile, File pdfFile) throws HtmlToPdfLoggerException {
-        try {
-            writer.newLine();
-            writer.append(this.getEntry(PDF_CONVERSION_SUCCESS_CODE, PDF_CONVERSION_SUCCESS_MESSAGE, htmlFile.getPath(), pdfFile.getPath()));
-        } catch (IOException e) {
-            throw new HtmlToPdfLoggerException(HtmlToPdfLoggerException.MESSAGE + logFile.getPath());
-        }
+        this.log(PDF_CONVERSION_SUCCESS_CODE, PDF_CONVERSION_SUCCESS_MESSAGE, htmlFile, pdfFile);
     }
 
     /**
      * Logs a failure to convert an HTML file to a PDF file
      * @param htmlFile the source HTML file
      * @param pdfFile the target PDF file
-     * @throws HtmlToPdfLoggerException if the BufferedWriter throws an IOException
+     * @param reason the reason of the failure, or null if it is unknown
+     * @throws HtmlToPdfLoggerException if the log file can't be written to
+     */
+    public void logFailure(File htmlFile, File pdfFile, String reason) throws HtmlToPdfLoggerException {
+        this.log(PDF_CONVERSION_ERROR_CODE, HtmlToPdfLogger.withReason(PDF_CONVERSION_ERROR_MESSAGE, reason), htmlFile, pdfFile);
+    }
+
+    /**
+     * Logs that an HTML file was skipped because its PDF file is already up to date
+     * @param htmlFile the source HTML file
+     * @param pdfFile the target PDF file
+     * @throws HtmlToPdfLoggerException if the log file can't be written to
+     */
+    public void logSkipped(File htmlFile, File pdfFile) throws HtmlToPdfLoggerException {
+        this.log(PDF_CONVERSION_SKIPPED_CODE, PDF_CONVERSION_SKIPPED_MESSAGE, htmlFile, pdfFile);
+    }
+
+    /**
+     * Logs that the PDF file of an HTML file was created from a PDF file already rendered for identical content
+     * @param htmlFile the source HTML file
+     * @param pdfFile the target PDF file
+     * @throws HtmlToPdfLoggerException if the log file can't be written to
+     */
+    public void logCached(File htmlFile, File pdfFile) throws HtmlToPdfLoggerException {
+        this.log(PDF_CONVERSION_CACHED_CODE, PDF_CONVERSION_CACHED_MESSAGE, htmlFile, pdfFile);
+    }
+
+    /**
+     * Logs that an HTML file was not converted because it is quarantined
+     * @param htmlFile the source HTML file
+     * @param pdfFile the target PDF file
+     * @param reason the reason of the last failure of the HTML file
+     * @throws HtmlToPdfLoggerException if the log file can't be written to
+     */
+    public void logQuarantined(File htmlFile, File pdfFile, String reason) throws HtmlToPdfLoggerException {
+        this.log(PDF_CONVERSION_QUARANTINED_CODE, HtmlToPdfLogger.withReason(PDF_CONVERSION_QUARANTINED_MESSAGE, reason),
+                htmlFile, pdfFile);
+    }
+
+    /**
+     * Waits for the writer thread to write the remaining entries, and closes the log file
+     * @throws HtmlToPdfLoggerException if the log file fails to close or an entry could not be written
      */
-    public void logFailure(File htmlFile, File pdfFile) throws HtmlToPdfLoggerException {
+    public synchronized void close() throws HtmlToPdfLoggerException {
+        if(closed){
+            return;
+        }
+        closed = true;
         try {
-            writer.newLine();
-            writer.append(this.getEntry(PDF_CONVERSION_ERROR_CODE, PDF_CONVERSION_ERROR_MESSAGE, htmlFile.getPath(), pdfFile.getPath()));
-        } catch (IOException e) {
-            throw new HtmlToPdfLoggerException(HtmlToPdfLoggerException.MESSAGE + logFile.getPath());
+            entries.put(END_OF_LOG);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HtmlToPdfLoggerException(HtmlToPdfLoggerException.CLOSE_MESSAGE + logFile.getPath());
+        }
+        if(writeException != null){
+            throw new HtmlToPdfLoggerException(HtmlToPdfLoggerException.CLOSE_MESSAGE + logFile.getPath());
         }
     }
 
+    /**
+     * Appends a reason to a log message, on a single line and without the delimiter of the log file
+     * @param message the message
+     * @param reason the reason, or null if there is none
+     * @return the message followed by the reason
+     */
+    private static String withReason(String message, String reason) {
+        if(reason == null || reason.isBlank()){
+            return message;
+        }
+        return message + ": " + reason.replace(DELIMITER, "/").replaceAll("\\s+", " ").trim();
+    }
 
     /**
-     * Closes the BufferedWriter, flushing the final buffer
-     * @throws HtmlToPdfLoggerException if the BufferedWriter fails to close
+     * Hands a log entry over to the writer thread
+     * @param code the code of the loggable item
+     * @param message the message corresponding to the code
+     * @param htmlFile the source HTML file
+     * @param pdfFile the target PDF file
+     * @throws HtmlToPdfLoggerException if the logger is closed or the writer thread failed to write to the log file
      */
-    public void close() throws HtmlToPdfLoggerException {
+    private void log(String code, String message, File htmlFile, File pdfFile) throws HtmlToPdfLoggerException {
+        if(closed || writeException != null){
+            throw new HtmlToPdfLoggerException(HtmlToPdfLoggerException.MESSAGE + logFile.getPath());
+        }
         try {
-            writer.close();
+            entries.put(new Entry(LocalDateTime.now(), code, message, htmlFile.getPath(), pdfFile.getPath()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HtmlToPdfLoggerException(HtmlToPdfLoggerException.MESSAGE + logFile.getPath());
+        }
+    }
+
+    /**
+     * Writes the queued entries to the log file until the end of the log, flushing it regularly. After a write
+     * failure the remaining entries are discarded, so the threads logging them never block.
+     * @param writer the writer of the log file
+     */
+    private void writeEntries(BufferedWriter writer) {
+        long lastFlush = System.currentTimeMillis();
+        int unflushedEntries = 0;
+        try (writer) {
+            while (true) {
+                long waitMillis = unflushedEntries == 0 ? flushIntervalMillis
+                        : Math.max(1, flushIntervalMillis - (System.currentTimeMillis() - lastFlush));
+                Entry entry = entries.poll(waitMillis, TimeUnit.MILLISECONDS);
+                if(entry == END_OF_LOG){
+                    return;
+                }
+                if(entry != null){
+                    writer.newLine();
+                    writer.append(this.getEntry(entry));
+                    unflushedEntries++;
+                }
+                long now = System.currentTimeMillis();
+                if(unflushedEntries >= flushEntryCount || (unflushedEntries > 0 && now - lastFlush >= flushIntervalMillis)){
+                    HtmlToPdfFlushEvent event = new HtmlToPdfFlushEvent();
+                    event.begin();
+                    writer.flush();
+                    event.file = logFile.getPath();
+                    event.entryCount = unflushedEntries;
+                    event.commit();
+                    unflushedEntries = 0;
+                    lastFlush = now;
+                }
+            }
         } catch (IOException e) {
-            throw new HtmlToPdfLoggerException(HtmlToPdfLoggerException.CLOSE_MESSAGE + logFile.getPath());
+            writeException = e;
+            this.discardEntries();
+        } catch (InterruptedException e) {
+            writeException = new IOException("The log writer was interrupted", e);
+            this.discardEntries();
         }
+    }
 
+    /**
+     * Discards the queued entries until the end of the log
+     */
+    private void discardEntries() {
+        try {
+            while (entries.take() != END_OF_LOG) {
+                // the entries can no longer be written
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
      * Creates a log entry String
-     * @param code the code of the loggable item
-     * @param message the message corresponding to the code
-     * @param htmlFilepath the path of the source html file
-     * @param pdfFilepath the path of the target pdf file
+     * @param entry the entry to log
      * @return a log entry String
      */
-    private String getEntry(String code, String message, String htmlFilepath, String pdfFilepath){
+    private String getEntry(Entry entry){
         StringBuilder sb = new StringBuilder();
-        sb.append(this.getTimeStamp());
+        sb.append(TIMESTAMP_FORMATTER.format(entry.timestamp()));
         sb.append(DELIMITER);
-        sb.append(code);
+        sb.append(entry.code());
         sb.append(DELIMITER);
-        sb.append(message);
+        sb.append(entry.message());
         sb.append(DELIMITER);
-        sb.append(htmlFilepath);
+        sb.append(entry.htmlFilepath());
         sb.append(DELIMITER);
-        sb.append(pdfFilepath);
+        sb.append(entry.pdfFilepath());
         return sb.toString();
     }
 
     /**
-     * Gets the current timestamp as a String
-     * @return a string representation of the current timestamp
+     * Gets a unique filename for the log file with current timestamp
+     * @param shardName the name of the shard, or null if the source files are not sharded
+     * @return a unique filename for the log file
      */
-    private String getTimeStamp(){
-        return sdf.format(new Date());
+    private String getFilename(String shardName){
+        String shardPrefix = shardName != null ? shardName + "_" : "";
+        return BASE_FILENAME + shardPrefix + TIMESTAMP_FORMATTER.format(LocalDateTime.now()) + EXTENSION;
     }
 
     /**
-     * Gets a unique filename for the log file with current timestamp
-     * @return a unique filename for the log file
+     * A log entry waiting to be written
+     * @param timestamp the time the entry was logged
+     * @param code the code of the loggable item
+     * @param message the message corresponding to the code
+     * @param htmlFilepath the path of the source html file
+     * @param pdfFilepath the path of the target pdf file
      */
-    private String getFilename(){
-        return BASE_FILENAME + this.getTimeStamp() + EXTENSION;
+    private record Entry(LocalDateTime timestamp, String code, String message, String htmlFilepath, String pdfFilepath) {
     }
 }
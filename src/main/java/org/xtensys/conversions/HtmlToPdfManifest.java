@@ -0,0 +1,160 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The persisted record of the source files that were converted, used to skip the files whose PDF file is already up
+ * to date. Entries are keyed by the path of the source file relative to the source directory.
+ */
+public class HtmlToPdfManifest {
+    private static final Type ENTRIES_TYPE = new TypeToken<Map<String, HtmlToPdfManifestEntry>>(){}.getType();
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private final File manifestFile;
+    private final boolean hashing;
+    private final Map<String, HtmlToPdfManifestEntry> previousEntries;
+    private final Map<String, HtmlToPdfManifestEntry> currentEntries = new ConcurrentHashMap<>();
+    private final Set<String> visitedPaths = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor for the manifest, reading the entries of the previous run if the manifest file exists
+     * @param manifestFile the file the manifest is persisted to
+     * @param hashing true if the content hash of the source files is recorded and compared
+     * @throws IOException if the manifest file exists but can't be read
+     */
+    public HtmlToPdfManifest(File manifestFile, boolean hashing) throws IOException {
+        this.manifestFile = manifestFile;
+        this.hashing = hashing;
+        this.previousEntries = this.read();
+    }
+
+    /**
+     * Tests to see if the PDF file of a source file is up to date with the source file. An up to date file is carried
+     * over to the manifest of this run.
+     * @param relativePath the path of the source file relative to the source directory
+     * @param sourceFile the source HTML file
+     * @param pdfFile the target PDF file
+     * @return true if the source file is unchanged since it was last converted and the PDF file still exists
+     * @throws IOException if the source file can't be read to compute its hash
+     */
+    public boolean isUpToDate(String relativePath, File sourceFile, File pdfFile) throws IOException {
+        visitedPaths.add(relativePath);
+        HtmlToPdfManifestEntry entry = previousEntries.get(relativePath);
+        if(entry == null || !pdfFile.isFile() || sourceFile.length() != entry.getSize()){
+            return false;
+        }
+        if(sourceFile.lastModified() == entry.getLastModified()){
+            currentEntries.put(relativePath, entry);
+            return true;
+        }
+        if(hashing && entry.getHash() != null){
+            HtmlToPdfManifestEntry currentEntry = this.describe(sourceFile);
+            if(entry.getHash().equals(currentEntry.getHash())){
+                currentEntries.put(relativePath, currentEntry);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Describes the current state of a source file. Should be called before the file is converted, so a change made
+     * during the conversion is picked up by the next run.
+     * @param sourceFile the source HTML file
+     * @return the manifest entry describing the source file
+     * @throws IOException if the source file can't be read to compute its hash
+     */
+    public HtmlToPdfManifestEntry describe(File sourceFile) throws IOException {
+        long lastModified = sourceFile.lastModified();
+        long size = sourceFile.length();
+        String hash = hashing ? HtmlToPdfFileHasher.hash(sourceFile) : null;
+        return new HtmlToPdfManifestEntry(size, lastModified, hash);
+    }
+
+    /**
+     * Records the successful conversion of a source file
+     * @param relativePath the path of the source file relative to the source directory
+     * @param entry the state of the source file before it was converted
+     */
+    public void recordConversion(String relativePath, HtmlToPdfManifestEntry entry) {
+        currentEntries.put(relativePath, entry);
+    }
+
+    /**
+     * Writes the manifest to file, replacing the previous manifest atomically
+     * @param complete true if every source file was visited during this run. The entries of the files that were not
+     *                 visited are otherwise kept, so an aborted run doesn't force them to be converted again.
+     * @throws IOException if the manifest file can't be written
+     */
+    public void save(boolean complete) throws IOException {
+        Map<String, HtmlToPdfManifestEntry> entries = new TreeMap<>(currentEntries);
+        if(!complete){
+            previousEntries.forEach((relativePath, entry) -> {
+                if(!visitedPaths.contains(relativePath)){
+                    entries.put(relativePath, entry);
+                }
+            });
+        }
+        Path manifestPath = manifestFile.toPath();
+        Path temporaryPath = manifestPath.resolveSibling(manifestFile.getName() + TEMPORARY_EXTENSION);
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            gson.toJson(entries, ENTRIES_TYPE, writer);
+        }
+        Files.move(temporaryPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the entries of the previous run from the manifest file
+     * @return the entries of the previous run, empty if there is no valid manifest file
+     * @throws IOException if the manifest file exists but can't be read
+     */
+    private Map<String, HtmlToPdfManifestEntry> read() throws IOException {
+        if(!manifestFile.isFile()){
+            return Collections.emptyMap();
+        }
+        try (Reader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            Map<String, HtmlToPdfManifestEntry> entries = new Gson().fromJson(reader, ENTRIES_TYPE);
+            return entries == null ? Collections.emptyMap() : entries;
+        } catch (JsonParseException e) {
+            System.out.println("The manifest file is not valid and will be rebuilt: " + manifestFile.getPath());
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+/**
+ * The state of a source file at the time it was last successfully converted
+ */
+public class HtmlToPdfManifestEntry {
+    private final long size;
+    private final long lastModified;
+    private final String hash;
+
+    /**
+     * Constructor for the manifest entry
+     * @param size the size of the source file in bytes
+     * @param lastModified the last modified time of the source file in milliseconds
+     * @param hash the content hash of the source file, or null if content hashing is disabled
+     */
+    public HtmlToPdfManifestEntry(long size, long lastModified, String hash) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.hash = hash;
+    }
+
+    /**
+     * Gets the size of the source file in bytes
+     * @return the size of the source file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the last modified time of the source file in milliseconds
+     * @return the last modified time of the source file
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the content hash of the source file
+     * @return the content hash of the source file, or null if content hashing was disabled
+     */
+    public String getHash() {
+        return hash;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Admission control of the conversions by their estimated memory use, so that several large documents in flight can't
+ * exhaust the heap.
+ * <p>
+ * The budget is a fraction of the maximum heap, handed out in kilobytes by a fair semaphore. Each conversion reserves
+ * its estimated memory use before it starts and waits while the budget is exhausted. A document estimated to need more
+ * than the whole budget reserves the whole budget, so it runs alone once the conversions in flight are finished.
+ * <p>
+ * The estimate starts as a fixed amount plus an amount per byte of HTML, covering large tables, which iText keeps in
+ * memory until they are complete. It is then refined with a fit on the bytes allocated by the conversions already
+ * executed, of which a conversion holds a configured percentage at once, about an eighth by default. The percentage
+ * depends on the documents, so it can be tuned by comparing the heap used after a collection with the estimate of
+ * the conversions in flight. The allocated bytes are only measured on
+ * platform threads, so the initial estimate is kept when the conversions run on virtual threads.
+ */
+public class HtmlToPdfMemoryBudget {
+    private static final long BYTES_PER_PERMIT = 1024;
+    private static final long INITIAL_FIXED_BYTES = 16L * 1024 * 1024;
+    private static final long INITIAL_BYTES_PER_INPUT_BYTE = 256;
+    private static final int MEASUREMENTS_BEFORE_REFINEMENT = 8;
+    private final com.sun.management.ThreadMXBean threadMXBean;
+    private final Semaphore permits;
+    private final int totalPermits;
+    private final int retainedPercent;
+    private final HtmlToPdfLinearFit memoryFit = new HtmlToPdfLinearFit();
+    private long reservations;
+    private long waits;
+    private long oversizedReservations;
+    private long maxWaitNanos;
+    private long totalWaitNanos;
+
+    /**
+     * Constructor for the memory budget
+     * @param budgetPercent the percentage of the maximum heap the conversions in flight may use, between 1 and 100
+     * @param retainedPercent the percentage of the bytes allocated by a conversion it holds at once, between 1 and 100
+     */
+    public HtmlToPdfMemoryBudget(int budgetPercent, int retainedPercent) {
+        long budgetBytes = Runtime.getRuntime().maxMemory() / 100 * budgetPercent;
+        this.totalPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / BYTES_PER_PERMIT));
+        this.permits = new Semaphore(totalPermits, true);
+        this.retainedPercent = retainedPercent;
+        this.threadMXBean = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+    }
+
+    /**
+     * Reserves the estimated memory use of a conversion, waiting until enough of the budget is available
+     * @param inputBytes the size of the HTML document
+     * @return the reservation, to be closed on the same thread once the conversion is finished
+     * @throws InterruptedException if interrupted while waiting for the budget
+     */
+    public Reservation reserve(long inputBytes) throws InterruptedException {
+        long estimatedBytes = this.estimateBytes(inputBytes);
+        int reservedPermits = (int) Math.max(1, Math.min(totalPermits, (estimatedBytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT));
+        long startNanos = System.nanoTime();
+        if(!permits.tryAcquire(reservedPermits)){
+            permits.acquire(reservedPermits);
+            this.recordWait(System.nanoTime() - startNanos);
+        }
+        synchronized (this) {
+            reservations++;
+            if(estimatedBytes > totalPermits * BYTES_PER_PERMIT){
+                oversizedReservations++;
+            }
+        }
+        return new Reservation(inputBytes, reservedPermits);
+    }
+
+    /**
+     * Estimates the memory a conversion will hold at once
+     * @param inputBytes the size of the HTML document
+     * @return the estimated memory use in bytes
+     */
+    public synchronized long estimateBytes(long inputBytes) {
+        if(memoryFit.getCount() < MEASUREMENTS_BEFORE_REFINEMENT){
+            return INITIAL_FIXED_BYTES + INITIAL_BYTES_PER_INPUT_BYTE * inputBytes;
+        }
+        return (long) (memoryFit.getFixedCost() + memoryFit.getCostPerUnit() * inputBytes);
+    }
+
+    /**
+     * Creates the JSON representation of the budget and its use
+     * @return the JSON budget statistics
+     */
+    public synchronized JsonObject toJson() {
+        JsonObject budget = new JsonObject();
+        budget.addProperty("budgetBytes", totalPermits * BYTES_PER_PERMIT);
+        budget.addProperty("retainedPercent", retainedPercent);
+        budget.addProperty("reservations", reservations);
+        budget.addProperty("waits", waits);
+        budget.addProperty("oversized", oversizedReservations);
+        budget.addProperty("waitMillis", totalWaitNanos / 1_000_000d);
+        budget.addProperty("maxWaitMillis", maxWaitNanos / 1_000_000d);
+        boolean refined = memoryFit.getCount() >= MEASUREMENTS_BEFORE_REFINEMENT;
+        budget.addProperty("fixedBytes", refined ? (long) memoryFit.getFixedCost() : INITIAL_FIXED_BYTES);
+        budget.addProperty("bytesPerInputByte", refined ? memoryFit.getCostPerUnit() : INITIAL_BYTES_PER_INPUT_BYTE);
+        return budget;
+    }
+
+    /**
+     * Records a reservation that had to wait for the budget
+     * @param waitNanos the time the reservation waited
+     */
+    private synchronized void recordWait(long waitNanos) {
+        waits++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+    }
+
+    /**
+     * Refines the estimate with the bytes allocated by a finished conversion
+     * @param inputBytes the size of the HTML document
+     * @param allocatedBytes the bytes allocated by the conversion
+     */
+    private synchronized void recordUse(long inputBytes, long allocatedBytes) {
+        memoryFit.add(inputBytes, (double) allocatedBytes * retainedPercent / 100);
+    }
+
+    /**
+     * The memory reserved by a conversion, measuring the bytes the conversion allocates until it is closed
+     */
+    public class Reservation implements AutoCloseable {
+        private final long inputBytes;
+        private final int reservedPermits;
+        private final long startAllocatedBytes;
+
+        /**
+         * Constructor for the reservation
+         * @param inputBytes the size of the HTML document
+         * @param reservedPermits the number of kilobytes reserved
+         */
+        private Reservation(long inputBytes, int reservedPermits) {
+            this.inputBytes = inputBytes;
+            this.reservedPermits = reservedPermits;
+            this.startAllocatedBytes = threadMXBean != null ? threadMXBean.getCurrentThreadAllocatedBytes() : -1;
+        }
+
+        /**
+         * Returns the reserved memory to the budget and refines the estimate with the bytes allocated since the
+         * reservation
+         */
+        @Override
+        public void close() {
+            if(startAllocatedBytes >= 0){
+                long endAllocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+                if(endAllocatedBytes >= startAllocatedBytes){
+                    HtmlToPdfMemoryBudget.this.recordUse(inputBytes, endAllocatedBytes - startAllocatedBytes);
+                }
+            }
+            permits.release(reservedPermits);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import com.itextpdf.html2pdf.ConverterProperties;
+import com.itextpdf.html2pdf.attach.Attacher;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.navigation.PdfExplicitDestination;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.font.FontProvider;
+import com.itextpdf.styledxmlparser.node.IDocumentNode;
+import com.itextpdf.styledxmlparser.node.impl.jsoup.JsoupHtmlParser;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * A PDF document many HTML documents are rendered into, one section per HTML document.
+ * <p>
+ * Each section starts on a new page and gets a bookmark. The sections share a single font provider, so a font is only
+ * embedded once however many sections use it, and the writer is only set up once. The pages of a section are flushed
+ * as soon as the section is laid out, which keeps the memory used by a large document low and makes the next section
+ * start after them. The pages of a section that fails to render are removed from the document, unless some of them were
+ * already flushed, in which case the document can't be completed. A merged document is only used by one thread at a
+ * time.
+ */
+public class HtmlToPdfMergedDocument implements AutoCloseable {
+    private final HtmlToPdfConverterPropertiesFactory converterPropertiesFactory;
+    private final HtmlToPdfDocument pdfDocument;
+    private final FontProvider fontProvider;
+    private boolean incomplete;
+
+    /**
+     * Constructor for the merged document
+     * @param converterPropertiesFactory the factory of the converter properties of the sections
+     * @param pdf the stream the PDF document is written to, which is not closed with the document
+     */
+    public HtmlToPdfMergedDocument(HtmlToPdfConverterPropertiesFactory converterPropertiesFactory, OutputStream pdf) {
+        this.converterPropertiesFactory = converterPropertiesFactory;
+        PdfWriter writer = new PdfWriter(pdf, converterPropertiesFactory.createWriterProperties());
+        writer.setCloseStream(false);
+        this.pdfDocument = new HtmlToPdfDocument(writer);
+        this.pdfDocument.getCatalog().setPageMode(PdfName.UseOutlines);
+        this.fontProvider = converterPropertiesFactory.createFontProvider();
+    }
+
+    /**
+     * Renders an HTML document read from a stream as the next section. The character set is detected from the
+     * document.
+     * @param html the stream the HTML document is read from
+     * @param baseUri the URI relative resources are resolved against, or null to use the configured base URI
+     * @param title the title of the bookmark of the section
+     * @return the number of pages of the section
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     */
+    public int addSection(InputStream html, String baseUri, String title) throws HtmlToPdfConversionException {
+        return this.addSection((parser, charset) -> parser.parse(html, charset),
+                converterPropertiesFactory.create(baseUri).setFontProvider(fontProvider), title);
+    }
+
+    /**
+     * Renders an HTML document read from a stream as the next section, serving the resources it references from
+     * assets whose paths are relative to another base URI. The character set is detected from the document.
+     * @param html the stream the HTML document is read from
+     * @param baseUri the URI relative resources are resolved against
+     * @param assetBaseUri the URI the paths of the assets are relative to
+     * @param assets the bytes of the stylesheets, images and fonts by path relative to the asset base URI
+     * @param title the title of the bookmark of the section
+     * @return the number of pages of the section
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     */
+    public int addSection(InputStream html, String baseUri, String assetBaseUri, Map<String, byte[]> assets, String title)
+            throws HtmlToPdfConversionException {
+        return this.addSection((parser, charset) -> parser.parse(html, charset),
+                converterPropertiesFactory.create(baseUri).setFontProvider(fontProvider)
+                        .setResourceRetriever(new HtmlToPdfAssetResourceRetriever(assets, assetBaseUri,
+                                converterPropertiesFactory.getResourceRetriever())), title);
+    }
+
+    /**
+     * Gets the number of pages rendered so far
+     * @return the number of pages of the document
+     */
+    public int getNumberOfPages() {
+        return pdfDocument.isClosed() ? pdfDocument.getPageCount() : pdfDocument.getNumberOfPages();
+    }
+
+    /**
+     * Gets whether a section failed after some of its pages were flushed, so the document holds a part of it and
+     * can't be completed
+     * @return true if the document can't be completed
+     */
+    public boolean isIncomplete() {
+        return incomplete;
+    }
+
+    /**
+     * Writes the end of the PDF document, recorded as a flight recorder event
+     */
+    @Override
+    public void close() {
+        HtmlToPdfWriteEvent writeEvent = new HtmlToPdfWriteEvent();
+        writeEvent.begin();
+        pdfDocument.close();
+        writeEvent.pageCount = pdfDocument.getPageCount();
+        writeEvent.commit();
+    }
+
+    /**
+     * Parses and lays out an HTML document after the pages already rendered, each step recorded as a flight recorder
+     * event, then bookmarks and flushes its pages
+     * @param parser parses the HTML document
+     * @param properties the converter properties of the section
+     * @param title the title of the bookmark of the section
+     * @return the number of pages of the section
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     */
+    private int addSection(HtmlToPdfStreamConverter.Parser parser, ConverterProperties properties, String title)
+            throws HtmlToPdfConversionException {
+        int firstPage = pdfDocument.getNumberOfPages() + 1;
+        try {
+            HtmlToPdfParseEvent parseEvent = new HtmlToPdfParseEvent();
+            parseEvent.begin();
+            IDocumentNode documentNode = parser.parse(new JsoupHtmlParser(), properties.getCharset());
+            converterPropertiesFactory.useStyleSheetCache(properties, documentNode);
+            properties.setEventMetaInfo(HtmlToPdfStreamConverter.META_INFO);
+            parseEvent.commit();
+            HtmlToPdfLayoutEvent layoutEvent = new HtmlToPdfLayoutEvent();
+            layoutEvent.begin();
+            Document document = Attacher.attach(documentNode, pdfDocument, properties);
+            document.getRenderer().close();
+            int lastPage = pdfDocument.getNumberOfPages();
+            layoutEvent.pageCount = lastPage - firstPage + 1;
+            layoutEvent.commit();
+            if(lastPage >= firstPage){
+                pdfDocument.getOutlines(false).addOutline(title)
+                        .addDestination(PdfExplicitDestination.createFit(pdfDocument.getPage(firstPage)));
+            }
+            for(int page = firstPage; page <= lastPage; page++){
+                pdfDocument.getPage(page).flush();
+            }
+            return lastPage - firstPage + 1;
+        } catch (Exception e) {
+            this.removePages(firstPage);
+            throw new HtmlToPdfConversionException("Failed to convert the HTML document: "
+                    + (e.getMessage() != null ? e.getMessage() : e.toString()), e);
+        }
+    }
+
+    /**
+     * Removes the pages of a failed section. The interrupt of a cancelled section is held back while the pages are
+     * removed, as the document refuses any operation on an interrupted thread. Pages that were already flushed can't be
+     * removed, and leave the document incomplete instead.
+     * @param firstPage the first page of the failed section
+     */
+    private void removePages(int firstPage) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            for(int page = firstPage; page <= pdfDocument.getNumberOfPages(); page++){
+                if(pdfDocument.getPage(page).isFlushed()){
+                    incomplete = true;
+                    return;
+                }
+            }
+            for(int page = pdfDocument.getNumberOfPages(); page >= firstPage; page--){
+                pdfDocument.removePage(page);
+            }
+        } finally {
+            if(interrupted){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
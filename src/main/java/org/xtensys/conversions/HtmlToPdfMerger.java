@@ -0,0 +1,197 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Groups the HTML files of each directory into the merged PDF files they are rendered to, and keeps the index mapping
+ * every HTML file to its merged PDF file and page range.
+ * <p>
+ * A merged PDF file is named after its directory, or after the source directory or archive for the files at its
+ * root, and is numbered when the files of a directory are split into groups of a maximum size. The files of a source
+ * archive are held in memory until their group is rendered, so a group is also split once the HTML files it holds
+ * reach a maximum size. The files of a group are rendered in the order of their paths. The index is written to the
+ * target directory once every file is converted.
+ * <p>
+ * The PDF directory and the PDF files are compared and relativized as absolute, normalized paths.
+ */
+public class HtmlToPdfMerger {
+    private static final String PDF_EXTENSION = ".pdf";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final String ARCHIVE_EXTENSION_PATTERN = "(?i)\\.(zip|tar|tar\\.gz|tgz)$";
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    private final int groupSize;
+    private final long maxGroupBytes;
+    private final File pdfDirectory;
+    private final String rootName;
+    private final File indexFile;
+    private final Map<File, List<HtmlToPdfConversionTask>> openGroups = new LinkedHashMap<>();
+    private final Map<File, Long> openGroupBytes = new HashMap<>();
+    private final Map<File, Integer> groupCounts = new HashMap<>();
+    private final Map<String, JsonObject> index = new TreeMap<>();
+
+    /**
+     * Constructor for the merger
+     * @param configuration the converter configuration
+     * @param fileManager the file manager class
+     */
+    public HtmlToPdfMerger(HtmlToPdfConfiguration configuration, HtmlToPdfFileManager fileManager) {
+        this.groupSize = configuration.getMergeGroupSize();
+        this.maxGroupBytes = configuration.getMergeMemoryMb() * BYTES_PER_MEGABYTE;
+        this.pdfDirectory = HtmlToPdfMerger.normalize(fileManager.getPdfDirectory());
+        this.rootName = fileManager.getSourceDirectory().getName().replaceFirst(ARCHIVE_EXTENSION_PATTERN, "");
+        this.indexFile = fileManager.getMergeIndexFile();
+    }
+
+    /**
+     * Adds an HTML file to the group of its directory
+     * @param conversionTask the conversion of the HTML file
+     * @return the group of the directory once it holds the maximum number of files or the maximum size of HTML files
+     * held in memory, or null while it is still open
+     */
+    public Group add(HtmlToPdfConversionTask conversionTask) {
+        File directory = HtmlToPdfMerger.normalize(conversionTask.getPdfFile().getParentFile());
+        List<HtmlToPdfConversionTask> conversionTasks = openGroups.computeIfAbsent(directory, key -> new ArrayList<>());
+        conversionTasks.add(conversionTask);
+        long groupBytes = conversionTask.getContent() != null
+                ? openGroupBytes.merge(directory, (long) conversionTask.getContent().length, Long::sum) : 0;
+        if((groupSize > 0 && conversionTasks.size() >= groupSize) || groupBytes >= maxGroupBytes){
+            openGroups.remove(directory);
+            openGroupBytes.remove(directory);
+            return this.createGroup(directory, conversionTasks, true);
+        }
+        return null;
+    }
+
+    /**
+     * Closes the groups that are still open, once every HTML file has been added
+     * @return the remaining groups
+     */
+    public List<Group> drain() {
+        List<Group> groups = new ArrayList<>();
+        for(Map.Entry<File, List<HtmlToPdfConversionTask>> openGroup : openGroups.entrySet()){
+            groups.add(this.createGroup(openGroup.getKey(), openGroup.getValue(),
+                    groupSize > 0 || groupCounts.containsKey(openGroup.getKey())));
+        }
+        openGroups.clear();
+        openGroupBytes.clear();
+        return groups;
+    }
+
+    /**
+     * Records the sections of a merged PDF file in the index
+     * @param mergedFile the merged PDF file
+     * @param pageCount the number of pages of the merged PDF file
+     * @param sections the sections rendered into the merged PDF file
+     */
+    public synchronized void record(File mergedFile, int pageCount, List<Section> sections) {
+        String relativePath = pdfDirectory.toPath().relativize(HtmlToPdfMerger.normalize(mergedFile).toPath()).toString()
+                .replace(File.separatorChar, '/');
+        JsonObject entry = new JsonObject();
+        entry.addProperty("pdf", relativePath);
+        entry.addProperty("pages", pageCount);
+        JsonArray sectionArray = new JsonArray();
+        for(Section section : sections){
+            JsonObject sectionObject = new JsonObject();
+            sectionObject.addProperty("source", section.relativePath());
+            sectionObject.addProperty("firstPage", section.firstPage());
+            sectionObject.addProperty("lastPage", section.lastPage());
+            sectionArray.add(sectionObject);
+        }
+        entry.add("sections", sectionArray);
+        index.put(relativePath, entry);
+    }
+
+    /**
+     * Writes the index to a temporary file and moves it into place, so an interrupted write never leaves a truncated
+     * index behind
+     * @throws IOException if the index can't be written
+     */
+    public synchronized void save() throws IOException {
+        Path indexPath = indexFile.toPath();
+        Path temporaryPath = indexPath.resolveSibling(indexFile.getName() + TEMPORARY_EXTENSION);
+        JsonArray entries = new JsonArray();
+        index.values().forEach(entries::add);
+        try (Writer writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(entries, writer);
+        }
+        Files.move(temporaryPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Creates a group, naming its merged PDF file and ordering its files by path
+     * @param directory the absolute, normalized directory of the merged PDF file
+     * @param conversionTasks the conversions of the HTML files of the group
+     * @param split true if the files of the directory are split into several groups, which are then numbered
+     * @return the group
+     */
+    private Group createGroup(File directory, List<HtmlToPdfConversionTask> conversionTasks, boolean split) {
+        String name = directory.equals(pdfDirectory) ? rootName : directory.getName();
+        if(split){
+            name += "_" + groupCounts.merge(directory, 1, Integer::sum);
+        }
+        conversionTasks.sort(Comparator.comparing(HtmlToPdfConversionTask::getRelativePath));
+        return new Group(new File(directory, name + PDF_EXTENSION), conversionTasks);
+    }
+
+    /**
+     * Makes a file absolute and removes its redundant segments, so it can be compared with and relativized against the
+     * PDF directory
+     * @param file the file
+     * @return the absolute, normalized file
+     */
+    private static File normalize(File file) {
+        return file.toPath().toAbsolutePath().normalize().toFile();
+    }
+
+    /**
+     * The HTML files rendered into one merged PDF file
+     * @param mergedFile the merged PDF file
+     * @param conversionTasks the conversions of the HTML files, in the order they are rendered
+     */
+    public record Group(File mergedFile, List<HtmlToPdfConversionTask> conversionTasks) {
+    }
+
+    /**
+     * The pages an HTML file was rendered to in a merged PDF file
+     * @param relativePath the path of the HTML file relative to the source directory
+     * @param firstPage the first page of the section
+     * @param lastPage the last page of the section
+     */
+    public record Section(String relativePath, int firstPage, int lastPage) {
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A multipart/form-data request sent to the server: the HTML document, an optional base URI and the assets it
+ * references.
+ * <p>
+ * The part named {@code html} holds the document and the part named {@code baseUri} the base URI. Every other part is
+ * an asset, named by its field name so it can include a path, such as {@code images/logo.png}.
+ */
+public class HtmlToPdfMultipartForm {
+    private static final String HTML_FIELD = "html";
+    private static final String BASE_URI_FIELD = "baseUri";
+    private static final String BOUNDARY_PARAMETER = "boundary=";
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+    private final byte[] html;
+    private final String baseUri;
+    private final Map<String, byte[]> assets;
+
+    /**
+     * Constructor for the multipart form
+     * @param html the bytes of the HTML document
+     * @param baseUri the base URI of the document, or null if none was sent
+     * @param assets the bytes of the assets by name
+     */
+    private HtmlToPdfMultipartForm(byte[] html, String baseUri, Map<String, byte[]> assets) {
+        this.html = html;
+        this.baseUri = baseUri;
+        this.assets = assets;
+    }
+
+    /**
+     * Parses the body of a multipart/form-data request
+     * @param body the request body
+     * @param contentType the content type of the request, holding the boundary of the parts
+     * @return the multipart form
+     * @throws IOException if the body is not a valid multipart form or has no HTML document
+     */
+    public static HtmlToPdfMultipartForm parse(byte[] body, String contentType) throws IOException {
+        byte[] delimiter = ("--" + HtmlToPdfMultipartForm.getBoundary(contentType)).getBytes(StandardCharsets.ISO_8859_1);
+        byte[] html = null;
+        String baseUri = null;
+        Map<String, byte[]> assets = new HashMap<>();
+        int position = HtmlToPdfMultipartForm.indexOf(body, delimiter, 0);
+        if(position < 0){
+            throw new IOException("The multipart body has no part");
+        }
+        position += delimiter.length;
+        while(!HtmlToPdfMultipartForm.startsWith(body, position, new byte[]{'-', '-'})){
+            if(!HtmlToPdfMultipartForm.startsWith(body, position, CRLF)){
+                throw new IOException("The multipart body is malformed");
+            }
+            int headersStart = position + CRLF.length;
+            int headersEnd = HtmlToPdfMultipartForm.indexOf(body, HEADER_END, headersStart);
+            if(headersEnd < 0){
+                throw new IOException("The multipart body is malformed");
+            }
+            String name = HtmlToPdfMultipartForm.getFieldName(
+                    new String(body, headersStart, headersEnd - headersStart, StandardCharsets.UTF_8));
+            int contentStart = headersEnd + HEADER_END.length;
+            int contentEnd = HtmlToPdfMultipartForm.indexOf(body, HtmlToPdfMultipartForm.concat(CRLF, delimiter), contentStart);
+            if(contentEnd < 0){
+                throw new IOException("The multipart body is not terminated");
+            }
+            byte[] content = Arrays.copyOfRange(body, contentStart, contentEnd);
+            if(HTML_FIELD.equals(name)){
+                html = content;
+            }else if(BASE_URI_FIELD.equals(name)){
+                baseUri = new String(content, StandardCharsets.UTF_8).trim();
+            }else if(name != null){
+                assets.put(name, content);
+            }
+            position = contentEnd + CRLF.length + delimiter.length;
+        }
+        if(html == null){
+            throw new IOException("The multipart body has no part named " + HTML_FIELD);
+        }
+        return new HtmlToPdfMultipartForm(html, baseUri, assets);
+    }
+
+    /**
+     * Gets the bytes of the HTML document
+     * @return the HTML document
+     */
+    public byte[] getHtml() {
+        return html;
+    }
+
+    /**
+     * Gets the base URI sent with the document
+     * @return the base URI, or null if none was sent
+     */
+    public String getBaseUri() {
+        return baseUri;
+    }
+
+    /**
+     * Gets the assets sent with the document
+     * @return the bytes of the assets by name
+     */
+    public Map<String, byte[]> getAssets() {
+        return assets;
+    }
+
+    /**
+     * Gets the boundary of the parts from the content type
+     * @param contentType the content type of the request
+     * @return the boundary
+     * @throws IOException if the content type has no boundary
+     */
+    private static String getBoundary(String contentType) throws IOException {
+        for(String parameter : contentType.split(";")){
+            String trimmed = parameter.trim();
+            if(trimmed.toLowerCase(Locale.ROOT).startsWith(BOUNDARY_PARAMETER)){
+                String boundary = trimmed.substring(BOUNDARY_PARAMETER.length());
+                return boundary.startsWith("\"") && boundary.endsWith("\"") && boundary.length() > 1
+                        ? boundary.substring(1, boundary.length() - 1) : boundary;
+            }
+        }
+        throw new IOException("The multipart content type has no boundary");
+    }
+
+    /**
+     * Gets the field name from the headers of a part
+     * @param headers the headers of the part
+     * @return the field name, or null if the part has none
+     */
+    private static String getFieldName(String headers) {
+        for(String header : headers.split("\r\n")){
+            if(!header.toLowerCase(Locale.ROOT).startsWith("content-disposition:")){
+                continue;
+            }
+            for(String parameter : header.split(";")){
+                String trimmed = parameter.trim();
+                if(trimmed.startsWith("name=")){
+                    String name = trimmed.substring("name=".length());
+                    return name.startsWith("\"") && name.endsWith("\"") && name.length() > 1
+                            ? name.substring(1, name.length() - 1) : name;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the first occurrence of a byte sequence
+     * @param bytes the bytes searched
+     * @param sequence the byte sequence searched for
+     * @param fromIndex the index the search starts at
+     * @return the index of the sequence, or -1 if it is not found
+     */
+    private static int indexOf(byte[] bytes, byte[] sequence, int fromIndex) {
+        for(int i = fromIndex; i <= bytes.length - sequence.length; i++){
+            if(HtmlToPdfMultipartForm.startsWith(bytes, i, sequence)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Tests if a byte sequence is found at a position
+     * @param bytes the bytes tested
+     * @param position the position of the sequence
+     * @param sequence the byte sequence
+     * @return true if the bytes hold the sequence at the position
+     */
+    private static boolean startsWith(byte[] bytes, int position, byte[] sequence) {
+        return position + sequence.length <= bytes.length
+                && Arrays.equals(bytes, position, position + sequence.length, sequence, 0, sequence.length);
+    }
+
+    /**
+     * Concatenates two byte sequences
+     * @param first the first sequence
+     * @param second the second sequence
+     * @return the concatenated sequence
+     */
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+}
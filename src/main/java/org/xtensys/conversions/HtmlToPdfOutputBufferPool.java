@@ -0,0 +1,97 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of the in-memory buffers PDF documents are rendered to.
+ * <p>
+ * A buffer keeps its backing array when it is returned to the pool, so rendering a PDF of a usual size doesn't grow a
+ * new array every time. Buffers that grew larger than the retained size are dropped instead of being pooled, so a few
+ * very large documents don't pin their memory for the rest of the run.
+ */
+public class HtmlToPdfOutputBufferPool {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_RETAINED_BUFFER_SIZE = 8 * 1024 * 1024;
+    private final BlockingQueue<Buffer> buffers;
+    private final int maxRetainedBufferSize;
+
+    /**
+     * Constructor for the buffer pool, retaining buffers of up to 8 MB
+     * @param maxPooledBuffers the maximum number of idle buffers kept in the pool
+     */
+    public HtmlToPdfOutputBufferPool(int maxPooledBuffers) {
+        this(maxPooledBuffers, DEFAULT_MAX_RETAINED_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor for the buffer pool
+     * @param maxPooledBuffers the maximum number of idle buffers kept in the pool
+     * @param maxRetainedBufferSize the maximum size in bytes of a buffer kept in the pool
+     */
+    public HtmlToPdfOutputBufferPool(int maxPooledBuffers, int maxRetainedBufferSize) {
+        this.buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+        this.maxRetainedBufferSize = maxRetainedBufferSize;
+    }
+
+    /**
+     * Takes an empty buffer from the pool, or creates one if the pool is empty
+     * @return an empty buffer
+     */
+    public Buffer acquire() {
+        Buffer buffer = buffers.poll();
+        return buffer != null ? buffer : new Buffer();
+    }
+
+    /**
+     * Empties a buffer and returns it to the pool, unless it grew too large or the pool is full
+     * @param buffer the buffer that is no longer used
+     */
+    public void release(Buffer buffer) {
+        if(buffer.getCapacity() <= maxRetainedBufferSize){
+            buffer.reset();
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Growable in-memory buffer whose backing array can be reused
+     */
+    public static class Buffer extends ByteArrayOutputStream {
+
+        /**
+         * Constructor for an empty buffer
+         */
+        private Buffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        /**
+         * Gets the size of the backing array
+         * @return the number of bytes the buffer can hold before growing
+         */
+        private synchronized int getCapacity() {
+            return buf.length;
+        }
+    }
+}
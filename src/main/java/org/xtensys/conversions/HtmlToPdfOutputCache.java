@@ -0,0 +1,282 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, persisted index of the PDF files already rendered for a given HTML content. A source whose content was
+ * already rendered gets the existing PDF file hard linked, or copied, instead of being converted again.
+ * <p>
+ * The key of an entry combines the content hash of the HTML file with the base URI its resources are resolved against
+ * and a fingerprint of the rendering settings (media type, writer settings and fonts), so identical files referencing
+ * different stylesheets or images, or rendered with different settings, are never mixed up. The content of the
+ * stylesheets and images themselves is not part of the key: a changed stylesheet is not detected.
+ * <p>
+ * Each entry records the size and last modified time of its PDF file, and a PDF file is only remembered for the last
+ * content rendered or copied to it, so a PDF file overwritten since it was recorded is never handed out for the content
+ * it was first rendered from. The least recently used entries are evicted once the index is full.
+ */
+public class HtmlToPdfOutputCache {
+    private static final Type ENTRIES_TYPE = new TypeToken<LinkedHashMap<String, Entry>>(){}.getType();
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final String KEY_SEPARATOR = "@";
+    private final File indexFile;
+    private final File pdfDirectory;
+    private final int maximumSize;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, String> keysByPath = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructor for the output cache, reading the index of the previous runs if the index file exists
+     * @param indexFile the file the index is persisted to
+     * @param pdfDirectory the directory the PDF files are written to, made absolute so any PDF file path can be
+     *                     relativized against it
+     * @param maximumSize the maximum number of entries kept in the index
+     * @throws IOException if the index file exists but can't be read
+     */
+    public HtmlToPdfOutputCache(File indexFile, File pdfDirectory, int maximumSize) throws IOException {
+        this.indexFile = indexFile;
+        this.pdfDirectory = pdfDirectory.toPath().toAbsolutePath().normalize().toFile();
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if(size() > HtmlToPdfOutputCache.this.maximumSize){
+                    keysByPath.remove(eldest.getValue().path(), eldest.getKey());
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        for(Map.Entry<String, Entry> entry : this.read().entrySet()){
+            if(entry.getValue() != null && entry.getValue().path() != null){
+                this.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Creates the cache key of an HTML file
+     * @param contentHash the content hash of the HTML file
+     * @param baseUri the base URI the resources of the HTML file are resolved against
+     * @param renderingFingerprint the fingerprint of the settings the HTML file is rendered with
+     * @return the cache key
+     */
+    public static String createKey(String contentHash, String baseUri, String renderingFingerprint) {
+        return contentHash + KEY_SEPARATOR + renderingFingerprint + KEY_SEPARATOR + baseUri;
+    }
+
+    /**
+     * Looks up the PDF file already rendered for a key, counting the lookup as a hit or a miss
+     * @param key the cache key of the HTML file
+     * @return the PDF file already rendered, or null if there is none or it no longer exists or was changed since
+     */
+    public synchronized File lookup(String key) {
+        Entry entry = entries.get(key);
+        if(entry != null){
+            File pdfFile = new File(pdfDirectory, entry.path());
+            if(pdfFile.isFile() && pdfFile.length() == entry.length() && pdfFile.lastModified() == entry.lastModified()){
+                hits.incrementAndGet();
+                return pdfFile;
+            }
+            this.remove(key);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Records the PDF file rendered for a key, forgetting the content the PDF file was previously recorded for. A PDF
+     * file outside the PDF directory is not recorded.
+     * @param key the cache key of the HTML file
+     * @param pdfFile the rendered PDF file
+     */
+    public synchronized void store(String key, File pdfFile) {
+        String relativePath = this.getRelativePath(pdfFile);
+        if(relativePath == null){
+            System.out.println("Not recording a PDF file outside the PDF directory in the output cache: " + pdfFile);
+            return;
+        }
+        String previousKey = keysByPath.get(relativePath);
+        if(previousKey != null){
+            this.remove(previousKey);
+        }
+        this.remove(key);
+        this.put(key, new Entry(relativePath, pdfFile.length(), pdfFile.lastModified()));
+    }
+
+    /**
+     * Creates the PDF file of a source from a PDF file already rendered for the same content, as a hard link if the
+     * file system allows it and as a copy otherwise. The link or copy is created next to the PDF file and then moved
+     * into place, so the PDF file is never seen half copied.
+     * @param cachedPdfFile the PDF file already rendered
+     * @param pdfFile the PDF file to create
+     * @throws IOException if the PDF file can neither be linked nor copied
+     */
+    public void copy(File cachedPdfFile, File pdfFile) throws IOException {
+        Path cachedPath = cachedPdfFile.toPath();
+        Path targetPath = pdfFile.toPath();
+        if(Files.exists(targetPath) && Files.isSameFile(cachedPath, targetPath)){
+            return;
+        }
+        Path partialPath = HtmlToPdfFileManager.getPartialFile(pdfFile).toPath();
+        Files.deleteIfExists(partialPath);
+        try {
+            Files.createLink(partialPath, cachedPath);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(cachedPath, partialPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(partialPath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+        this.forget(pdfFile);
+    }
+
+    /**
+     * Forgets the content a PDF file was recorded for, once the PDF file is replaced
+     * @param pdfFile the replaced PDF file
+     */
+    public synchronized void forget(File pdfFile) {
+        String relativePath = this.getRelativePath(pdfFile);
+        String key = relativePath != null ? keysByPath.get(relativePath) : null;
+        if(key != null){
+            this.remove(key);
+        }
+    }
+
+    /**
+     * Gets the number of lookups that found an already rendered PDF file
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that found no already rendered PDF file
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of entries evicted from the index because it was full
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Writes the index to file, replacing the previous index atomically
+     * @throws IOException if the index file can't be written
+     */
+    public synchronized void save() throws IOException {
+        Path indexPath = indexFile.toPath();
+        Path temporaryPath = indexPath.resolveSibling(indexFile.getName() + TEMPORARY_EXTENSION);
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            gson.toJson(entries, ENTRIES_TYPE, writer);
+        }
+        Files.move(temporaryPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds an entry to the index, evicting the least recently used entry if the index is full
+     * @param key the cache key of the HTML file
+     * @param entry the PDF file rendered for the key
+     */
+    private void put(String key, Entry entry) {
+        keysByPath.put(entry.path(), key);
+        entries.put(key, entry);
+    }
+
+    /**
+     * Removes an entry from the index
+     * @param key the cache key of the HTML file
+     */
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if(entry != null){
+            keysByPath.remove(entry.path(), key);
+        }
+    }
+
+    /**
+     * Gets the path of a PDF file relative to the PDF directory, as recorded in the index
+     * @param pdfFile the PDF file
+     * @return the relative path with forward slashes, or null if the PDF file is outside the PDF directory
+     */
+    private String getRelativePath(File pdfFile) {
+        Path pdfPath = pdfFile.toPath().toAbsolutePath().normalize();
+        if(!pdfPath.startsWith(pdfDirectory.toPath())){
+            return null;
+        }
+        return pdfDirectory.toPath().relativize(pdfPath).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Reads the index of the previous runs from the index file, least recently used entries first
+     * @return the entries of the previous runs, empty if there is no valid index file
+     * @throws IOException if the index file exists but can't be read
+     */
+    private Map<String, Entry> read() throws IOException {
+        if(!indexFile.isFile()){
+            return new LinkedHashMap<>();
+        }
+        try (Reader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            Map<String, Entry> index = new Gson().fromJson(reader, ENTRIES_TYPE);
+            return index == null ? new LinkedHashMap<>() : index;
+        } catch (JsonParseException e) {
+            System.out.println("The output cache index is not valid and will be rebuilt: " + indexFile.getPath());
+            return new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * A PDF file recorded in the index, along with its state when it was recorded
+     * @param path the path of the PDF file relative to the PDF directory
+     * @param length the size of the PDF file
+     * @param lastModified the last modified time of the PDF file
+     */
+    private record Entry(String path, long length, long lastModified) {
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the PDF documents to a single zip archive instead of one file each. The entries are appended one after the
+ * other through a single buffered channel, by the thread logging the results, so the archive costs one file instead of
+ * the metadata of thousands of small ones. The archive is written to a hidden partial file and moved into place once
+ * complete. Not thread safe, except for the rendering of the pending PDF documents.
+ * <p>
+ * The workers render each PDF document to a pending PDF document, held until its result is logged. The pending PDF
+ * documents are kept in memory up to a total size, beyond which they are written to hidden temporary files next to the
+ * archive, so a batch of large PDF documents can't run out of memory while waiting to be appended.
+ */
+public class HtmlToPdfPdfArchive implements Closeable {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private final Path archivePath;
+    private final Path partialPath;
+    private final ZipOutputStream zipOutputStream;
+    private final Set<String> entryNames = new HashSet<>();
+    private final long maxPendingBytes;
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong spilledFiles = new AtomicLong();
+
+    /**
+     * Constructor for the PDF archive, replacing the archive of a previous run once complete. The entry names are the
+     * paths of the PDF documents relative to the absolute archive file.
+     * @param archiveFile the zip archive the PDF documents are written to
+     * @param maxPendingBytes the memory the pending PDF documents may hold, beyond which they are written to temporary
+     *                        files
+     * @throws IOException if the partial archive can't be created
+     */
+    public HtmlToPdfPdfArchive(File archiveFile, long maxPendingBytes) throws IOException {
+        this.archivePath = archiveFile.toPath().toAbsolutePath().normalize();
+        this.maxPendingBytes = maxPendingBytes;
+        this.partialPath = HtmlToPdfFileManager.getPartialFile(archiveFile).toPath();
+        FileChannel channel = FileChannel.open(partialPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.zipOutputStream = new ZipOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+        zipOutputStream.setLevel(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Creates a pending PDF document a worker renders a PDF document to. Thread safe.
+     * @return the pending PDF document
+     */
+    public PendingPdf createPendingPdf() {
+        return new PendingPdf();
+    }
+
+    /**
+     * Gets the number of pending PDF documents written to temporary files because the memory was exhausted
+     * @return the number of PDF documents written to temporary files
+     */
+    public long getSpilledFiles() {
+        return spilledFiles.get();
+    }
+
+    /**
+     * Appends a pending PDF document to the archive and discards it. A second PDF document with the same path,
+     * converted from an HTML file with the same base name, is reported and left out.
+     * @param pdfFile the path of the PDF document inside the archive, as a child of the archive file
+     * @param content the rendered PDF document
+     * @throws IOException if the PDF document can't be written or is not a child of the archive file
+     */
+    public void write(File pdfFile, PendingPdf content) throws IOException {
+        try {
+            Path pdfPath = pdfFile.toPath().toAbsolutePath().normalize();
+            if(!pdfPath.startsWith(archivePath)){
+                throw new IOException("Not a path inside the archive: " + pdfFile);
+            }
+            String entryName = archivePath.relativize(pdfPath).toString().replace(File.separatorChar, '/');
+            if(!entryNames.add(entryName)){
+                System.out.println("Leaving a PDF file with the same name out of the archive: " + entryName);
+                return;
+            }
+            zipOutputStream.putNextEntry(new ZipEntry(entryName));
+            content.writeTo(zipOutputStream);
+            zipOutputStream.closeEntry();
+        } finally {
+            content.discard();
+        }
+    }
+
+    /**
+     * Completes the archive and moves it into place
+     * @throws IOException if the archive can't be completed or moved
+     */
+    @Override
+    public void close() throws IOException {
+        zipOutputStream.close();
+        Files.move(partialPath, archivePath, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * A PDF document rendered by a worker and waiting to be appended to the archive. It is kept in memory while the
+     * pending PDF documents fit in their memory, and moved to a temporary file as soon as they don't. The document must
+     * be closed once rendered.
+     */
+    public class PendingPdf extends OutputStream {
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path spillPath;
+        private OutputStream spillStream;
+        private long size;
+
+        /**
+         * Constructor for the pending PDF document
+         */
+        private PendingPdf() {
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if(memory != null && !this.reserve(length)){
+                this.spill();
+            }
+            if(memory != null){
+                memory.write(bytes, offset, length);
+            }else{
+                spillStream.write(bytes, offset, length);
+            }
+            size += length;
+        }
+
+        /**
+         * Completes the temporary file of the PDF document if it was written to one
+         * @throws IOException if the temporary file can't be written
+         */
+        @Override
+        public void close() throws IOException {
+            if(spillStream != null){
+                spillStream.close();
+            }
+        }
+
+        /**
+         * Gets the size of the PDF document
+         * @return the size of the PDF document in bytes
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Releases the memory or deletes the temporary file of the PDF document
+         */
+        public void discard() {
+            if(memory != null){
+                pendingBytes.addAndGet(-memory.size());
+                memory = null;
+            }
+            if(spillPath != null){
+                try {
+                    this.close();
+                    Files.deleteIfExists(spillPath);
+                } catch (IOException e) {
+                    System.out.println("Failed to delete the temporary PDF file: " + spillPath + " (" + e.getMessage() + ")");
+                }
+                spillPath = null;
+            }
+        }
+
+        /**
+         * Copies the PDF document to a stream
+         * @param outputStream the stream the PDF document is copied to
+         * @throws IOException if the PDF document can't be read or copied
+         */
+        private void writeTo(OutputStream outputStream) throws IOException {
+            if(memory != null){
+                memory.writeTo(outputStream);
+            }else{
+                Files.copy(spillPath, outputStream);
+            }
+        }
+
+        /**
+         * Reserves memory for the next bytes of the PDF document among the memory of the pending PDF documents
+         * @param length the number of bytes to reserve
+         * @return true if the bytes fit in the memory of the pending PDF documents
+         */
+        private boolean reserve(int length) {
+            if(pendingBytes.addAndGet(length) <= maxPendingBytes){
+                return true;
+            }
+            pendingBytes.addAndGet(-length);
+            return false;
+        }
+
+        /**
+         * Moves the PDF document from memory to a hidden temporary file next to the archive
+         * @throws IOException if the temporary file can't be created
+         */
+        private void spill() throws IOException {
+            spillPath = Files.createTempFile(archivePath.toAbsolutePath().getParent(), "." + archivePath.getFileName() + "_", ".part");
+            spillStream = new BufferedOutputStream(Files.newOutputStream(spillPath));
+            memory.writeTo(spillStream);
+            pendingBytes.addAndGet(-memory.size());
+            memory = null;
+            spilledFiles.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prints a progress line at a regular interval while files are being converted: the files finished out of the files
+ * found, the conversion rate and, once the whole source has been walked, the estimated time left. The rate is smoothed
+ * over the recent intervals so a single slow file doesn't swing the estimate. Nothing is printed while there is
+ * nothing to convert.
+ */
+public class HtmlToPdfProgress implements AutoCloseable {
+    private static final double SMOOTHING = 0.3;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("html-to-pdf-progress").daemon().factory());
+    private final AtomicLong foundCount = new AtomicLong();
+    private final AtomicLong finishedCount = new AtomicLong();
+    private volatile boolean walking;
+    private long reportedFoundCount;
+    private long reportedFinishedCount;
+    private long reportNanos = System.nanoTime();
+    private double filesPerSecond = -1;
+
+    /**
+     * Constructor for the progress reporter, which starts printing right away
+     * @param intervalSeconds the time between two progress lines in seconds
+     */
+    public HtmlToPdfProgress(int intervalSeconds) {
+        scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Records that a file was found and will be converted
+     */
+    public void recordFound() {
+        foundCount.incrementAndGet();
+    }
+
+    /**
+     * Records that a file found earlier will not be converted after all, as another shard took it
+     */
+    public void recordNotClaimed() {
+        foundCount.decrementAndGet();
+    }
+
+    /**
+     * Records that the conversion of a file is finished, whatever its outcome
+     */
+    public void recordFinished() {
+        finishedCount.incrementAndGet();
+    }
+
+    /**
+     * Sets whether the source is being walked, in which case more files may still be found and no time left is
+     * estimated
+     * @param walking true while the source is walked
+     */
+    public void setWalking(boolean walking) {
+        this.walking = walking;
+    }
+
+    /**
+     * Stops printing progress lines
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Prints a progress line, unless nothing happened since the previous one and nothing is left to convert
+     */
+    private void report() {
+        long now = System.nanoTime();
+        long found = foundCount.get();
+        long finished = finishedCount.get();
+        double intervalFilesPerSecond = (finished - reportedFinishedCount) * 1e9 / (now - reportNanos);
+        boolean idle = finished == reportedFinishedCount && found == reportedFoundCount && finished >= found;
+        reportNanos = now;
+        reportedFinishedCount = finished;
+        reportedFoundCount = found;
+        if(idle){
+            filesPerSecond = -1;
+            return;
+        }
+        filesPerSecond = filesPerSecond < 0 ? intervalFilesPerSecond
+                : SMOOTHING * intervalFilesPerSecond + (1 - SMOOTHING) * filesPerSecond;
+        String rate = String.format("%.1f files/s", filesPerSecond);
+        if(walking){
+            System.out.println("Progress: " + finished + " of " + found + " files found so far, " + rate);
+        }else{
+            long remaining = Math.max(0, found - finished);
+            String eta = filesPerSecond > 0 ? formatDuration(Math.round(remaining / filesPerSecond)) : "unknown";
+            System.out.println("Progress: " + finished + " of " + found + " files (" + (found > 0 ? finished * 100 / found : 100)
+                    + "%), " + rate + ", ETA " + eta);
+        }
+    }
+
+    /**
+     * Formats a duration as hours, minutes and seconds
+     * @param seconds the duration in seconds
+     * @return the formatted duration
+     */
+    private static String formatDuration(long seconds) {
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The persisted record of the source files that keep failing to convert. A source file is quarantined when its
+ * conversion times out, or when it fails the configured number of times in a row, and is then skipped by the following
+ * runs until its size or last modified time changes. Entries are keyed by the path of the source file relative to the
+ * source directory.
+ */
+public class HtmlToPdfQuarantine {
+    private static final Type ENTRIES_TYPE = new TypeToken<Map<String, HtmlToPdfQuarantineEntry>>(){}.getType();
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private final File quarantineFile;
+    private final int maxFailures;
+    private final Map<String, HtmlToPdfQuarantineEntry> entries;
+
+    /**
+     * Constructor for the quarantine, reading the entries of the previous runs if the quarantine file exists
+     * @param quarantineFile the file the quarantine is persisted to
+     * @param maxFailures the number of failures in a row after which a source file is quarantined
+     * @throws IOException if the quarantine file exists but can't be read
+     */
+    public HtmlToPdfQuarantine(File quarantineFile, int maxFailures) throws IOException {
+        this.quarantineFile = quarantineFile;
+        this.maxFailures = maxFailures;
+        this.entries = this.read();
+    }
+
+    /**
+     * Tests if a source file is quarantined. The entry of a source file that changed since its last failure is dropped.
+     * @param relativePath the path of the source file relative to the source directory
+     * @param sourceFile the source HTML file
+     * @return the quarantine entry of the source file, or null if the source file is not quarantined
+     */
+    public synchronized HtmlToPdfQuarantineEntry getQuarantined(String relativePath, File sourceFile) {
+        HtmlToPdfQuarantineEntry entry = this.getCurrentEntry(relativePath, sourceFile);
+        return entry != null && entry.isQuarantined() ? entry : null;
+    }
+
+    /**
+     * Records a failed conversion of a source file
+     * @param relativePath the path of the source file relative to the source directory
+     * @param sourceFile the source HTML file
+     * @param reason the reason of the failure
+     * @param timedOut true if the conversion was cancelled for running past its time limit
+     * @return true if the source file has just been quarantined
+     */
+    public synchronized boolean recordFailure(String relativePath, File sourceFile, String reason, boolean timedOut) {
+        HtmlToPdfQuarantineEntry entry = this.getCurrentEntry(relativePath, sourceFile);
+        int failures = entry != null ? entry.getFailures() + 1 : 1;
+        boolean quarantined = timedOut || failures >= maxFailures;
+        entries.put(relativePath, new HtmlToPdfQuarantineEntry(sourceFile.length(), sourceFile.lastModified(), failures,
+                quarantined, reason));
+        return quarantined && (entry == null || !entry.isQuarantined());
+    }
+
+    /**
+     * Records a successful conversion of a source file, clearing its failures
+     * @param relativePath the path of the source file relative to the source directory
+     */
+    public synchronized void recordSuccess(String relativePath) {
+        entries.remove(relativePath);
+    }
+
+    /**
+     * Writes the quarantine to file, replacing the previous quarantine atomically
+     * @throws IOException if the quarantine file can't be written
+     */
+    public synchronized void save() throws IOException {
+        Path quarantinePath = quarantineFile.toPath();
+        Path temporaryPath = quarantinePath.resolveSibling(quarantineFile.getName() + TEMPORARY_EXTENSION);
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        try (Writer writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            gson.toJson(new TreeMap<>(entries), ENTRIES_TYPE, writer);
+        }
+        Files.move(temporaryPath, quarantinePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Gets the entry of a source file, dropping it if the source file changed since its last failure
+     * @param relativePath the path of the source file relative to the source directory
+     * @param sourceFile the source HTML file
+     * @return the entry of the source file, or null if it has none or it changed
+     */
+    private HtmlToPdfQuarantineEntry getCurrentEntry(String relativePath, File sourceFile) {
+        HtmlToPdfQuarantineEntry entry = entries.get(relativePath);
+        if(entry != null && (entry.getSize() != sourceFile.length() || entry.getLastModified() != sourceFile.lastModified())){
+            entries.remove(relativePath);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the entries of the previous runs from the quarantine file
+     * @return the entries of the previous runs, empty if there is no valid quarantine file
+     * @throws IOException if the quarantine file exists but can't be read
+     */
+    private Map<String, HtmlToPdfQuarantineEntry> read() throws IOException {
+        if(!quarantineFile.isFile()){
+            return new HashMap<>();
+        }
+        try (Reader reader = Files.newBufferedReader(quarantineFile.toPath(), StandardCharsets.UTF_8)) {
+            Map<String, HtmlToPdfQuarantineEntry> previousEntries = new Gson().fromJson(reader, ENTRIES_TYPE);
+            return previousEntries == null ? new HashMap<>() : new HashMap<>(previousEntries);
+        } catch (JsonParseException e) {
+            System.out.println("The quarantine file is not valid and will be rebuilt: " + quarantineFile.getPath());
+            return new HashMap<>();
+        }
+    }
+}
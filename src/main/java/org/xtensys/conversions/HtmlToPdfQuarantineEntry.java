@@ -0,0 +1,87 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+/**
+ * The failures of a source file since it last changed
+ */
+public class HtmlToPdfQuarantineEntry {
+    private final long size;
+    private final long lastModified;
+    private final int failures;
+    private final boolean quarantined;
+    private final String reason;
+
+    /**
+     * Constructor for the quarantine entry
+     * @param size the size of the source file in bytes
+     * @param lastModified the last modified time of the source file in milliseconds
+     * @param failures the number of consecutive failed conversions of the source file
+     * @param quarantined true if the source file is no longer converted until it changes
+     * @param reason the reason of the last failure
+     */
+    public HtmlToPdfQuarantineEntry(long size, long lastModified, int failures, boolean quarantined, String reason) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.failures = failures;
+        this.quarantined = quarantined;
+        this.reason = reason;
+    }
+
+    /**
+     * Gets the size of the source file in bytes
+     * @return the size of the source file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the last modified time of the source file in milliseconds
+     * @return the last modified time of the source file
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the number of consecutive failed conversions of the source file
+     * @return the number of failures
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Tests if the source file is no longer converted until it changes
+     * @return true if the source file is quarantined
+     */
+    public boolean isQuarantined() {
+        return quarantined;
+    }
+
+    /**
+     * Gets the reason of the last failure
+     * @return the reason of the last failure
+     */
+    public String getReason() {
+        return reason;
+    }
+}
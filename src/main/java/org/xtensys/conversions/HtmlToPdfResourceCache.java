@@ -0,0 +1,168 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.itextpdf.styledxmlparser.resolver.resource.DefaultResourceRetriever;
+import com.itextpdf.styledxmlparser.resolver.resource.IResourceRetriever;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resource retriever shared by all conversions, keeping the bytes of the stylesheets, images and fonts referenced by
+ * the HTML files in a size bounded least recently used cache keyed by their absolute URL.
+ * <p>
+ * A cached local file is read again once its size or last modified time changes. The cached bytes are shared between
+ * conversions and must not be modified.
+ */
+public class HtmlToPdfResourceCache implements IResourceRetriever {
+    private static final String FILE_PROTOCOL = "file";
+    private static final int MAXIMUM_ENTRY_FRACTION = 8;
+    private final IResourceRetriever resourceRetriever = new DefaultResourceRetriever();
+    private final long maximumBytes;
+    private final LinkedHashMap<String, CachedResource> resources = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long currentBytes;
+
+    /**
+     * Constructor for the resource cache
+     * @param maximumBytes the maximum total size of the cached resources in bytes
+     */
+    public HtmlToPdfResourceCache(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+    }
+
+    /**
+     * Gets the input stream of a resource, from the cache if it was already retrieved
+     * @param url the URL of the resource
+     * @return the input stream of the resource, or null if the resource can't be retrieved
+     * @throws IOException if the resource can't be read
+     */
+    @Override
+    public InputStream getInputStreamByUrl(URL url) throws IOException {
+        byte[] bytes = this.getByteArrayByUrl(url);
+        return bytes == null ? null : new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * Gets the bytes of a resource, from the cache if it was already retrieved
+     * @param url the URL of the resource
+     * @return the bytes of the resource, or null if the resource can't be retrieved
+     * @throws IOException if the resource can't be read
+     */
+    @Override
+    public byte[] getByteArrayByUrl(URL url) throws IOException {
+        String key = url.toExternalForm();
+        File file = HtmlToPdfResourceCache.toFile(url);
+        long lastModified = file == null ? 0 : file.lastModified();
+        long size = file == null ? 0 : file.length();
+        synchronized (this) {
+            CachedResource cachedResource = resources.get(key);
+            if(cachedResource != null && cachedResource.lastModified() == lastModified && cachedResource.size() == size){
+                hits.incrementAndGet();
+                return cachedResource.bytes();
+            }
+        }
+        misses.incrementAndGet();
+        byte[] bytes = resourceRetriever.getByteArrayByUrl(url);
+        if(bytes != null && bytes.length <= maximumBytes / MAXIMUM_ENTRY_FRACTION){
+            this.put(key, new CachedResource(bytes, lastModified, size));
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the number of resources served from the cache
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of resources that had to be retrieved
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of resources evicted from the cache to make room for others
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Adds a resource to the cache, evicting the least recently used resources until the cache fits its size
+     * @param key the absolute URL of the resource
+     * @param cachedResource the resource
+     */
+    private synchronized void put(String key, CachedResource cachedResource) {
+        CachedResource previousResource = resources.put(key, cachedResource);
+        if(previousResource != null){
+            currentBytes -= previousResource.bytes().length;
+        }
+        currentBytes += cachedResource.bytes().length;
+        Iterator<Map.Entry<String, CachedResource>> iterator = resources.entrySet().iterator();
+        while(currentBytes > maximumBytes && iterator.hasNext()){
+            currentBytes -= iterator.next().getValue().bytes().length;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the local file of a URL
+     * @param url the URL
+     * @return the local file, or null if the URL is not a local file
+     */
+    private static File toFile(URL url) {
+        if(!FILE_PROTOCOL.equalsIgnoreCase(url.getProtocol())){
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A cached resource along with the state of its local file when it was read
+     * @param bytes the bytes of the resource
+     * @param lastModified the last modified time of the local file, 0 if the resource is not a local file
+     * @param size the size of the local file, 0 if the resource is not a local file
+     */
+    private record CachedResource(byte[] bytes, long lastModified, long size) {
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the measurements of every conversion of a run and writes them as a machine readable JSON summary to the
+ * logs directory, so runs can be compared across releases. A summary that never ends, such as the metrics of the
+ * server, keeps only the latencies of its most recent conversions so its memory and the cost of the percentiles stay
+ * bounded
+ */
+public class HtmlToPdfRunSummary {
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    static final String BASE_FILENAME = "html_to_pdf_summary_";
+    static final String EXTENSION = ".json";
+    private static final int SLOWEST_FILE_COUNT = 10;
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    private static final double BYTES_PER_MEGABYTE = 1024d * 1024d;
+    private final LocalDateTime startTime = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+    private final Map<HtmlToPdfConversionStatus, Long> fileCounts = new EnumMap<>(HtmlToPdfConversionStatus.class);
+    private final PriorityQueue<SlowFile> slowestFiles = new PriorityQueue<>(Comparator.comparingLong(SlowFile::wallTimeNanos));
+    private final int maxLatencies;
+    private long[] latencies;
+    private int latencyCount;
+    private int nextLatency;
+    private long inputBytes;
+    private long outputBytes;
+    private long pageCount;
+    private long renderedInputBytes;
+    private long renderedFiles;
+    private long renderedOutputBytes;
+    private long renderedNanos;
+    private long firstPdfUptimeMillis = -1;
+    private final HtmlToPdfLinearFit costFit = new HtmlToPdfLinearFit();
+
+    /**
+     * Creates a summary keeping the latencies of every conversion of the run
+     */
+    public HtmlToPdfRunSummary() {
+        this(0);
+    }
+
+    /**
+     * Creates a summary keeping the latencies of the most recent conversions only
+     * @param maxLatencies the number of latencies kept for the percentiles, 0 to keep them all
+     */
+    public HtmlToPdfRunSummary(int maxLatencies) {
+        this.maxLatencies = maxLatencies;
+        this.latencies = new long[maxLatencies > 0 ? Math.min(maxLatencies, 1024) : 1024];
+    }
+
+    /**
+     * Records the result of a conversion
+     * @param conversionTask the conversion
+     * @param result the outcome and measurements of the conversion
+     */
+    public synchronized void record(HtmlToPdfConversionTask conversionTask, HtmlToPdfConversionResult result) {
+        fileCounts.merge(result.getStatus(), 1L, Long::sum);
+        inputBytes += result.getInputBytes();
+        outputBytes += result.getOutputBytes();
+        pageCount += result.getPageCount();
+        if(result.getStatus() == HtmlToPdfConversionStatus.SUCCESS){
+            renderedFiles++;
+            renderedInputBytes += result.getInputBytes();
+            renderedOutputBytes += result.getOutputBytes();
+            renderedNanos += result.getWallTimeNanos();
+            costFit.add(result.getInputBytes(), result.getWallTimeNanos());
+        }
+        if(result.getStatus() == HtmlToPdfConversionStatus.SUCCESS || result.getStatus() == HtmlToPdfConversionStatus.FAILURE){
+            this.recordLatency(result.getWallTimeNanos());
+            slowestFiles.add(new SlowFile(conversionTask.getRelativePath(), result));
+            if(slowestFiles.size() > SLOWEST_FILE_COUNT){
+                slowestFiles.poll();
+            }
+        }
+    }
+
+    /**
+     * Records the latency of a conversion, replacing the oldest one once the maximum number of latencies is kept
+     * @param wallTimeNanos the wall time of the conversion in nanoseconds
+     */
+    private void recordLatency(long wallTimeNanos) {
+        if(maxLatencies > 0 && latencyCount == maxLatencies){
+            latencies[nextLatency] = wallTimeNanos;
+            nextLatency = (nextLatency + 1) % maxLatencies;
+            return;
+        }
+        if(latencyCount == latencies.length){
+            int length = latencies.length * 2;
+            latencies = Arrays.copyOf(latencies, maxLatencies > 0 ? Math.min(length, maxLatencies) : length);
+        }
+        latencies[latencyCount++] = wallTimeNanos;
+    }
+
+    /**
+     * Records that a worker created a PDF file, keeping the time since the JVM started when the first one is created
+     */
+    public synchronized void recordPdfCreated() {
+        if(firstPdfUptimeMillis < 0){
+            firstPdfUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        }
+    }
+
+    /**
+     * Gets the number of files with a given outcome
+     * @param status the outcome of the conversions
+     * @return the number of files with the outcome
+     */
+    public synchronized long getFileCount(HtmlToPdfConversionStatus status) {
+        return fileCounts.getOrDefault(status, 0L);
+    }
+
+    /**
+     * Gets the total number of files processed
+     * @return the number of files processed
+     */
+    public synchronized long getTotalFileCount() {
+        return fileCounts.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Creates the JSON representation of the summary
+     * @param outputCache the output cache used by the run, or null if there was none
+     * @param resourceCache the resource cache used by the run, or null if there was none
+     * @return the JSON summary
+     */
+    public synchronized JsonObject toJson(HtmlToPdfOutputCache outputCache, HtmlToPdfResourceCache resourceCache) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        double elapsedSeconds = elapsedNanos / (NANOS_PER_MILLI * 1000);
+        JsonObject summary = new JsonObject();
+        summary.addProperty("startTime", startTime.toString());
+        summary.addProperty("elapsedMillis", Duration.ofNanos(elapsedNanos).toMillis());
+        if(firstPdfUptimeMillis >= 0){
+            summary.addProperty("timeToFirstPdfMillis", firstPdfUptimeMillis);
+        }
+
+        JsonObject files = new JsonObject();
+        files.addProperty("total", this.getTotalFileCount());
+        for(HtmlToPdfConversionStatus status : HtmlToPdfConversionStatus.values()){
+            files.addProperty(status.name().toLowerCase(Locale.ROOT), this.getFileCount(status));
+        }
+        summary.add("files", files);
+        summary.addProperty("inputBytes", inputBytes);
+        summary.addProperty("outputBytes", outputBytes);
+        summary.addProperty("pages", pageCount);
+        summary.addProperty("renderedInputBytes", renderedInputBytes);
+        summary.addProperty("filesPerSecond", elapsedSeconds > 0 ? renderedFiles / elapsedSeconds : 0);
+        summary.addProperty("megabytesPerSecond", elapsedSeconds > 0 ? renderedInputBytes / BYTES_PER_MEGABYTE / elapsedSeconds : 0);
+
+        long[] sortedLatencies = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sortedLatencies);
+        JsonObject latency = new JsonObject();
+        latency.addProperty("samples", latencyCount);
+        latency.addProperty("p50", HtmlToPdfRunSummary.percentileMillis(sortedLatencies, 50));
+        latency.addProperty("p95", HtmlToPdfRunSummary.percentileMillis(sortedLatencies, 95));
+        latency.addProperty("p99", HtmlToPdfRunSummary.percentileMillis(sortedLatencies, 99));
+        latency.addProperty("max", HtmlToPdfRunSummary.percentileMillis(sortedLatencies, 100));
+        summary.add("latencyMillis", latency);
+
+        List<SlowFile> slowest = new ArrayList<>(slowestFiles);
+        slowest.sort(Comparator.comparingLong(SlowFile::wallTimeNanos).reversed());
+        JsonArray slowestArray = new JsonArray();
+        for(SlowFile slowFile : slowest){
+            JsonObject file = new JsonObject();
+            file.addProperty("path", slowFile.relativePath());
+            file.addProperty("status", slowFile.result().getStatus().name());
+            file.addProperty("millis", slowFile.wallTimeNanos() / NANOS_PER_MILLI);
+            file.addProperty("inputBytes", slowFile.result().getInputBytes());
+            file.addProperty("outputBytes", slowFile.result().getOutputBytes());
+            file.addProperty("pages", slowFile.result().getPageCount());
+            slowestArray.add(file);
+        }
+        summary.add("slowestFiles", slowestArray);
+        summary.add("costModel", this.costModelJson());
+        summary.add("rendering", this.renderingJson());
+
+        if(outputCache != null){
+            summary.add("outputCache", HtmlToPdfRunSummary.cacheJson(outputCache.getHits(), outputCache.getMisses(), outputCache.getEvictions()));
+        }
+        if(resourceCache != null){
+            summary.add("resourceCache", HtmlToPdfRunSummary.cacheJson(resourceCache.getHits(), resourceCache.getMisses(), resourceCache.getEvictions()));
+        }
+        return summary;
+    }
+
+    /**
+     * Writes the summary to a new JSON file in the logs directory
+     * @param logDirectory the logs directory
+     * @param shardName the name of the shard, or null if the source files are not sharded
+     * @param summary the JSON summary
+     * @return the summary file
+     * @throws IOException if the summary file can't be written
+     */
+    public File write(File logDirectory, String shardName, JsonObject summary) throws IOException {
+        String shardPrefix = shardName != null ? shardName + "_" : "";
+        File summaryFile = new File(logDirectory, BASE_FILENAME + shardPrefix + TIMESTAMP_FORMATTER.format(startTime) + EXTENSION);
+        try (Writer writer = Files.newBufferedWriter(summaryFile.toPath(), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(summary, writer);
+        }
+        return summaryFile;
+    }
+
+    /**
+     * Creates the JSON representation of the size and time of the PDF files rendered by the run, so runs using
+     * different writer settings can be compared
+     * @return the JSON rendering statistics
+     */
+    private JsonObject renderingJson() {
+        JsonObject rendering = new JsonObject();
+        rendering.addProperty("files", renderedFiles);
+        rendering.addProperty("inputBytes", renderedInputBytes);
+        rendering.addProperty("outputBytes", renderedOutputBytes);
+        rendering.addProperty("pages", pageCount);
+        rendering.addProperty("outputBytesPerPage", pageCount > 0 ? (double) renderedOutputBytes / pageCount : 0);
+        rendering.addProperty("outputBytesPerInputByte", renderedInputBytes > 0 ? (double) renderedOutputBytes / renderedInputBytes : 0);
+        rendering.addProperty("millisPerPage", pageCount > 0 ? renderedNanos / NANOS_PER_MILLI / pageCount : 0);
+        rendering.addProperty("millisPerFile", renderedFiles > 0 ? renderedNanos / NANOS_PER_MILLI / renderedFiles : 0);
+        return rendering;
+    }
+
+    /**
+     * Creates the JSON representation of the fit of the conversion time of the converted files to their size
+     * @return the JSON cost model
+     */
+    private JsonObject costModelJson() {
+        JsonObject costModel = new JsonObject();
+        costModel.addProperty("files", costFit.getCount());
+        costModel.addProperty("fixedMillis", costFit.getFixedCost() / NANOS_PER_MILLI);
+        costModel.addProperty("millisPerKilobyte", costFit.getCostPerUnit() * 1024 / NANOS_PER_MILLI);
+        return costModel;
+    }
+
+    /**
+     * Gets a percentile of the latencies with the nearest rank method
+     * @param sortedLatencies the latencies in nanoseconds, sorted in ascending order
+     * @param percentile the percentile, between 1 and 100
+     * @return the latency at the percentile in milliseconds, 0 if there are no latencies
+     */
+    private static double percentileMillis(long[] sortedLatencies, int percentile) {
+        if(sortedLatencies.length == 0){
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100d * sortedLatencies.length);
+        return sortedLatencies[Math.max(rank, 1) - 1] / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Creates the JSON representation of the counters of a cache
+     * @param hits the number of cache hits
+     * @param misses the number of cache misses
+     * @param evictions the number of evictions
+     * @return the JSON cache counters
+     */
+    private static JsonObject cacheJson(long hits, long misses, long evictions) {
+        JsonObject cache = new JsonObject();
+        cache.addProperty("hits", hits);
+        cache.addProperty("misses", misses);
+        cache.addProperty("evictions", evictions);
+        return cache;
+    }
+
+    /**
+     * One of the slowest conversions of the run
+     * @param relativePath the path of the HTML file relative to the source directory
+     * @param result the outcome and measurements of the conversion
+     */
+    private record SlowFile(String relativePath, HtmlToPdfConversionResult result) {
+        /**
+         * Gets the time the conversion took
+         * @return the wall time of the conversion in nanoseconds
+         */
+        private long wallTimeNanos() {
+            return result.getWallTimeNanos();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders the conversions of a batch by their estimated cost.
+ * <p>
+ * The cost of a file is estimated from its size with the cost model of the latest run summary of the logs directory in
+ * which files were converted, a fixed cost plus a cost per byte. The files listed among the slowest files of that summary are estimated
+ * with the time they actually took, as long as their size has not changed. Without a previous summary the files are
+ * ordered by size.
+ */
+public class HtmlToPdfScheduler {
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    private final HtmlToPdfSchedulingPolicy schedulingPolicy;
+    private final Map<String, MeasuredCost> measuredCosts = new HashMap<>();
+    private double fixedNanos;
+    private double nanosPerByte = 1;
+
+    /**
+     * Constructor for the scheduler, learning the cost model from the latest run summary in which files were converted
+     * @param schedulingPolicy the order the conversions are executed in
+     * @param logDirectory the logs directory holding the run summaries
+     * @throws IOException if a run summary exists but can't be read
+     */
+    public HtmlToPdfScheduler(HtmlToPdfSchedulingPolicy schedulingPolicy, File logDirectory) throws IOException {
+        this.schedulingPolicy = schedulingPolicy;
+        for(File summaryFile : HtmlToPdfScheduler.findSummaries(logDirectory)){
+            if(this.read(summaryFile)){
+                System.out.println("Scheduling with the conversion times of: " + summaryFile.getPath());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Orders conversions by their estimated cost according to the scheduling policy, conversions of equal cost keeping
+     * their order
+     * @param conversionTasks the conversions
+     * @return the conversions in the order they should be executed in
+     */
+    public List<HtmlToPdfConversionTask> order(List<HtmlToPdfConversionTask> conversionTasks) {
+        if(schedulingPolicy == HtmlToPdfSchedulingPolicy.DISCOVERY){
+            return conversionTasks;
+        }
+        List<EstimatedTask> estimatedTasks = new ArrayList<>(conversionTasks.size());
+        for(HtmlToPdfConversionTask conversionTask : conversionTasks){
+            estimatedTasks.add(new EstimatedTask(conversionTask, this.estimateNanos(conversionTask)));
+        }
+        Comparator<EstimatedTask> comparator = Comparator.comparingDouble(EstimatedTask::costNanos);
+        estimatedTasks.sort(schedulingPolicy == HtmlToPdfSchedulingPolicy.LONGEST_FIRST ? comparator.reversed() : comparator);
+        List<HtmlToPdfConversionTask> orderedTasks = new ArrayList<>(estimatedTasks.size());
+        for(EstimatedTask estimatedTask : estimatedTasks){
+            orderedTasks.add(estimatedTask.conversionTask());
+        }
+        return orderedTasks;
+    }
+
+    /**
+     * Estimates the time the conversion of a file will take
+     * @param conversionTask the conversion
+     * @return the estimated conversion time in nanoseconds
+     */
+    public double estimateNanos(HtmlToPdfConversionTask conversionTask) {
+        long inputBytes = conversionTask.getSourceLength();
+        MeasuredCost measuredCost = measuredCosts.get(conversionTask.getRelativePath());
+        if(measuredCost != null && measuredCost.inputBytes() == inputBytes){
+            return measuredCost.nanos();
+        }
+        return fixedNanos + nanosPerByte * inputBytes;
+    }
+
+    /**
+     * Finds the run summaries of the logs directory, whatever shard wrote them, the most recent first
+     * @param logDirectory the logs directory
+     * @return the run summary files, empty if there are none
+     */
+    private static List<File> findSummaries(File logDirectory) {
+        File[] summaryFiles = logDirectory.listFiles((directory, name) ->
+                name.startsWith(HtmlToPdfRunSummary.BASE_FILENAME) && name.endsWith(HtmlToPdfRunSummary.EXTENSION));
+        List<File> summaries = summaryFiles == null ? new ArrayList<>() : new ArrayList<>(List.of(summaryFiles));
+        summaries.sort(Comparator.comparingLong(File::lastModified).reversed());
+        return summaries;
+    }
+
+    /**
+     * Reads the cost model and the measured slowest files of a run summary
+     * @param summaryFile the run summary file
+     * @return true if the summary holds a cost model learned from at least one converted file
+     * @throws IOException if the run summary can't be read
+     */
+    private boolean read(File summaryFile) throws IOException {
+        try (Reader reader = Files.newBufferedReader(summaryFile.toPath(), StandardCharsets.UTF_8)) {
+            JsonObject summary = JsonParser.parseReader(reader).getAsJsonObject();
+            JsonObject costModel = summary.getAsJsonObject("costModel");
+            if(costModel == null || costModel.get("files").getAsLong() == 0){
+                return false;
+            }
+            fixedNanos = costModel.get("fixedMillis").getAsDouble() * NANOS_PER_MILLI;
+            nanosPerByte = costModel.get("millisPerKilobyte").getAsDouble() * NANOS_PER_MILLI / 1024;
+            for(JsonElement element : summary.getAsJsonArray("slowestFiles")){
+                JsonObject file = element.getAsJsonObject();
+                if(HtmlToPdfConversionStatus.SUCCESS.name().equals(file.get("status").getAsString())){
+                    measuredCosts.put(file.get("path").getAsString(), new MeasuredCost(file.get("inputBytes").getAsLong(),
+                            file.get("millis").getAsDouble() * NANOS_PER_MILLI));
+                }
+            }
+            return true;
+        } catch (JsonParseException | IllegalStateException | ClassCastException | UnsupportedOperationException | NullPointerException e) {
+            System.out.println("The run summary is not valid and is not used for scheduling: " + summaryFile.getPath());
+            fixedNanos = 0;
+            nanosPerByte = 1;
+            measuredCosts.clear();
+            return false;
+        }
+    }
+
+    /**
+     * The time the conversion of a file took in a previous run
+     * @param inputBytes the size of the file when it was converted
+     * @param nanos the conversion time in nanoseconds
+     */
+    private record MeasuredCost(long inputBytes, double nanos) {
+    }
+
+    /**
+     * A conversion along with its estimated cost
+     * @param conversionTask the conversion
+     * @param costNanos the estimated conversion time in nanoseconds
+     */
+    private record EstimatedTask(HtmlToPdfConversionTask conversionTask, double costNanos) {
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+/**
+ * The orders in which the files of the source directory are handed to the workers
+ */
+public enum HtmlToPdfSchedulingPolicy {
+    /**
+     * Files are converted in the order they are found while the source directory is walked
+     */
+    DISCOVERY,
+    /**
+     * The most expensive files are converted first, so a large file is not left running alone at the end of a batch
+     */
+    LONGEST_FIRST,
+    /**
+     * The cheapest files are converted first, so most PDF files are available as early as possible
+     */
+    SHORTEST_FIRST
+}
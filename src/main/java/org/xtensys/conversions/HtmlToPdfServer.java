@@ -0,0 +1,447 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long running mode that converts the HTML documents posted to a local HTTP server and streams back the PDF.
+ * <p>
+ * Every request is handled on its own virtual thread. At most the configured number of conversions run at the same
+ * time, and only while their estimated memory use fits in the memory budget. Further requests wait in a bounded queue,
+ * and a request arriving when the queue is full is answered 503 straight away. The fonts, resource cache and output
+ * buffers are shared by every request.
+ * <p>
+ * The posted documents are not trusted: besides their assets, they may only reference the resources under the
+ * configured base URI and allowed resource URIs, and a base URI passed by a request must be one of those too.
+ * <ul>
+ *     <li>{@code POST /convert}: converts the HTML document in the body, or the multipart form holding the document
+ *     and its assets</li>
+ *     <li>{@code GET /health}: answers 200 while the server is running</li>
+ *     <li>{@code GET /metrics}: the request counters and conversion latencies as JSON</li>
+ * </ul>
+ */
+public class HtmlToPdfServer {
+    private static final String PDF_CONTENT_TYPE = "application/pdf";
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+    private static final String MULTIPART_CONTENT_TYPE = "multipart/form-data";
+    private static final List<String> HTML_CONTENT_TYPES = List.of("text/html", "application/xhtml+xml", MULTIPART_CONTENT_TYPE);
+    private static final String BASE_URI_PARAMETER = "baseUri=";
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final int STOP_DELAY_SECONDS = 30;
+    private static final int CLOSE_DELAY_SECONDS = 1;
+    private static final int METRICS_LATENCY_COUNT = 4096;
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    private final HttpServer httpServer;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HtmlToPdfConverterPropertiesFactory converterPropertiesFactory;
+    private final HtmlToPdfStreamConverter streamConverter;
+    private final HtmlToPdfRunSummary runSummary = new HtmlToPdfRunSummary(METRICS_LATENCY_COUNT);
+    private final int maxConversions;
+    private final int queueSize;
+    private final long maxRequestBytes;
+    private final String baseUri;
+    private final List<String> allowedResourceUris = new ArrayList<>();
+    private final int warmUpIterations;
+    private final Semaphore admissions;
+    private final Semaphore conversions;
+    private final HtmlToPdfMemoryBudget memoryBudget;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Constructor for the server, binding it to the configured address
+     * @param configuration the converter configuration
+     * @throws IOException if the server can't be bound to the configured address
+     */
+    public HtmlToPdfServer(HtmlToPdfConfiguration configuration) throws IOException {
+        this.converterPropertiesFactory = new HtmlToPdfConverterPropertiesFactory(configuration);
+        this.maxConversions = configuration.getServerMaxConversions();
+        this.queueSize = configuration.getServerQueueSize();
+        this.maxRequestBytes = configuration.getServerMaxRequestMb() * BYTES_PER_MEGABYTE;
+        this.warmUpIterations = configuration.getWarmUpIterations();
+        this.baseUri = configuration.getBaseUri();
+        if(baseUri != null){
+            this.allowedResourceUris.add(baseUri);
+        }
+        this.allowedResourceUris.addAll(configuration.getServerAllowedResourceUris());
+        this.streamConverter = new HtmlToPdfStreamConverter(converterPropertiesFactory,
+                new HtmlToPdfOutputBufferPool(maxConversions));
+        this.admissions = new Semaphore(maxConversions + queueSize);
+        this.conversions = new Semaphore(maxConversions, true);
+        this.memoryBudget = configuration.getMemoryBudgetPercent() > 0
+                ? new HtmlToPdfMemoryBudget(configuration.getMemoryBudgetPercent(), configuration.getMemoryRetainedPercent()) : null;
+        this.httpServer = HttpServer.create(new InetSocketAddress(configuration.getServerHost(), configuration.getServerPort()), 0);
+        this.httpServer.setExecutor(executor);
+        this.httpServer.createContext("/convert", this::handleConvert);
+        this.httpServer.createContext("/health", this::handleHealth);
+        this.httpServer.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Warms up the converter if configured, then starts the server and blocks until the JVM shuts down. A failed
+     * warm-up is reported and does not prevent the server from starting.
+     * @throws InterruptedException if interrupted while the server is running
+     */
+    public void run() throws InterruptedException {
+        if(warmUpIterations > 0){
+            try {
+                System.out.println("Warmed up in " + HtmlToPdfWarmUp.run(streamConverter, warmUpIterations) / 1_000_000 + " ms");
+            } catch (IOException | HtmlToPdfConversionException e) {
+                System.out.println("Failed to warm up, serving without warm-up: " + e.getMessage());
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "html-to-pdf-server-shutdown"));
+        httpServer.start();
+        System.out.println("Listening for HTML documents on http://" + httpServer.getAddress().getHostString() + ":"
+                + this.getPort() + "/convert");
+        stopped.await();
+    }
+
+    /**
+     * Stops accepting conversions, waits up to 30 seconds for the conversions in flight and queued to finish, then
+     * stops the server. Taking every admission first answers the new requests 503, and avoids waiting for the whole
+     * stop delay of the HTTP server when it is idle.
+     */
+    public void stop() {
+        if(stopped.getCount() == 0){
+            return;
+        }
+        try {
+            admissions.tryAcquire(maxConversions + queueSize, STOP_DELAY_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        httpServer.stop(CLOSE_DELAY_SECONDS);
+        executor.close();
+        stopped.countDown();
+    }
+
+    /**
+     * Gets the port the server is bound to
+     * @return the port of the server
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Converts the HTML document of a request, answering 415 if the body is neither an HTML document nor a multipart
+     * form, or 503 if the conversion queue is full
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response can't be sent
+     */
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long requestId = requestCount.incrementAndGet();
+            if(!"POST".equals(exchange.getRequestMethod())){
+                exchange.getResponseHeaders().set("Allow", "POST");
+                this.sendText(exchange, 405, "Only POST is supported");
+                return;
+            }
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if(contentType != null && !HtmlToPdfServer.isHtmlContentType(contentType)){
+                this.sendText(exchange, 415, "Unsupported content type: " + contentType);
+                return;
+            }
+            if(!admissions.tryAcquire()){
+                rejectedCount.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+                this.sendText(exchange, 503, "Too many conversions in progress");
+                return;
+            }
+            try {
+                byte[] body = exchange.getRequestBody().readNBytes((int) Math.min(maxRequestBytes + 1, Integer.MAX_VALUE - 8));
+                if(body.length > maxRequestBytes){
+                    this.sendText(exchange, 413, "The request is larger than " + maxRequestBytes + " bytes");
+                    return;
+                }
+                conversions.acquire();
+                try {
+                    HtmlToPdfMemoryBudget.Reservation reservation = memoryBudget != null ? memoryBudget.reserve(body.length) : null;
+                    try {
+                        this.convert(exchange, requestId, body);
+                    } finally {
+                        if(reservation != null){
+                            reservation.close();
+                        }
+                    }
+                } finally {
+                    conversions.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.sendText(exchange, 503, "The server is stopping");
+            } finally {
+                admissions.release();
+            }
+        }
+    }
+
+    /**
+     * Tests if the content type of a request body is an HTML document or a multipart form
+     * @param contentType the content type of the request body, along with its parameters
+     * @return true if the request body can be converted
+     */
+    private static boolean isHtmlContentType(String contentType) {
+        String mediaType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return HTML_CONTENT_TYPES.contains(mediaType);
+    }
+
+    /**
+     * Converts the HTML document or multipart form of a request body and streams back the PDF
+     * @param exchange the HTTP exchange
+     * @param requestId the number of the request, reported among the slowest conversions
+     * @param body the request body
+     * @throws IOException if the response can't be sent
+     */
+    private void convert(HttpExchange exchange, long requestId, byte[] body) throws IOException {
+        long startNanos = System.nanoTime();
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        PdfResponseStream responseStream = new PdfResponseStream(exchange);
+        HtmlToPdfConversionStatus status = HtmlToPdfConversionStatus.FAILURE;
+        int pageCount = 0;
+        try {
+            if(contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(MULTIPART_CONTENT_TYPE)){
+                HtmlToPdfMultipartForm form = HtmlToPdfMultipartForm.parse(body, contentType);
+                pageCount = streamConverter.convertUntrusted(new ByteArrayInputStream(form.getHtml()),
+                        this.checkBaseUri(form.getBaseUri()), form.getAssets(), allowedResourceUris, responseStream);
+            }else{
+                String requestBaseUri = this.getBaseUri(exchange);
+                pageCount = streamConverter.convertUntrusted(new ByteArrayInputStream(body),
+                        requestBaseUri != null ? this.checkBaseUri(requestBaseUri) : baseUri, Map.of(),
+                        allowedResourceUris, responseStream);
+            }
+            status = HtmlToPdfConversionStatus.SUCCESS;
+        } catch (HtmlToPdfConversionException e) {
+            this.sendText(exchange, 422, e.getMessage());
+        } catch (IOException e) {
+            if(responseStream.isStarted()){
+                throw e;
+            }
+            this.sendText(exchange, 400, e.getMessage());
+        } finally {
+            HtmlToPdfConversionTask conversionTask = new HtmlToPdfConversionTask(null, null, "request " + requestId);
+            runSummary.record(conversionTask, new HtmlToPdfConversionResult(status, System.nanoTime() - startNanos,
+                    body.length, responseStream.getByteCount(), pageCount));
+        }
+    }
+
+    /**
+     * Answers the health check while the server is running
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response can't be sent
+     */
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonObject health = new JsonObject();
+            health.addProperty("status", "UP");
+            this.sendJson(exchange, health);
+        }
+    }
+
+    /**
+     * Answers the request counters, the state of the conversion queue and the conversion latencies
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response can't be sent
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int inFlight = maxConversions - conversions.availablePermits();
+            JsonObject metrics = runSummary.toJson(null, converterPropertiesFactory.getResourceCache());
+            if(converterPropertiesFactory.getStyleSheetCache() != null){
+                metrics.add("styleSheetCache", converterPropertiesFactory.getStyleSheetCache().toJson());
+            }
+            JsonObject server = new JsonObject();
+            server.addProperty("maxConversions", maxConversions);
+            server.addProperty("queueSize", queueSize);
+            server.addProperty("inFlight", inFlight);
+            server.addProperty("queued", Math.max(maxConversions + queueSize - admissions.availablePermits() - inFlight, 0));
+            server.addProperty("requests", requestCount.get());
+            server.addProperty("rejected", rejectedCount.get());
+            metrics.add("server", server);
+            metrics.add("writer", converterPropertiesFactory.writerJson());
+            if(memoryBudget != null){
+                metrics.add("memoryBudget", memoryBudget.toJson());
+            }
+            this.sendJson(exchange, metrics);
+        }
+    }
+
+    /**
+     * Gets the base URI passed in the query string of a request
+     * @param exchange the HTTP exchange
+     * @return the base URI, or null if none was passed
+     */
+    private String getBaseUri(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if(query != null){
+            for(String parameter : query.split("&")){
+                if(parameter.startsWith(BASE_URI_PARAMETER)){
+                    return URLDecoder.decode(parameter.substring(BASE_URI_PARAMETER.length()), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that a base URI passed by a request is under the configured base URI or one of the allowed resource URIs
+     * @param requestBaseUri the base URI passed by the request, or null if none was passed
+     * @return the base URI passed by the request
+     * @throws IOException if the base URI is not allowed, answered 400
+     */
+    private String checkBaseUri(String requestBaseUri) throws IOException {
+        if(requestBaseUri != null && !HtmlToPdfAssetResourceRetriever.isAllowed(requestBaseUri, allowedResourceUris)){
+            throw new IOException("The base URI is not allowed: " + requestBaseUri);
+        }
+        return requestBaseUri;
+    }
+
+    /**
+     * Sends a JSON response
+     * @param exchange the HTTP exchange
+     * @param json the JSON body
+     * @throws IOException if the response can't be sent
+     */
+    private void sendJson(HttpExchange exchange, JsonObject json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        this.send(exchange, 200, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a plain text response
+     * @param exchange the HTTP exchange
+     * @param statusCode the HTTP status code
+     * @param message the text body
+     * @throws IOException if the response can't be sent
+     */
+    private void sendText(HttpExchange exchange, int statusCode, String message) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", TEXT_CONTENT_TYPE);
+        this.send(exchange, statusCode, (message + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a response with a body of known length
+     * @param exchange the HTTP exchange
+     * @param statusCode the HTTP status code
+     * @param body the body
+     * @throws IOException if the response can't be sent
+     */
+    private void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(statusCode, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Response body that only sends the 200 status once the first bytes of the PDF are written, so a failed conversion
+     * can still be answered with an error status
+     */
+    private static class PdfResponseStream extends FilterOutputStream {
+        private final HttpExchange exchange;
+        private long byteCount;
+        private boolean started;
+
+        /**
+         * Constructor for the response stream
+         * @param exchange the HTTP exchange
+         */
+        private PdfResponseStream(HttpExchange exchange) {
+            super(exchange.getResponseBody());
+            this.exchange = exchange;
+        }
+
+        /**
+         * Writes a byte of the PDF
+         * @param b the byte
+         * @throws IOException if the response can't be sent
+         */
+        @Override
+        public void write(int b) throws IOException {
+            this.start();
+            out.write(b);
+            byteCount++;
+        }
+
+        /**
+         * Writes bytes of the PDF
+         * @param b the bytes
+         * @param off the offset of the first byte written
+         * @param len the number of bytes written
+         * @throws IOException if the response can't be sent
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.start();
+            out.write(b, off, len);
+            byteCount += len;
+        }
+
+        /**
+         * Sends the 200 status and the PDF content type with a chunked body, if not already sent
+         * @throws IOException if the response headers can't be sent
+         */
+        private void start() throws IOException {
+            if(!started){
+                started = true;
+                exchange.getResponseHeaders().set("Content-Type", PDF_CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, 0);
+            }
+        }
+
+        /**
+         * Tests if the response headers were sent
+         * @return true if the PDF started to be written
+         */
+        private boolean isStarted() {
+            return started;
+        }
+
+        /**
+         * Gets the number of bytes of the PDF written
+         * @return the number of bytes written
+         */
+        private long getByteCount() {
+            return byteCount;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Splits the source files between the processes converting the same source directory, possibly on several machines
+ * sharing the target directory.
+ * <p>
+ * Each source file belongs to the shard given by a stable hash of its relative path, so every process agrees on the
+ * split without talking to the others. When a lease run id is configured, a file is also claimed by atomically
+ * creating a lease file before it is converted, and the lease is turned into a done marker once it is converted. A
+ * process that finished its own shard then walks the source directory again and takes the files nobody has claimed
+ * yet, along with the files whose lease has been held for longer than the lease timeout by a process that died.
+ * <p>
+ * The leases held by a process are renewed several times per lease timeout until their files are converted, so a
+ * conversion running longer than the lease timeout is not taken over by another process.
+ */
+public class HtmlToPdfShard implements AutoCloseable {
+    private static final String LEASE_EXTENSION = ".lease";
+    private static final String DONE_EXTENSION = ".done";
+    private static final String STALE_EXTENSION = ".stale";
+    private static final int RENEWALS_PER_LEASE_TIMEOUT = 4;
+    private final int shardIndex;
+    private final int shardCount;
+    private final Path leaseDirectory;
+    private final long leaseTimeoutMillis;
+    private final String owner;
+    private final Map<Path, String> heldLeases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService renewer;
+
+    /**
+     * Constructor for the shard converted by this process
+     * @param configuration the converter configuration
+     * @param fileManager the file manager class
+     */
+    public HtmlToPdfShard(HtmlToPdfConfiguration configuration, HtmlToPdfFileManager fileManager) {
+        this.shardIndex = configuration.getShardIndex();
+        this.shardCount = configuration.getShardCount();
+        File leaseDirectoryFile = fileManager.getLeaseDirectory();
+        this.leaseDirectory = leaseDirectoryFile != null ? leaseDirectoryFile.toPath() : null;
+        this.leaseTimeoutMillis = configuration.getShardLeaseTimeoutMillis();
+        this.owner = "shard " + shardIndex + " (" + ManagementFactory.getRuntimeMXBean().getName() + ")";
+        if(leaseDirectory != null){
+            long renewalMillis = Math.max(1, leaseTimeoutMillis / RENEWALS_PER_LEASE_TIMEOUT);
+            this.renewer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("html-to-pdf-lease-renewer").daemon().factory());
+            renewer.scheduleWithFixedDelay(this::renewLeases, renewalMillis, renewalMillis, TimeUnit.MILLISECONDS);
+        }else{
+            this.renewer = null;
+        }
+    }
+
+    /**
+     * Tests if the files are claimed with lease files
+     * @return true if lease files are used
+     */
+    public boolean isLeased() {
+        return leaseDirectory != null;
+    }
+
+    /**
+     * Tests if a source file belongs to the shard of this process
+     * @param relativePath the path of the source file relative to the source directory
+     * @return true if the source file belongs to this shard
+     */
+    public boolean owns(String relativePath) {
+        if(shardCount == 1){
+            return true;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(relativePath.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() % shardCount == shardIndex;
+    }
+
+    /**
+     * Claims a source file by creating its lease file, taking over the lease if it has expired
+     * @param relativePath the path of the source file relative to the source directory
+     * @return true if this process claimed the file, false if it is converted or claimed by another process
+     * @throws IOException if the lease file can't be created
+     */
+    public boolean claim(String relativePath) throws IOException {
+        if(!this.isLeased()){
+            return true;
+        }
+        String leaseName = HtmlToPdfFileHasher.hash(relativePath);
+        Path doneFile = leaseDirectory.resolve(leaseName + DONE_EXTENSION);
+        Path leaseFile = leaseDirectory.resolve(leaseName + LEASE_EXTENSION);
+        if(Files.exists(doneFile)){
+            return false;
+        }
+        if(!this.createLease(leaseFile, relativePath)){
+            if(!this.releaseExpiredLease(leaseFile, leaseName) || !this.createLease(leaseFile, relativePath)){
+                return false;
+            }
+        }
+        if(Files.exists(doneFile)){
+            Files.deleteIfExists(leaseFile);
+            return false;
+        }
+        heldLeases.put(leaseFile, relativePath);
+        return true;
+    }
+
+    /**
+     * Marks a claimed source file as converted, whatever the outcome of its conversion, so no other process converts
+     * it again in this batch
+     * @param relativePath the path of the source file relative to the source directory
+     * @throws IOException if the done marker can't be written
+     */
+    public void complete(String relativePath) throws IOException {
+        if(!this.isLeased()){
+            return;
+        }
+        String leaseName = HtmlToPdfFileHasher.hash(relativePath);
+        Path leaseFile = leaseDirectory.resolve(leaseName + LEASE_EXTENSION);
+        Path doneFile = leaseDirectory.resolve(leaseName + DONE_EXTENSION);
+        heldLeases.remove(leaseFile);
+        try {
+            Files.move(leaseFile, doneFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            Files.writeString(doneFile, this.getLeaseContent(relativePath), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Stops renewing the leases
+     */
+    @Override
+    public void close() {
+        if(renewer != null){
+            renewer.shutdownNow();
+        }
+    }
+
+    /**
+     * Renews the leases held by this process by touching their lease files, forgetting the leases that were lost
+     */
+    private void renewLeases() {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        for(Map.Entry<Path, String> heldLease : heldLeases.entrySet()){
+            try {
+                Files.setLastModifiedTime(heldLease.getKey(), now);
+            } catch (NoSuchFileException e) {
+                heldLeases.remove(heldLease.getKey());
+                System.out.println("Lost the lease of: " + heldLease.getValue());
+            } catch (IOException e) {
+                System.out.println("Failed to renew the lease of: " + heldLease.getValue() + " (" + e.getMessage() + ")");
+            }
+        }
+    }
+
+    /**
+     * Atomically creates a lease file
+     * @param leaseFile the lease file
+     * @param relativePath the path of the source file relative to the source directory
+     * @return true if the lease file was created, false if it already exists
+     * @throws IOException if the lease file can't be created
+     */
+    private boolean createLease(Path leaseFile, String relativePath) throws IOException {
+        try {
+            Files.writeString(leaseFile, this.getLeaseContent(relativePath), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes a lease file that was held for longer than the lease timeout. The lease is first moved to a name owned
+     * by this process, so only one of the processes racing to take over the lease succeeds.
+     * @param leaseFile the lease file
+     * @param leaseName the name of the lease, without extension
+     * @return true if the expired lease was removed by this process
+     * @throws IOException if the lease file can't be removed
+     */
+    private boolean releaseExpiredLease(Path leaseFile, String leaseName) throws IOException {
+        try {
+            if(System.currentTimeMillis() - Files.getLastModifiedTime(leaseFile).toMillis() < leaseTimeoutMillis){
+                return false;
+            }
+            Path staleFile = leaseDirectory.resolve(leaseName + STALE_EXTENSION + "_" + shardIndex + "_" + ProcessHandle.current().pid());
+            Files.move(leaseFile, staleFile, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(staleFile);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the content of a lease file, identifying the file and the process holding the lease for troubleshooting
+     * @param relativePath the path of the source file relative to the source directory
+     * @return the content of the lease file
+     */
+    private String getLeaseContent(String relativePath) {
+        return relativePath + System.lineSeparator() + owner + System.lineSeparator();
+    }
+}
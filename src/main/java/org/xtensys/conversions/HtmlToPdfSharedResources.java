@@ -0,0 +1,127 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import java.io.IOException;
+
+/**
+ * The warm state of a converter that is expensive to build and safe to share between the jobs run by the same
+ * process: the fonts and the resource cache, the output buffers, the worker pool, the memory budget and the
+ * conversion watchdog. Every job keeps its own converter properties, so the rendering settings may differ between jobs.
+ */
+public class HtmlToPdfSharedResources implements AutoCloseable {
+    private final HtmlToPdfConverterPropertiesFactory converterPropertiesFactory;
+    private final HtmlToPdfOutputBufferPool outputBufferPool;
+    private final HtmlToPdfWorkerPool workerPool;
+    private final HtmlToPdfMemoryBudget memoryBudget;
+    private final HtmlToPdfWatchdog watchdog;
+    private final long warmUpNanos;
+
+    /**
+     * Constructor for the shared resources, warming them up by rendering the built-in sample document if configured.
+     * A failed warm-up is reported and does not prevent the conversions.
+     * @param configuration the converter configuration the shared resources are created from
+     */
+    public HtmlToPdfSharedResources(HtmlToPdfConfiguration configuration) {
+        this.converterPropertiesFactory = new HtmlToPdfConverterPropertiesFactory(configuration);
+        this.outputBufferPool = new HtmlToPdfOutputBufferPool(configuration.getThreadCount());
+        this.workerPool = new HtmlToPdfWorkerPool(configuration.getExecutionMode(), configuration.getThreadCount());
+        this.memoryBudget = configuration.getMemoryBudgetPercent() > 0
+                ? new HtmlToPdfMemoryBudget(configuration.getMemoryBudgetPercent(), configuration.getMemoryRetainedPercent()) : null;
+        this.watchdog = configuration.getConversionTimeoutSeconds() > 0
+                ? new HtmlToPdfWatchdog(configuration.getConversionTimeoutSeconds() * 1000L) : null;
+        this.warmUpNanos = configuration.getWarmUpIterations() > 0 ? this.warmUp(configuration.getWarmUpIterations()) : 0;
+    }
+
+    /**
+     * Gets the converter properties factory holding the shared fonts and resource cache
+     * @return the converter properties factory
+     */
+    public HtmlToPdfConverterPropertiesFactory getConverterPropertiesFactory() {
+        return converterPropertiesFactory;
+    }
+
+    /**
+     * Gets the pool of the buffers the PDF files are rendered into
+     * @return the output buffer pool
+     */
+    public HtmlToPdfOutputBufferPool getOutputBufferPool() {
+        return outputBufferPool;
+    }
+
+    /**
+     * Gets the pool of workers the conversions are fanned out to
+     * @return the worker pool
+     */
+    public HtmlToPdfWorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    /**
+     * Gets the memory budget the conversions reserve their memory from
+     * @return the memory budget, or null if it is disabled
+     */
+    public HtmlToPdfMemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Gets the watchdog cancelling the conversions that run past the time limit
+     * @return the watchdog, or null if the conversions have no time limit
+     */
+    public HtmlToPdfWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Gets the time spent rendering the built-in sample document before the first HTML file
+     * @return the warm-up time in nanoseconds, 0 if there was no warm-up
+     */
+    public long getWarmUpNanos() {
+        return warmUpNanos;
+    }
+
+    /**
+     * Waits for the conversions in flight, then shuts the worker pool and the watchdog down
+     */
+    @Override
+    public void close() {
+        workerPool.close();
+        if(watchdog != null){
+            watchdog.close();
+        }
+    }
+
+    /**
+     * Renders the built-in sample document with the shared fonts, resource cache and output buffers
+     * @param iterations the number of times the sample document is rendered
+     * @return the warm-up time in nanoseconds
+     */
+    private long warmUp(int iterations) {
+        HtmlToPdfStreamConverter streamConverter = new HtmlToPdfStreamConverter(converterPropertiesFactory, outputBufferPool);
+        try {
+            long nanos = HtmlToPdfWarmUp.run(streamConverter, iterations);
+            System.out.println("Warmed up in " + nanos / 1_000_000 + " ms");
+            return nanos;
+        } catch (IOException | HtmlToPdfConversionException e) {
+            System.out.println("Failed to warm up, converting without warm-up: " + e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams the HTML documents of a zip, tar or gzipped tar archive to a listener, without extracting the archive to
+ * disk. The archive is read twice: the first read keeps the entries that are not converted (stylesheets, images,
+ * fonts) in memory, so the relative references of the documents are resolved against the other entries of the
+ * archive, and the second read hands the documents over one at a time as they are decompressed. Entries whose path
+ * leaves the archive are reported and skipped. The entries kept in memory are limited to a total size, beyond which
+ * the archive is rejected and has to be extracted.
+ */
+public class HtmlToPdfSourceArchive {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    private final File archiveFile;
+    private final Format format;
+    private final File pdfRoot;
+    private final boolean createTargetDirectories;
+    private final int maxDepth;
+    private final long maxAssetBytes;
+    private final HtmlToPdfFileFilter fileFilter;
+    private final Set<String> targetDirectories = new HashSet<>();
+    private Map<String, byte[]> assets;
+
+    /**
+     * The formats of the source archives
+     */
+    private enum Format {
+        ZIP,
+        TAR,
+        TAR_GZIP
+    }
+
+    /**
+     * Constructor for the source archive
+     * @param configuration the converter configuration
+     * @param fileManager the file manager class, whose source is an archive
+     * @param fileFilter the filter deciding which entries are converted
+     */
+    public HtmlToPdfSourceArchive(HtmlToPdfConfiguration configuration, HtmlToPdfFileManager fileManager, HtmlToPdfFileFilter fileFilter) {
+        this.archiveFile = fileManager.getSourceDirectory();
+        this.format = getFormat(archiveFile.getName());
+        this.pdfRoot = fileManager.getPdfArchiveFile() != null ? fileManager.getPdfArchiveFile() : fileManager.getPdfDirectory();
+        this.createTargetDirectories = fileManager.getPdfArchiveFile() == null;
+        this.maxDepth = configuration.getMaxDepth();
+        this.maxAssetBytes = configuration.getSourceArchiveAssetsMb() * BYTES_PER_MEGABYTE;
+        this.fileFilter = fileFilter;
+    }
+
+    /**
+     * Tests whether a source path names an archive rather than a directory, from its extension
+     * @param path the source path, or null if none is configured
+     * @return true if the path ends with .zip, .tar, .tar.gz or .tgz
+     */
+    public static boolean isArchive(String path) {
+        return path != null && getFormat(path) != null;
+    }
+
+    /**
+     * Gets the base URI of the documents located in a directory of an archive, under which the other entries of the
+     * archive are found
+     * @param relativePath the path of the document in the archive
+     * @return the base URI of the document
+     */
+    public static String getBaseUri(String relativePath) {
+        StringBuilder baseUri = new StringBuilder(HtmlToPdfAssetResourceRetriever.ASSET_BASE_URI);
+        String[] segments = relativePath.split("/");
+        for(int i = 0; i < segments.length - 1; i++){
+            baseUri.append(URLEncoder.encode(segments[i], StandardCharsets.UTF_8).replace("+", "%20")).append('/');
+        }
+        return baseUri.toString();
+    }
+
+    /**
+     * Gets the entries of the archive that are not converted, read during the first walk
+     * @return the bytes of the entries by path in the archive
+     */
+    public Map<String, byte[]> getAssets() {
+        return assets;
+    }
+
+    /**
+     * Walks the archive, handing every document found to the listener. The assets are read first, on the first walk.
+     * @param listener the listener the documents are handed to
+     * @throws IOException if the archive can't be read or the listener fails to take a document
+     * @throws HtmlToPdfLoggerException if the listener can't write to the log file
+     * @throws InterruptedException if interrupted while handing a document over
+     */
+    public void walk(HtmlToPdfFileWalker.Listener listener) throws IOException, HtmlToPdfLoggerException, InterruptedException {
+        if(assets == null){
+            assets = this.readAssets();
+        }
+        try (ArchiveInputStream<?> inputStream = this.open()) {
+            ArchiveEntry entry;
+            while ((entry = inputStream.getNextEntry()) != null && !listener.isStopped()){
+                String relativePath = this.getRelativePath(inputStream, entry, true);
+                if(relativePath == null){
+                    continue;
+                }
+                byte[] asset = assets.get(relativePath);
+                byte[] content = asset != null ? asset : inputStream.readAllBytes();
+                if(fileFilter.accepts(relativePath, content)){
+                    listener.fileFound(this.createConversionTask(relativePath, content));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the entries of the archive that are not converted
+     * @return the bytes of the entries by path in the archive
+     * @throws IOException if the archive can't be read, or its entries that are not converted are larger than the
+     *                     configured maximum
+     */
+    private Map<String, byte[]> readAssets() throws IOException {
+        Map<String, byte[]> archiveAssets = new HashMap<>();
+        long assetBytes = 0;
+        try (ArchiveInputStream<?> inputStream = this.open()) {
+            ArchiveEntry entry;
+            while ((entry = inputStream.getNextEntry()) != null){
+                String relativePath = this.getRelativePath(inputStream, entry, false);
+                if(relativePath == null){
+                    continue;
+                }
+                byte[] content = inputStream.readAllBytes();
+                if(!fileFilter.matches(relativePath, content)){
+                    assetBytes += content.length;
+                    if(assetBytes > maxAssetBytes){
+                        String message = "The entries of the source archive that are not converted are larger than "
+                                + maxAssetBytes / BYTES_PER_MEGABYTE + " MB: extract the archive or raise sourceArchiveAssetsMb";
+                        System.out.println(message);
+                        throw new IOException(message);
+                    }
+                    archiveAssets.put(relativePath, content);
+                }
+            }
+        }
+        return archiveAssets;
+    }
+
+    /**
+     * Opens the archive for a sequential read
+     * @return the stream of the archive entries
+     * @throws IOException if the archive can't be opened
+     */
+    private ArchiveInputStream<?> open() throws IOException {
+        InputStream inputStream = new BufferedInputStream(Files.newInputStream(archiveFile.toPath()), BUFFER_SIZE);
+        try {
+            return switch (format) {
+                case ZIP -> new ZipArchiveInputStream(inputStream, StandardCharsets.UTF_8.name(), true, true);
+                case TAR -> new TarArchiveInputStream(inputStream);
+                case TAR_GZIP -> new TarArchiveInputStream(new GzipCompressorInputStream(inputStream, true));
+            };
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the path of an entry relative to the root of the archive, if it is a regular file that can be read
+     * @param inputStream the stream of the archive entries
+     * @param entry the entry
+     * @param report true to report the entries that are skipped
+     * @return the relative path of the entry, using forward slashes, or null if the entry is skipped
+     */
+    private String getRelativePath(ArchiveInputStream<?> inputStream, ArchiveEntry entry, boolean report) {
+        if(entry.isDirectory() || (entry instanceof TarArchiveEntry tarEntry && !tarEntry.isFile())){
+            return null;
+        }
+        String relativePath = entry.getName().replace('\\', '/');
+        while (relativePath.startsWith("./") || relativePath.startsWith("/")){
+            relativePath = relativePath.substring(relativePath.indexOf('/') + 1);
+        }
+        String[] segments = relativePath.split("/");
+        for(String segment : segments){
+            if(segment.isEmpty() || segment.equals("..")){
+                if(report){
+                    System.out.println("Skipping an archive entry located outside of the archive: " + entry.getName());
+                }
+                return null;
+            }
+        }
+        if(!inputStream.canReadEntryData(entry)){
+            if(report){
+                System.out.println("Skipping an archive entry that can't be read: " + entry.getName());
+            }
+            return null;
+        }
+        return segments.length <= maxDepth ? relativePath : null;
+    }
+
+    /**
+     * Creates the conversion of a document of the archive, making sure the directory of the PDF file exists before any
+     * worker starts writing to it
+     * @param relativePath the path of the document in the archive
+     * @param content the content of the document
+     * @return the conversion task
+     */
+    private HtmlToPdfConversionTask createConversionTask(String relativePath, byte[] content) {
+        int separator = relativePath.lastIndexOf('/');
+        String directory = relativePath.substring(0, separator + 1);
+        File pdfFile = new File(pdfRoot, directory + HtmlToPdfFileManager.getPdfFilename(relativePath.substring(separator + 1)));
+        if(createTargetDirectories && targetDirectories.add(directory)){
+            pdfFile.getParentFile().mkdirs();
+        }
+        return new HtmlToPdfConversionTask(new File(archiveFile, relativePath), pdfFile, relativePath, content);
+    }
+
+    /**
+     * Gets the format of an archive from its name
+     * @param path the path of the archive
+     * @return the format of the archive, or null if the path does not name an archive
+     */
+    private static Format getFormat(String path) {
+        String name = path.toLowerCase(Locale.ROOT);
+        if(name.endsWith(".zip")){
+            return Format.ZIP;
+        }
+        if(name.endsWith(".tar")){
+            return Format.TAR;
+        }
+        if(name.endsWith(".tar.gz") || name.endsWith(".tgz")){
+            return Format.TAR_GZIP;
+        }
+        return null;
+    }
+}
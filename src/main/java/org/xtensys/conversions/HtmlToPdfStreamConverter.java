@@ -0,0 +1,316 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.itextpdf.commons.actions.contexts.IMetaInfo;
+import com.itextpdf.html2pdf.ConverterProperties;
+import com.itextpdf.html2pdf.HtmlConverter;
+import com.itextpdf.html2pdf.attach.Attacher;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.properties.Property;
+import com.itextpdf.layout.renderer.MetaInfoContainer;
+import com.itextpdf.styledxmlparser.node.IDocumentNode;
+import com.itextpdf.styledxmlparser.node.impl.jsoup.JsoupHtmlParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts HTML documents held in memory to PDF, without reading or writing any file.
+ * <p>
+ * This is the entry point for embedding the converter in another application. A stream converter is thread safe and
+ * meant to be created once and reused: the fonts, the resource cache and the output buffers are shared by every
+ * conversion. Each PDF is rendered to a pooled buffer and only copied to the output stream once it is complete, so a
+ * failed conversion writes nothing. The unbuffered conversions write each part of the PDF to the output stream as soon
+ * as it is ready instead, so with immediate flush a large PDF is never held in memory, but a failed conversion leaves
+ * an incomplete PDF behind: they are meant for a partial file that is discarded on failure. The streams passed in are
+ * never closed. Interrupting the thread of a conversion
+ * cancels it: the conversion fails at its next operation on the PDF document.
+ */
+public class HtmlToPdfStreamConverter {
+    /**
+     * Identifies the conversions in the events iText raises while laying out a document, as {@link HtmlConverter} does
+     * with its own meta information
+     */
+    static final IMetaInfo META_INFO = new IMetaInfo() {
+    };
+    private final HtmlToPdfConverterPropertiesFactory converterPropertiesFactory;
+    private final HtmlToPdfOutputBufferPool bufferPool;
+
+    /**
+     * Constructor for a stream converter using the rendering settings of a configuration (fonts, media type, base URI
+     * and resource cache). The source and target directories of the configuration are not used.
+     * @param configuration the converter configuration
+     */
+    public HtmlToPdfStreamConverter(HtmlToPdfConfiguration configuration) {
+        this(new HtmlToPdfConverterPropertiesFactory(configuration),
+                new HtmlToPdfOutputBufferPool(configuration.getThreadCount()));
+    }
+
+    /**
+     * Constructor for a stream converter sharing the state of another converter
+     * @param converterPropertiesFactory the factory of the converter properties
+     * @param bufferPool the pool of the buffers the PDF documents are rendered to
+     */
+    public HtmlToPdfStreamConverter(HtmlToPdfConverterPropertiesFactory converterPropertiesFactory,
+                                    HtmlToPdfOutputBufferPool bufferPool) {
+        this.converterPropertiesFactory = converterPropertiesFactory;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Converts an HTML document read from a stream to PDF. The character set is detected from the document.
+     * @param html the stream the HTML document is read from
+     * @param baseUri the URI relative resources are resolved against, or null to use the configured base URI
+     * @param pdf the stream the PDF document is written to
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     * @throws IOException if the PDF document can't be written to the output stream
+     */
+    public int convert(InputStream html, String baseUri, OutputStream pdf) throws HtmlToPdfConversionException, IOException {
+        return this.render((parser, charset) -> parser.parse(html, charset), converterPropertiesFactory.create(baseUri), pdf);
+    }
+
+    /**
+     * Converts an HTML document read from a stream to PDF, serving the resources it references from the given assets.
+     * The character set is detected from the document.
+     * @param html the stream the HTML document is read from
+     * @param baseUri the URI relative resources are resolved against, or null if relative resources are only looked
+     *                up among the assets
+     * @param assets the bytes of the stylesheets, images and fonts by path relative to the base URI
+     * @param pdf the stream the PDF document is written to
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     * @throws IOException if the PDF document can't be written to the output stream
+     */
+    public int convert(InputStream html, String baseUri, Map<String, byte[]> assets, OutputStream pdf)
+            throws HtmlToPdfConversionException, IOException {
+        String documentBaseUri = baseUri != null ? baseUri : HtmlToPdfAssetResourceRetriever.ASSET_BASE_URI;
+        return this.convert(html, documentBaseUri, documentBaseUri, assets, pdf);
+    }
+
+    /**
+     * Converts an HTML document read from a stream to PDF, serving the resources it references from assets whose paths
+     * are relative to another base URI, such as the root of the archive holding the document and its assets. The
+     * character set is detected from the document.
+     * @param html the stream the HTML document is read from
+     * @param baseUri the URI relative resources are resolved against
+     * @param assetBaseUri the URI the paths of the assets are relative to
+     * @param assets the bytes of the stylesheets, images and fonts by path relative to the asset base URI
+     * @param pdf the stream the PDF document is written to
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     * @throws IOException if the PDF document can't be written to the output stream
+     */
+    public int convert(InputStream html, String baseUri, String assetBaseUri, Map<String, byte[]> assets, OutputStream pdf)
+            throws HtmlToPdfConversionException, IOException {
+        return this.render((parser, charset) -> parser.parse(html, charset),
+                converterPropertiesFactory.create(baseUri).setResourceRetriever(new HtmlToPdfAssetResourceRetriever(
+                        assets, assetBaseUri, converterPropertiesFactory.getResourceRetriever())), pdf);
+    }
+
+    /**
+     * Converts an HTML document from an untrusted source, such as a request to the server, to PDF. Only its assets and
+     * the resources whose URI starts with one of the allowed prefixes are retrieved; any other local file or remote
+     * resource it references is left out. The character set is detected from the document.
+     * @param html the stream the HTML document is read from
+     * @param baseUri the URI relative resources are resolved against, or null if relative resources are only looked
+     *                up among the assets
+     * @param assets the bytes of the stylesheets, images and fonts by path relative to the base URI
+     * @param allowedResourceUris the URI prefixes of the resources that may be retrieved besides the assets
+     * @param pdf the stream the PDF document is written to
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     * @throws IOException if the PDF document can't be written to the output stream
+     */
+    public int convertUntrusted(InputStream html, String baseUri, Map<String, byte[]> assets, List<String> allowedResourceUris,
+                                OutputStream pdf) throws HtmlToPdfConversionException, IOException {
+        String documentBaseUri = baseUri != null ? baseUri : HtmlToPdfAssetResourceRetriever.ASSET_BASE_URI;
+        return this.render((parser, charset) -> parser.parse(html, charset),
+                converterPropertiesFactory.create(documentBaseUri).setResourceRetriever(new HtmlToPdfAssetResourceRetriever(
+                        assets, documentBaseUri, converterPropertiesFactory.getResourceRetriever(), allowedResourceUris)), pdf);
+    }
+
+    /**
+     * Converts an HTML document read from a stream to PDF without buffering it, writing each part of the PDF document
+     * to the output stream as soon as it is ready. A failed conversion leaves an incomplete PDF document in the output
+     * stream. The character set is detected from the document.
+     * @param html the stream the HTML document is read from
+     * @param baseUri the URI relative resources are resolved against, or null to use the configured base URI
+     * @param pdf the stream the PDF document is written to, to be discarded if the conversion fails
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     */
+    public int convertUnbuffered(InputStream html, String baseUri, OutputStream pdf) throws HtmlToPdfConversionException {
+        return this.renderTo((parser, charset) -> parser.parse(html, charset), converterPropertiesFactory.create(baseUri), pdf);
+    }
+
+    /**
+     * Converts an HTML document read from a stream to PDF without buffering it, serving the resources it references
+     * from assets whose paths are relative to another base URI. Each part of the PDF document is written to the output
+     * stream as soon as it is ready, and a failed conversion leaves an incomplete PDF document in the output stream.
+     * The character set is detected from the document.
+     * @param html the stream the HTML document is read from
+     * @param baseUri the URI relative resources are resolved against
+     * @param assetBaseUri the URI the paths of the assets are relative to
+     * @param assets the bytes of the stylesheets, images and fonts by path relative to the asset base URI
+     * @param pdf the stream the PDF document is written to, to be discarded if the conversion fails
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     */
+    public int convertUnbuffered(InputStream html, String baseUri, String assetBaseUri, Map<String, byte[]> assets, OutputStream pdf)
+            throws HtmlToPdfConversionException {
+        return this.renderTo((parser, charset) -> parser.parse(html, charset),
+                converterPropertiesFactory.create(baseUri).setResourceRetriever(new HtmlToPdfAssetResourceRetriever(
+                        assets, assetBaseUri, converterPropertiesFactory.getResourceRetriever())), pdf);
+    }
+
+    /**
+     * Converts an HTML document held in a byte array to PDF. The character set is detected from the document.
+     * @param html the bytes of the HTML document
+     * @param baseUri the URI relative resources are resolved against, or null to use the configured base URI
+     * @param pdf the stream the PDF document is written to
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     * @throws IOException if the PDF document can't be written to the output stream
+     */
+    public int convert(byte[] html, String baseUri, OutputStream pdf) throws HtmlToPdfConversionException, IOException {
+        return this.convert(new ByteArrayInputStream(html), baseUri, pdf);
+    }
+
+    /**
+     * Converts an HTML document held in a string to PDF
+     * @param html the HTML document
+     * @param baseUri the URI relative resources are resolved against, or null to use the configured base URI
+     * @param pdf the stream the PDF document is written to
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     * @throws IOException if the PDF document can't be written to the output stream
+     */
+    public int convert(String html, String baseUri, OutputStream pdf) throws HtmlToPdfConversionException, IOException {
+        return this.render((parser, charset) -> parser.parse(html), converterPropertiesFactory.create(baseUri), pdf);
+    }
+
+    /**
+     * Converts an HTML document held in a string to a PDF document held in a byte array
+     * @param html the HTML document
+     * @param baseUri the URI relative resources are resolved against, or null to use the configured base URI
+     * @return the bytes of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     */
+    public byte[] convertToBytes(String html, String baseUri) throws HtmlToPdfConversionException {
+        HtmlToPdfOutputBufferPool.Buffer buffer = bufferPool.acquire();
+        try {
+            this.renderTo((parser, charset) -> parser.parse(html), converterPropertiesFactory.create(baseUri), buffer);
+            return buffer.toByteArray();
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Opens a PDF document the HTML documents are rendered into one after another, each as a section of its own that
+     * starts on a new page. The sections share the fonts embedded in the PDF document.
+     * @param pdf the stream the PDF document is written to, which is not closed with the document
+     * @return the merged PDF document, to be closed once every section is added
+     */
+    public HtmlToPdfMergedDocument createMergedDocument(OutputStream pdf) {
+        return new HtmlToPdfMergedDocument(converterPropertiesFactory, pdf);
+    }
+
+    /**
+     * Renders a PDF document to a pooled buffer and copies it to the output stream once it is complete
+     * @param parser parses the HTML document
+     * @param properties the converter properties of the conversion
+     * @param pdf the stream the PDF document is written to
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     * @throws IOException if the PDF document can't be written to the output stream
+     */
+    private int render(Parser parser, ConverterProperties properties, OutputStream pdf) throws HtmlToPdfConversionException, IOException {
+        HtmlToPdfOutputBufferPool.Buffer buffer = bufferPool.acquire();
+        try {
+            int pageCount = this.renderTo(parser, properties, buffer);
+            buffer.writeTo(pdf);
+            return pageCount;
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Renders a PDF document to a stream in the three steps of {@link HtmlConverter}, each recorded as a flight
+     * recorder event: parsing the HTML document, laying out its pages and closing the PDF document. The stream is not
+     * closed.
+     * @param parser parses the HTML document
+     * @param properties the converter properties of the conversion
+     * @param pdf the stream the PDF document is written to
+     * @return the number of pages of the PDF document
+     * @throws HtmlToPdfConversionException if the HTML document can't be converted
+     */
+    private int renderTo(Parser parser, ConverterProperties properties, OutputStream pdf) throws HtmlToPdfConversionException {
+        try {
+            PdfWriter writer = new PdfWriter(pdf, converterPropertiesFactory.createWriterProperties());
+            writer.setCloseStream(false);
+            HtmlToPdfDocument pdfDocument = new HtmlToPdfDocument(writer);
+            HtmlToPdfParseEvent parseEvent = new HtmlToPdfParseEvent();
+            parseEvent.begin();
+            IDocumentNode documentNode = parser.parse(new JsoupHtmlParser(), properties.getCharset());
+            converterPropertiesFactory.useStyleSheetCache(properties, documentNode);
+            properties.setEventMetaInfo(META_INFO);
+            parseEvent.commit();
+            HtmlToPdfLayoutEvent layoutEvent = new HtmlToPdfLayoutEvent();
+            layoutEvent.begin();
+            Document document = Attacher.attach(documentNode, pdfDocument, properties);
+            layoutEvent.pageCount = pdfDocument.getNumberOfPages();
+            layoutEvent.commit();
+            document.setProperty(Property.META_INFO, new MetaInfoContainer(META_INFO));
+            HtmlToPdfWriteEvent writeEvent = new HtmlToPdfWriteEvent();
+            writeEvent.begin();
+            document.close();
+            writeEvent.pageCount = pdfDocument.getPageCount();
+            writeEvent.outputBytes = writer.getCurrentPos();
+            writeEvent.commit();
+            return pdfDocument.getPageCount();
+        } catch (Exception e) {
+            throw new HtmlToPdfConversionException("Failed to convert the HTML document: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses an HTML document
+     */
+    @FunctionalInterface
+    interface Parser {
+        /**
+         * Parses the HTML document
+         * @param parser the HTML parser
+         * @param charset the character set of the HTML document, or null to detect it
+         * @return the parsed HTML document
+         * @throws IOException if the HTML document can't be read
+         */
+        IDocumentNode parse(JsoupHtmlParser parser, String charset) throws IOException;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import com.google.gson.JsonObject;
+import com.itextpdf.styledxmlparser.css.CssRuleSet;
+import com.itextpdf.styledxmlparser.css.CssStatement;
+import com.itextpdf.styledxmlparser.css.CssStyleSheet;
+import com.itextpdf.styledxmlparser.css.parse.CssStyleSheetParser;
+import com.itextpdf.styledxmlparser.css.selector.AbstractCssSelector;
+import com.itextpdf.styledxmlparser.css.selector.item.CssClassSelectorItem;
+import com.itextpdf.styledxmlparser.css.selector.item.CssIdSelectorItem;
+import com.itextpdf.styledxmlparser.css.selector.item.CssSeparatorSelectorItem;
+import com.itextpdf.styledxmlparser.css.selector.item.CssTagSelectorItem;
+import com.itextpdf.styledxmlparser.css.selector.item.ICssSelectorItem;
+import com.itextpdf.styledxmlparser.resolver.resource.IResourceRetriever;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stylesheet cache shared by all conversions, keeping the linked stylesheets in a size bounded least recently used
+ * cache keyed by their absolute URL and version. The version of a local stylesheet is its last modified time and size,
+ * so a cached local stylesheet is served without being read, hashed or parsed again. The version of any other
+ * stylesheet is the hash of its content, which has to be retrieved for each document.
+ * <p>
+ * iText parses the stylesheets linked by each document again and matches every one of their rule sets against every
+ * element, with no way to hand it a parsed stylesheet. With pruning enabled, each stylesheet is parsed once and each
+ * document is served a copy of it reduced to the rule sets that can match its elements, in their original order, so
+ * iText parses and matches a few rule sets instead of the whole stylesheet. A rule set is only left out when its
+ * selector is made of tags, classes, ids and combinators alone and names one the document doesn't contain: a selector
+ * with attributes, pseudo-classes or pseudo-elements can't be proven unused and is always kept. A stylesheet that
+ * doesn't come out of iText's parser the same after being written back is served as it is.
+ */
+public class HtmlToPdfStyleSheetCache {
+    private static final String UNIVERSAL_SELECTOR = "*";
+    private static final String FILE_PROTOCOL = "file";
+    private final int maximumEntries;
+    private final boolean pruning;
+    private final LinkedHashMap<String, CachedStyleSheet> styleSheets = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong keptStatements = new AtomicLong();
+    private final AtomicLong prunedStatements = new AtomicLong();
+
+    /**
+     * Constructor for the stylesheet cache
+     * @param maximumEntries the maximum number of stylesheets kept
+     * @param pruning true to reduce each stylesheet to the rule sets that can match the elements of each document
+     */
+    public HtmlToPdfStyleSheetCache(int maximumEntries, boolean pruning) {
+        this.maximumEntries = maximumEntries;
+        this.pruning = pruning;
+    }
+
+    /**
+     * Gets a linked stylesheet for a document, reduced to the rule sets that can match the elements of the document
+     * if pruning is enabled
+     * @param url the absolute URL of the stylesheet
+     * @param resourceRetriever the retriever the stylesheet is read with if it isn't cached or changed
+     * @param documentSelectors the tag names, classes (prefixed by a dot) and ids (prefixed by a hash) of the elements
+     *                          of the document
+     * @return the content of the stylesheet, or null if it can't be retrieved
+     * @throws IOException if the stylesheet can't be read or parsed
+     */
+    public byte[] get(URL url, IResourceRetriever resourceRetriever, Set<String> documentSelectors) throws IOException {
+        CachedStyleSheet cachedStyleSheet = this.get(url, resourceRetriever);
+        if(cachedStyleSheet == null || cachedStyleSheet.statements() == null){
+            return cachedStyleSheet == null ? null : cachedStyleSheet.content();
+        }
+        StringBuilder styleSheet = new StringBuilder();
+        long pruned = 0;
+        for(Statement statement : cachedStyleSheet.statements()){
+            if(statement.requiredSelectors() == null || documentSelectors.containsAll(statement.requiredSelectors())){
+                styleSheet.append(statement.text()).append('\n');
+            }else{
+                pruned++;
+            }
+        }
+        keptStatements.addAndGet(cachedStyleSheet.statements().size() - pruned);
+        prunedStatements.addAndGet(pruned);
+        return styleSheet.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of stylesheets served from the cache
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of stylesheets that had to be read
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of stylesheets evicted from the cache to make room for others
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Creates the JSON representation of the cache statistics
+     * @return the hits, misses and evictions of the cache and the number of statements kept and pruned
+     */
+    public JsonObject toJson() {
+        JsonObject cache = new JsonObject();
+        cache.addProperty("hits", hits.get());
+        cache.addProperty("misses", misses.get());
+        cache.addProperty("evictions", evictions.get());
+        cache.addProperty("pruning", pruning);
+        cache.addProperty("keptStatements", keptStatements.get());
+        cache.addProperty("prunedStatements", prunedStatements.get());
+        return cache;
+    }
+
+    /**
+     * Gets a cached stylesheet, reading it again if it isn't cached or its version changed. The version of a local
+     * stylesheet is read before its content, so a stylesheet changed while it is read is read again next time.
+     * @param url the absolute URL of the stylesheet
+     * @param resourceRetriever the retriever the stylesheet is read with
+     * @return the cached stylesheet, or null if it can't be retrieved
+     * @throws IOException if the stylesheet can't be read or parsed
+     */
+    private CachedStyleSheet get(URL url, IResourceRetriever resourceRetriever) throws IOException {
+        String key = url.toExternalForm();
+        String version = HtmlToPdfStyleSheetCache.getFileVersion(url);
+        byte[] bytes = null;
+        if(version == null){
+            bytes = resourceRetriever.getByteArrayByUrl(url);
+            if(bytes == null){
+                return null;
+            }
+            version = HtmlToPdfFileHasher.hash(bytes);
+        }
+        synchronized (this) {
+            CachedStyleSheet cachedStyleSheet = styleSheets.get(key);
+            if(cachedStyleSheet != null && cachedStyleSheet.version().equals(version)){
+                hits.incrementAndGet();
+                return cachedStyleSheet;
+            }
+        }
+        misses.incrementAndGet();
+        if(bytes == null){
+            bytes = resourceRetriever.getByteArrayByUrl(url);
+            if(bytes == null){
+                return null;
+            }
+        }
+        CachedStyleSheet cachedStyleSheet = pruning
+                ? HtmlToPdfStyleSheetCache.parse(key, version, bytes) : new CachedStyleSheet(version, bytes, null, null);
+        this.put(key, cachedStyleSheet);
+        return cachedStyleSheet;
+    }
+
+    /**
+     * Adds a stylesheet to the cache, replacing the previous version of its URL and evicting the least recently used
+     * stylesheets until the cache fits its size
+     * @param key the absolute URL of the stylesheet
+     * @param cachedStyleSheet the cached stylesheet
+     */
+    private synchronized void put(String key, CachedStyleSheet cachedStyleSheet) {
+        styleSheets.put(key, cachedStyleSheet);
+        Iterator<CachedStyleSheet> iterator = styleSheets.values().iterator();
+        while(styleSheets.size() > maximumEntries && iterator.hasNext()){
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the version of a local stylesheet
+     * @param url the absolute URL of the stylesheet
+     * @return the last modified time and size of the stylesheet, or null if it isn't a local file
+     */
+    private static String getFileVersion(URL url) {
+        if(!FILE_PROTOCOL.equalsIgnoreCase(url.getProtocol())){
+            return null;
+        }
+        try {
+            File file = new File(url.toURI());
+            return file.isFile() ? file.lastModified() + ":" + file.length() : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a stylesheet the way iText parses linked stylesheets, and writes each of its statements back along with
+     * the selectors they require
+     * @param baseUrl the absolute URL of the stylesheet, which relative URLs are resolved against
+     * @param version the version of the stylesheet
+     * @param bytes the content of the stylesheet
+     * @return the parsed stylesheet, without statements if it doesn't come out of the parser the same once written back
+     * @throws IOException if the stylesheet can't be parsed
+     */
+    private static CachedStyleSheet parse(String baseUrl, String version, byte[] bytes) throws IOException {
+        CssStyleSheet styleSheet = CssStyleSheetParser.parse(new ByteArrayInputStream(bytes), baseUrl);
+        String text = styleSheet.toString();
+        if(!text.equals(CssStyleSheetParser.parse(text, baseUrl).toString())){
+            return new CachedStyleSheet(version, bytes, styleSheet, null);
+        }
+        List<Statement> statements = new ArrayList<>();
+        for(CssStatement statement : styleSheet.getStatements()){
+            statements.add(new Statement(statement.toString(), HtmlToPdfStyleSheetCache.getRequiredSelectors(statement)));
+        }
+        return new CachedStyleSheet(version, bytes, styleSheet, statements);
+    }
+
+    /**
+     * Gets the tag names, classes and ids that must all be found in a document for a statement to match any of its
+     * elements. Only a rule set whose selector is made of tags, classes, ids and combinators alone can be proven
+     * unused: any other rule set or at-rule must always be kept.
+     * @param statement the statement of the stylesheet
+     * @return the tag names, classes (prefixed by a dot) and ids (prefixed by a hash) the statement requires, or null
+     * if the statement must always be kept
+     */
+    private static List<String> getRequiredSelectors(CssStatement statement) {
+        if(!(statement instanceof CssRuleSet ruleSet) || !(ruleSet.getSelector() instanceof AbstractCssSelector selector)){
+            return null;
+        }
+        List<String> requiredSelectors = new ArrayList<>();
+        for(ICssSelectorItem item : selector.getSelectorItems()){
+            if(item instanceof CssClassSelectorItem || item instanceof CssIdSelectorItem){
+                requiredSelectors.add(item.toString());
+            }else if(item instanceof CssTagSelectorItem){
+                if(!UNIVERSAL_SELECTOR.equals(item.toString())){
+                    requiredSelectors.add(item.toString());
+                }
+            }else if(!(item instanceof CssSeparatorSelectorItem)){
+                return null;
+            }
+        }
+        return requiredSelectors;
+    }
+
+    /**
+     * A cached stylesheet along with the version it was read at
+     * @param version the version of the stylesheet
+     * @param content the content of the stylesheet
+     * @param styleSheet the parsed stylesheet, or null if pruning is disabled
+     * @param statements the statements of the stylesheet, or null if it isn't reduced
+     */
+    private record CachedStyleSheet(String version, byte[] content, CssStyleSheet styleSheet, List<Statement> statements) {
+    }
+
+    /**
+     * A statement of a parsed stylesheet
+     * @param text the statement written back as CSS
+     * @param requiredSelectors the tag names, classes and ids the statement requires, or null if it is always kept
+     */
+    private record Statement(String text, List<String> requiredSelectors) {
+    }
+}
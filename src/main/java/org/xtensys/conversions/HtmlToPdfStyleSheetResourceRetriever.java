@@ -0,0 +1,130 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import com.itextpdf.styledxmlparser.css.util.CssUtils;
+import com.itextpdf.styledxmlparser.node.IElementNode;
+import com.itextpdf.styledxmlparser.node.INode;
+import com.itextpdf.styledxmlparser.resolver.resource.IResourceRetriever;
+import com.itextpdf.styledxmlparser.resolver.resource.ResourceResolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Resource retriever serving the stylesheets linked by one HTML document from the shared stylesheet cache, reduced to
+ * the rule sets that can match the elements of the document if pruning is enabled. A stylesheet is only read through
+ * the retriever of the conversion when it isn't cached or changed, and every other resource is handed to it.
+ */
+public class HtmlToPdfStyleSheetResourceRetriever implements IResourceRetriever {
+    private static final String CLASS_ATTRIBUTE = "class";
+    private static final String ID_ATTRIBUTE = "id";
+    private static final String HREF_ATTRIBUTE = "href";
+    private final HtmlToPdfStyleSheetCache styleSheetCache;
+    private final IResourceRetriever resourceRetriever;
+    private final Set<String> documentSelectors = new HashSet<>();
+    private final Set<String> styleSheetUrls = new HashSet<>();
+
+    /**
+     * Constructor for the stylesheet resource retriever, collecting the tag names, classes and ids of the elements of
+     * the document and the URLs of the stylesheets it links
+     * @param styleSheetCache the shared stylesheet cache
+     * @param documentNode the parsed HTML document
+     * @param baseUri the URI the links of the document are resolved against, or null if there is none
+     * @param resourceRetriever the retriever of the resources of the conversion
+     */
+    public HtmlToPdfStyleSheetResourceRetriever(HtmlToPdfStyleSheetCache styleSheetCache, INode documentNode,
+                                                String baseUri, IResourceRetriever resourceRetriever) {
+        this.styleSheetCache = styleSheetCache;
+        this.resourceRetriever = resourceRetriever;
+        ResourceResolver resourceResolver = new ResourceResolver(baseUri, resourceRetriever);
+        Deque<INode> nodes = new ArrayDeque<>();
+        nodes.push(documentNode);
+        while(!nodes.isEmpty()){
+            INode node = nodes.pop();
+            if(node instanceof IElementNode element){
+                this.collect(element, resourceResolver);
+            }
+            for(INode child : node.childNodes()){
+                nodes.push(child);
+            }
+        }
+    }
+
+    /**
+     * Gets the input stream of a resource, serving the stylesheets linked by the document from the stylesheet cache
+     * @param url the URL of the resource
+     * @return the input stream of the resource, or null if the resource can't be retrieved
+     * @throws IOException if the resource can't be read
+     */
+    @Override
+    public InputStream getInputStreamByUrl(URL url) throws IOException {
+        byte[] bytes = this.getByteArrayByUrl(url);
+        return bytes == null ? null : new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * Gets the bytes of a resource, serving the stylesheets linked by the document from the stylesheet cache
+     * @param url the URL of the resource
+     * @return the bytes of the resource, or null if the resource can't be retrieved
+     * @throws IOException if the resource can't be read
+     */
+    @Override
+    public byte[] getByteArrayByUrl(URL url) throws IOException {
+        if(!styleSheetUrls.contains(url.toExternalForm())){
+            return resourceRetriever.getByteArrayByUrl(url);
+        }
+        return styleSheetCache.get(url, resourceRetriever, documentSelectors);
+    }
+
+    /**
+     * Collects the tag name, classes and id of an element, and the URL of the stylesheet it links if it is a
+     * stylesheet link
+     * @param element the element of the document
+     * @param resourceResolver resolves the links of the document
+     */
+    private void collect(IElementNode element, ResourceResolver resourceResolver) {
+        documentSelectors.add(element.name().toLowerCase(Locale.ROOT));
+        String classNames = element.getAttribute(CLASS_ATTRIBUTE);
+        if(classNames != null){
+            for(String className : classNames.trim().split("\\s+")){
+                documentSelectors.add("." + className);
+            }
+        }
+        String id = element.getAttribute(ID_ATTRIBUTE);
+        if(id != null){
+            documentSelectors.add("#" + id);
+        }
+        if(CssUtils.isStyleSheetLink(element) && element.getAttribute(HREF_ATTRIBUTE) != null){
+            try {
+                styleSheetUrls.add(resourceResolver.resolveAgainstBaseUri(element.getAttribute(HREF_ATTRIBUTE)).toExternalForm());
+            } catch (MalformedURLException e) {
+                // iText can't resolve the link either, so the stylesheet is never retrieved
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a walk of the source directory or archive. The conversions run while the source is walked,
+ * so the walk lasts until the last file found is handed over.
+ */
+@Name("org.xtensys.conversions.Traversal")
+@Label("Source Traversal")
+@Category("HTML to PDF")
+@Description("Walk of the source directory or archive")
+@StackTrace(false)
+public class HtmlToPdfTraversalEvent extends Event {
+    @Label("Source")
+    String source;
+
+    @Label("Files Found")
+    @Description("Number of files handed to the conversions")
+    long filesFound;
+
+    @Label("Filtered Out")
+    @Description("Number of files and directories left out by the file filter")
+    long filteredOut;
+}
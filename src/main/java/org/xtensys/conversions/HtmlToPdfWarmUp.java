@@ -0,0 +1,67 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Renders a built-in sample document before the first HTML file, so the classes of the parser, the CSS resolver and
+ * the layout are loaded, the fonts are parsed and the hot code is compiled while the conversions have not started
+ * yet. The sample document uses the common features of HTML and CSS: text styles, lists, a floating box, flex columns,
+ * an image, an SVG drawing, a table spanning pages and page margin boxes.
+ */
+public class HtmlToPdfWarmUp {
+    private static final String SAMPLE_RESOURCE = "/warm_up.html";
+
+    private HtmlToPdfWarmUp() {
+    }
+
+    /**
+     * Renders the sample document a number of times, discarding the PDF documents
+     * @param streamConverter the stream converter to warm up
+     * @param iterations the number of times the sample document is rendered
+     * @return the time spent warming up in nanoseconds
+     * @throws IOException if the sample document can't be read
+     * @throws HtmlToPdfConversionException if the sample document can't be converted
+     */
+    public static long run(HtmlToPdfStreamConverter streamConverter, int iterations) throws IOException, HtmlToPdfConversionException {
+        long startNanos = System.nanoTime();
+        String sample = HtmlToPdfWarmUp.readSample();
+        for(int i = 0; i < iterations; i++){
+            streamConverter.convertToBytes(sample, null);
+        }
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Reads the sample document from the resources of the application
+     * @return the sample HTML document
+     * @throws IOException if the sample document can't be read
+     */
+    private static String readSample() throws IOException {
+        try (InputStream inputStream = HtmlToPdfWarmUp.class.getResourceAsStream(SAMPLE_RESOURCE)) {
+            if(inputStream == null){
+                throw new IOException("The warm-up sample document is missing: " + SAMPLE_RESOURCE);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces the time limit of the conversions. A conversion that runs past its time limit has its thread interrupted,
+ * which cancels the rendering of its PDF document. The interrupt is only noticed when the conversion next checks it,
+ * at its next HTML element or PDF operation, so a long layout that reaches neither keeps running past the time limit,
+ * holding its worker, until it does.
+ */
+public class HtmlToPdfWatchdog implements AutoCloseable {
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("html-to-pdf-watchdog").daemon().factory());
+    private final long timeoutMillis;
+
+    /**
+     * Constructor for the watchdog
+     * @param timeoutMillis the time limit of each conversion in milliseconds
+     */
+    public HtmlToPdfWatchdog(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Starts watching the conversion running on the current thread
+     * @return the watch, to be closed on the same thread once the conversion is finished
+     */
+    public Watch watch() {
+        Watch watch = new Watch(Thread.currentThread());
+        watch.expiry = scheduler.schedule(watch::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+        return watch;
+    }
+
+    /**
+     * Gets the time limit of each conversion
+     * @return the time limit in milliseconds
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Stops the watchdog thread
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * The time limit of a single conversion
+     */
+    public static class Watch implements AutoCloseable {
+        private final Thread thread;
+        private ScheduledFuture<?> expiry;
+        private boolean finished;
+        private boolean timedOut;
+
+        /**
+         * Constructor for the watch
+         * @param thread the thread the conversion runs on
+         */
+        private Watch(Thread thread) {
+            this.thread = thread;
+        }
+
+        /**
+         * Tests if the conversion ran past its time limit
+         * @return true if the conversion was cancelled by the watchdog
+         */
+        public synchronized boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * Interrupts the thread of the conversion, unless the conversion is already finished
+         */
+        private synchronized void expire() {
+            if(!finished){
+                timedOut = true;
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Stops watching the conversion, clearing the interrupt of a timed out conversion so the thread can go on with
+         * the next conversion
+         */
+        @Override
+        public synchronized void close() {
+            finished = true;
+            expiry.cancel(false);
+            if(timedOut){
+                Thread.interrupted();
+            }
+        }
+    }
+}
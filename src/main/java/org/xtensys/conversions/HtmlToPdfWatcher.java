@@ -0,0 +1,277 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long running mode that watches the source directory and converts the HTML files as they are created or modified.
+ * <p>
+ * A file is only converted once it has not changed for the configured debounce delay, so files that are still being
+ * written are not picked up. The converter, with its warm fonts and open logger, is kept for the lifetime of the
+ * watcher and closed when the JVM shuts down. The directories are watched down to the maximum depth, following
+ * symbolic links only if configured, and the directories matching an exclude pattern are not watched.
+ * <p>
+ * Stopping the watcher makes the converter stop taking files, even during the initial conversion of the whole source
+ * directory, and waits a bounded time for the conversions in flight.
+ */
+public class HtmlToPdfWatcher {
+    private static final int STOP_TIMEOUT_SECONDS = 30;
+    private final HtmlToPdfConverter converter;
+    private final Path sourceDirectory;
+    private final Path targetDirectory;
+    private final long debounceMillis;
+    private final int maxDepth;
+    private final boolean followSymlinks;
+    private final HtmlToPdfFileFilter fileFilter;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, PendingFile> pendingFiles = new HashMap<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private WatchService watchService;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for the watcher
+     * @param configuration the converter configuration
+     * @param fileManager the file manager class
+     * @param converter the converter the files are handed to
+     */
+    public HtmlToPdfWatcher(HtmlToPdfConfiguration configuration, HtmlToPdfFileManager fileManager, HtmlToPdfConverter converter) {
+        this.converter = converter;
+        this.sourceDirectory = fileManager.getSourceDirectory().toPath().toAbsolutePath();
+        this.targetDirectory = fileManager.getTargetDirectory().toPath().toAbsolutePath();
+        this.debounceMillis = configuration.getWatchDebounceMillis();
+        this.maxDepth = configuration.getMaxDepth();
+        this.followSymlinks = configuration.isFollowSymlinks();
+        this.fileFilter = new HtmlToPdfFileFilter(configuration);
+    }
+
+    /**
+     * Converts the whole source directory, then watches it until the JVM shuts down
+     * @throws IOException if the source directory can't be watched or there is an error writing to File
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    public void run() throws IOException, HtmlToPdfLoggerException {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "html-to-pdf-watcher-shutdown"));
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            this.watchService = service;
+            this.registerTree(sourceDirectory);
+            converter.convertSourceDirectory();
+            if(running){
+                System.out.println("Watching for HTML files in: " + sourceDirectory);
+            }
+            while (running) {
+                WatchKey watchKey = watchService.poll(Math.max(debounceMillis / 2, 1), TimeUnit.MILLISECONDS);
+                if(watchKey != null){
+                    this.processEvents(watchKey);
+                }
+                this.convertSettledFiles();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // the watcher is shutting down
+        } finally {
+            try {
+                converter.close();
+            } finally {
+                stopped.countDown();
+            }
+        }
+    }
+
+    /**
+     * Stops watching and taking files, and waits a bounded time for the converter to finish the conversions in flight
+     * and close
+     */
+    public void stop() {
+        running = false;
+        converter.stopTakingFiles();
+        try {
+            if(watchService != null){
+                watchService.close();
+            }
+            if(!stopped.await(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)){
+                System.out.println("Stopped waiting for the conversions in flight after " + STOP_TIMEOUT_SECONDS + " seconds");
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to close the watch service: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Processes the events of a watched directory, registering new subdirectories and recording changed files
+     * @param watchKey the key of the watched directory
+     * @throws IOException if a new subdirectory can't be watched
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private void processEvents(WatchKey watchKey) throws IOException, HtmlToPdfLoggerException {
+        Path directory = watchedDirectories.get(watchKey);
+        for(WatchEvent<?> event : watchKey.pollEvents()){
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                System.out.println("Too many changes to track, converting the whole source directory");
+                pendingFiles.clear();
+                converter.convertSourceDirectory();
+                continue;
+            }
+            if(directory == null){
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if(path.startsWith(targetDirectory)){
+                continue;
+            }
+            if(!followSymlinks && Files.isSymbolicLink(path)){
+                continue;
+            }
+            if(Files.isDirectory(path)){
+                if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE){
+                    this.registerTree(path);
+                }
+            }else if(event.kind() != StandardWatchEventKinds.ENTRY_DELETE){
+                this.recordChange(path);
+            }
+        }
+        if(!watchKey.reset()){
+            watchedDirectories.remove(watchKey);
+        }
+    }
+
+    /**
+     * Watches a directory and its subdirectories down to the maximum depth, leaving out the directories matching an
+     * exclude pattern. Files already present in a new subdirectory are recorded, as they may have been created before
+     * the subdirectory was registered.
+     * @param directory the directory to watch
+     * @throws IOException if the directory can't be watched
+     */
+    private void registerTree(Path directory) throws IOException {
+        Path relativePath = sourceDirectory.relativize(directory);
+        int depth = relativePath.toString().isEmpty() ? 0 : relativePath.getNameCount();
+        if(depth >= maxDepth){
+            return;
+        }
+        Set<FileVisitOption> options = followSymlinks ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+        Files.walkFileTree(directory, options, maxDepth - depth, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) throws IOException {
+                if(path.startsWith(targetDirectory) || !fileFilter.acceptsDirectory(HtmlToPdfWatcher.this.getRelativePath(path))){
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey watchKey = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(watchKey, path);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                if(attributes.isRegularFile() && !directory.equals(sourceDirectory)){
+                    HtmlToPdfWatcher.this.recordChange(path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException exception) {
+                System.out.println("Not watching a path that can't be read: " + path + " (" + exception + ")");
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Gets the path of a watched directory relative to the source directory
+     * @param path the watched directory
+     * @return the relative path, using forward slashes
+     */
+    private String getRelativePath(Path path) {
+        return sourceDirectory.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * Records that a file changed, restarting its debounce delay
+     * @param path the changed file
+     */
+    private void recordChange(Path path) {
+        pendingFiles.put(path, new PendingFile(System.currentTimeMillis(), path.toFile().length()));
+    }
+
+    /**
+     * Converts the files that have not changed for the debounce delay. A file whose size changed since its last event
+     * is still being written and gets a new delay.
+     * @throws IOException if there is an error writing to File
+     * @throws HtmlToPdfLoggerException if the logger can't write to file
+     */
+    private void convertSettledFiles() throws IOException, HtmlToPdfLoggerException {
+        long now = System.currentTimeMillis();
+        List<File> settledFiles = new ArrayList<>();
+        Iterator<Map.Entry<Path, PendingFile>> iterator = pendingFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = iterator.next();
+            File file = entry.getKey().toFile();
+            PendingFile pendingFile = entry.getValue();
+            if(now - pendingFile.lastChange() < debounceMillis){
+                continue;
+            }
+            if(!file.isFile()){
+                iterator.remove();
+            }else if(file.length() != pendingFile.size()){
+                entry.setValue(new PendingFile(now, file.length()));
+            }else{
+                settledFiles.add(file);
+                iterator.remove();
+            }
+        }
+        if(!settledFiles.isEmpty() && running){
+            settledFiles.sort(null);
+            converter.convertFiles(settledFiles);
+        }
+    }
+
+    /**
+     * A changed file waiting for its debounce delay to expire
+     * @param lastChange the time of the last change in milliseconds
+     * @param size the size of the file at the time of the last change
+     */
+    private record PendingFile(long lastChange, long size) {
+    }
+}
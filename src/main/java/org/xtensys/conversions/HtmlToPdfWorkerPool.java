@@ -0,0 +1,103 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of workers the conversions are fanned out to
+ */
+public class HtmlToPdfWorkerPool implements AutoCloseable {
+    private static final String THREAD_NAME_PREFIX = "html-to-pdf-worker-";
+    private static final int QUEUED_TASKS_PER_THREAD = 2;
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+
+    /**
+     * Constructor for the worker pool
+     * @param executionMode the mode the conversions are executed in
+     * @param threadCount the maximum number of conversions executed at the same time
+     */
+    public HtmlToPdfWorkerPool(HtmlToPdfExecutionMode executionMode, int threadCount) {
+        this.permits = new Semaphore(executionMode == HtmlToPdfExecutionMode.FIXED_POOL ? threadCount * QUEUED_TASKS_PER_THREAD : threadCount);
+        switch (executionMode) {
+            case FIXED_POOL -> this.executorService = Executors.newFixedThreadPool(threadCount,
+                    Thread.ofPlatform().name(THREAD_NAME_PREFIX, 0).factory());
+            case VIRTUAL_THREADS -> this.executorService = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name(THREAD_NAME_PREFIX, 0).factory());
+            default -> this.executorService = null;
+        }
+    }
+
+    /**
+     * Submits a task to the pool. Blocks while the maximum number of tasks are already in flight, so the caller can
+     * never run too far ahead of the workers: the thread count on virtual threads, and twice the thread count on a
+     * fixed pool so its workers always have a task queued. In sequential mode the task is run on the calling thread.
+     * @param task the task to execute
+     * @param <T> the result type of the task
+     * @return a future holding the result of the task
+     * @throws InterruptedException if interrupted while waiting for a free worker
+     */
+    public <T> Future<T> submit(Callable<T> task) throws InterruptedException {
+        if(executorService == null){
+            FutureTask<T> futureTask = new FutureTask<>(task);
+            futureTask.run();
+            return futureTask;
+        }
+        permits.acquire();
+        try {
+            return executorService.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the submitted tasks to finish and shuts the pool down
+     */
+    @Override
+    public void close() {
+        if(executorService == null){
+            return;
+        }
+        executorService.shutdown();
+        try {
+            while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting for the in flight conversions
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.xtensys.conversions;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the closing of a PDF document, which lays out the pending content and writes the remaining
+ * pages, the shared resources and the cross-reference table to the output buffer
+ */
+@Name("org.xtensys.conversions.Write")
+@Label("PDF Write")
+@Category("HTML to PDF")
+@Description("Closing of a PDF document, writing its remaining content to the output buffer")
+@StackTrace(false)
+public class HtmlToPdfWriteEvent extends Event {
+    @Label("Pages")
+    int pageCount;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputBytes;
+}
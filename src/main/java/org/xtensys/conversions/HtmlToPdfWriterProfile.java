@@ -0,0 +1,82 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.itextpdf.kernel.pdf.CompressionConstants;
+
+/**
+ * The presets of the PDF writer settings, trading the size of the PDF files against the time it takes to write them.
+ * Each setting of a profile can be overridden in the configuration.
+ */
+public enum HtmlToPdfWriterProfile {
+    /**
+     * The iText defaults: streams compressed at the default level, objects written one by one
+     */
+    DEFAULT(CompressionConstants.DEFAULT_COMPRESSION, false, false),
+    /**
+     * Streams compressed at the fastest level, for the shortest write time
+     */
+    FAST(CompressionConstants.BEST_SPEED, false, false),
+    /**
+     * Streams compressed at the best level, objects packed into compressed object streams and identical resources such
+     * as fonts and images written once, for the smallest PDF files
+     */
+    COMPACT(CompressionConstants.BEST_COMPRESSION, true, true);
+
+    private final int compressionLevel;
+    private final boolean fullCompression;
+    private final boolean smartMode;
+
+    /**
+     * Constructor for the writer profile
+     * @param compressionLevel the compression level of the streams, from 0 to 9 or -1 for the default level
+     * @param fullCompression true to pack the objects into compressed object streams
+     * @param smartMode true to write identical resources once
+     */
+    HtmlToPdfWriterProfile(int compressionLevel, boolean fullCompression, boolean smartMode) {
+        this.compressionLevel = compressionLevel;
+        this.fullCompression = fullCompression;
+        this.smartMode = smartMode;
+    }
+
+    /**
+     * Gets the compression level of the streams
+     * @return the compression level, from 0 to 9 or -1 for the default level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Tests if the objects are packed into compressed object streams
+     * @return true if full compression is used
+     */
+    public boolean isFullCompression() {
+        return fullCompression;
+    }
+
+    /**
+     * Tests if identical resources are written once
+     * @return true if smart mode is used
+     */
+    public boolean isSmartMode() {
+        return smartMode;
+    }
+}
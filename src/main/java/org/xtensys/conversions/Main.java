@@ -22,6 +22,7 @@ package org.xtensys.conversions;
 import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 
 /**
  * The Main method class
@@ -32,29 +33,83 @@ public class Main {
     private static final String FILE_INVALID = "The specified configuration file is not valid: ";
     private static final String CHOOSE_CONFIGURATION_FILE_MESSAGE = "Please select a valid configuration file";
     private static final String USER_DIRECTORY_PROPERTY = "user.dir";
+    private static final int EXIT_CONVERSION_FAILURE = 1;
+    private static final int EXIT_ERROR = 2;
+    private static final String MERGE_LOGS_OPTION = "--merge-logs";
+    private static final String RESUME_OPTION = "--resume";
+    private static final String WARM_UP_OPTION = "--warm-up";
+    private static final String RETRY_QUARANTINED_OPTION = "--retry-quarantined";
+    private static final int TRAINING_ITERATIONS = 3;
 
     /**
      * Main method for the HTML to PDF Converter. Will prompt user to choose a JSON configuration  file if one is not
-     * passed in via command line
-     * @param args the path of the JSON configuration file can be passed in via args[0]
+     * passed in via command line. Exits with status 1 if any HTML file failed to convert, or 2 if the conversion
+     * couldn't be executed
+     * @param args the path of the JSON configuration file can be passed in via args, along with the --merge-logs option
+     *             to merge the log files of the shards of a batch instead of converting, or the --resume option to
+     *             skip the files already finished by an interrupted batch, or the --retry-quarantined option to
+     *             clear the quarantine before converting, or the --warm-up option to only render the built-in sample
+     *             document, as the training run of a class data sharing archive
      */
     public static void main(String[] args) {
-        File file;
-        if(args.length > 0){
-            file = new File(args[0]);
-        }else{
+        File file = null;
+        boolean mergeLogs = false;
+        boolean resume = false;
+        boolean warmUp = false;
+        boolean retryQuarantined = false;
+        for(String arg : args){
+            if(MERGE_LOGS_OPTION.equals(arg)){
+                mergeLogs = true;
+            }else if(RESUME_OPTION.equals(arg)){
+                resume = true;
+            }else if(WARM_UP_OPTION.equals(arg)){
+                warmUp = true;
+            }else if(RETRY_QUARANTINED_OPTION.equals(arg)){
+                retryQuarantined = true;
+            }else{
+                file = new File(arg);
+            }
+        }
+        if(warmUp){
+            Main.warmUp(file);
+            return;
+        }
+        if(file == null){
             file = Main.chooseFile();
         }
         if(file == null){
             System.out.println(NO_FILE_SPECIFIED);
+            System.exit(EXIT_ERROR);
         }else if (!file.exists()){
             System.out.println(FILE_NOT_FOUND + file.getPath());
+            System.exit(EXIT_ERROR);
         }else{
             try {
                 HtmlToPdfConfiguration htmlToPdfConfiguration = HtmlToPdfConfiguration.fromJson(file);
+                htmlToPdfConfiguration.validate();
+                if(htmlToPdfConfiguration.isServer()){
+                    Main.runServer(htmlToPdfConfiguration);
+                    return;
+                }
+                if(htmlToPdfConfiguration.hasJobs()){
+                    Main.runJobs(htmlToPdfConfiguration, mergeLogs, resume, retryQuarantined);
+                    return;
+                }
                 HtmlToPdfFileManager htmlToPdfFileManager = new HtmlToPdfFileManager(htmlToPdfConfiguration);
+                if(mergeLogs){
+                    Main.mergeLogs(htmlToPdfFileManager);
+                    return;
+                }
+                if(retryQuarantined){
+                    Main.clearQuarantine(htmlToPdfFileManager);
+                }
                 if(htmlToPdfFileManager.hasValidDirectories()){
-                    HtmlToPdfConverter htmlToPdfConverter = new HtmlToPdfConverter(htmlToPdfFileManager);
+                    HtmlToPdfConverter htmlToPdfConverter = new HtmlToPdfConverter(htmlToPdfConfiguration, htmlToPdfFileManager, resume);
+                    if(htmlToPdfConfiguration.isWatch()){
+                        new HtmlToPdfWatcher(htmlToPdfConfiguration, htmlToPdfFileManager, htmlToPdfConverter).run();
+                        System.out.println("Stopped watching for HTML files. See logs for details");
+                        return;
+                    }
                     boolean success = htmlToPdfConverter.executeConversion();
                     if(success){
                         System.out.println("Successfully executed HTML to PDF conversions");
@@ -62,20 +117,130 @@ public class Main {
                         System.out.println("Failed to successfully executed HTML to PDF conversions");
                     }
                     System.out.println("See logs for details");
+                    if(!success){
+                        System.exit(EXIT_CONVERSION_FAILURE);
+                    }
                 }else{
                     throw new HtmlToPdfConfigurationException("The configuration file contains invalid directories. Aborting.");
 
                 }
             } catch (IOException e) {
                 System.out.println(FILE_INVALID + file.getPath());
+                System.exit(EXIT_ERROR);
             } catch (HtmlToPdfLoggerException e) {
-                //Do Nothing
+                System.exit(EXIT_ERROR);
             } catch (HtmlToPdfConfigurationException e) {
-                //Do nothing
+                System.out.println(e.getMessage());
+                System.exit(EXIT_ERROR);
             }
         }
     }
 
+    /**
+     * Runs the jobs of the configuration one after another, sharing the warm state of the converter, or merges the
+     * shard log files of every job
+     * @param htmlToPdfConfiguration the converter configuration holding the jobs
+     * @param mergeLogs true to merge the shard log files of every job instead of converting
+     * @param resume true to skip the files already finished by an interrupted batch
+     * @param retryQuarantined true to clear the quarantine of every job before converting
+     * @throws IOException if the jobs summary can't be written
+     * @throws HtmlToPdfConfigurationException if the jobs are not valid
+     */
+    private static void runJobs(HtmlToPdfConfiguration htmlToPdfConfiguration, boolean mergeLogs, boolean resume,
+                                boolean retryQuarantined) throws IOException, HtmlToPdfConfigurationException {
+        if(mergeLogs){
+            for(HtmlToPdfConfiguration job : htmlToPdfConfiguration.getJobs()){
+                Main.mergeLogs(new HtmlToPdfFileManager(job));
+            }
+            return;
+        }
+        if(retryQuarantined){
+            for(HtmlToPdfConfiguration job : htmlToPdfConfiguration.getJobs()){
+                Main.clearQuarantine(new HtmlToPdfFileManager(job));
+            }
+        }
+        boolean success = new HtmlToPdfJobRunner(htmlToPdfConfiguration, resume).run();
+        if(success){
+            System.out.println("Successfully executed the HTML to PDF conversions of every job");
+        }else{
+            System.out.println("Failed to successfully execute the HTML to PDF conversions of every job");
+        }
+        System.out.println("See logs for details");
+        if(!success){
+            System.exit(EXIT_CONVERSION_FAILURE);
+        }
+    }
+
+    /**
+     * Renders the built-in sample document with the rendering settings of a configuration file, or the default
+     * settings if there is none, without converting any HTML file
+     * @param file the JSON configuration file, or null to use the default settings
+     */
+    private static void warmUp(File file) {
+        try {
+            HtmlToPdfConfiguration htmlToPdfConfiguration = file != null
+                    ? HtmlToPdfConfiguration.fromJson(file) : new HtmlToPdfConfiguration(null, null);
+            htmlToPdfConfiguration.validate();
+            long nanos = HtmlToPdfWarmUp.run(new HtmlToPdfStreamConverter(htmlToPdfConfiguration),
+                    Math.max(TRAINING_ITERATIONS, htmlToPdfConfiguration.getWarmUpIterations()));
+            System.out.println("Warmed up in " + nanos / 1_000_000 + " ms");
+        } catch (IOException | HtmlToPdfConversionException e) {
+            System.out.println("Failed to warm up: " + e.getMessage());
+            System.exit(EXIT_ERROR);
+        } catch (HtmlToPdfConfigurationException e) {
+            System.out.println(e.getMessage());
+            System.exit(EXIT_ERROR);
+        }
+    }
+
+    /**
+     * Merges the log files of the shards of a batch into a single log file
+     * @param htmlToPdfFileManager the file manager class
+     */
+    private static void mergeLogs(HtmlToPdfFileManager htmlToPdfFileManager) {
+        File mergedLogFile;
+        try {
+            mergedLogFile = HtmlToPdfLogMerger.merge(htmlToPdfFileManager.getLogDirectory());
+        } catch (IOException e) {
+            System.out.println("Failed to merge the shard log files: " + e.getMessage());
+            System.exit(EXIT_ERROR);
+            return;
+        }
+        if(mergedLogFile == null){
+            System.out.println("There are no shard log files to merge in: " + htmlToPdfFileManager.getLogDirectory().getPath());
+            System.exit(EXIT_ERROR);
+        }
+        System.out.println("Merged the shard log files into: " + mergedLogFile.getPath());
+    }
+
+    /**
+     * Deletes the quarantine file of a batch, so the quarantined files are converted again
+     * @param htmlToPdfFileManager the file manager class
+     * @throws IOException if the quarantine file can't be deleted
+     */
+    private static void clearQuarantine(HtmlToPdfFileManager htmlToPdfFileManager) throws IOException {
+        if(Files.deleteIfExists(htmlToPdfFileManager.getQuarantineFile().toPath())){
+            System.out.println("Cleared the quarantine: " + htmlToPdfFileManager.getQuarantineFile().getPath());
+        }
+    }
+
+    /**
+     * Runs the converter as a local HTTP server until the JVM shuts down
+     * @param htmlToPdfConfiguration the converter configuration
+     */
+    private static void runServer(HtmlToPdfConfiguration htmlToPdfConfiguration) {
+        try {
+            new HtmlToPdfServer(htmlToPdfConfiguration).run();
+            System.out.println("Stopped the HTML to PDF server");
+        } catch (IOException e) {
+            System.out.println("Failed to start the HTML to PDF server: " + e.getMessage());
+            System.exit(EXIT_ERROR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(EXIT_ERROR);
+        }
+    }
+
     /**
      * JFileChooser implementation to choose the JSON file representation of the HtmlToPdfConfiguration object
      * @return the selected file
@@ -0,0 +1,194 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the converter end to end on small source directories configured with paths relative to the working directory
+ */
+class HtmlToPdfConverterTest {
+    private static final Path TEST_ROOT = Path.of("target", "converter-test");
+    private static final String HTML = "<html><body><h1>Title</h1><p>Some text</p></body></html>";
+
+    @Test
+    void convertsWithRelativePaths() throws Exception {
+        Path root = createSource("relative", "a.html", "b.html", "sub/c.html");
+        HtmlToPdfConfiguration configuration = configure(root, "");
+        HtmlToPdfFileManager fileManager = new HtmlToPdfFileManager(configuration);
+        assertTrue(fileManager.getSourceDirectory().isAbsolute());
+        assertTrue(fileManager.getPdfDirectory().isAbsolute());
+        assertTrue(fileManager.getLogDirectory().isAbsolute());
+        assertTrue(fileManager.hasValidDirectories());
+
+        assertTrue(new HtmlToPdfConverter(configuration, fileManager).executeConversion());
+        assertTrue(Files.isRegularFile(root.resolve("out/pdf/a.pdf")));
+        assertTrue(Files.isRegularFile(root.resolve("out/pdf/b.pdf")));
+        assertTrue(Files.isRegularFile(root.resolve("out/pdf/sub/c.pdf")));
+    }
+
+    @Test
+    void archivesWithRelativePaths() throws Exception {
+        Path root = createSource("archive", "a.html", "sub/c.html");
+        HtmlToPdfConfiguration configuration = configure(root, "\"pdfArchive\": true,");
+        HtmlToPdfFileManager fileManager = new HtmlToPdfFileManager(configuration);
+        assertTrue(fileManager.hasValidDirectories());
+
+        assertTrue(new HtmlToPdfConverter(configuration, fileManager).executeConversion());
+        try (ZipFile zipFile = new ZipFile(root.resolve("out/pdf.zip").toFile())) {
+            assertNotNull(zipFile.getEntry("a.pdf"));
+            assertNotNull(zipFile.getEntry("sub/c.pdf"));
+        }
+    }
+
+    @Test
+    void cachesWithRelativePaths() throws Exception {
+        Path root = createSource("cache", "a.html", "b.html");
+        HtmlToPdfConfiguration configuration = configure(root, "\"outputCache\": true,");
+        HtmlToPdfFileManager fileManager = new HtmlToPdfFileManager(configuration);
+        assertTrue(fileManager.hasValidDirectories());
+
+        assertTrue(new HtmlToPdfConverter(configuration, fileManager).executeConversion());
+        assertTrue(Files.isRegularFile(root.resolve("out/pdf/a.pdf")));
+        assertTrue(Files.isRegularFile(root.resolve("out/pdf/b.pdf")));
+        String index = Files.readString(fileManager.getOutputCacheFile().toPath(), StandardCharsets.UTF_8);
+        assertTrue(index.contains("\"a.pdf\"") || index.contains("\"b.pdf\""));
+    }
+
+    @Test
+    void mergesWithRelativePaths() throws Exception {
+        Path root = createSource("merge", "a.html", "b.html", "sub/c.html");
+        HtmlToPdfConfiguration configuration = configure(root, "\"merge\": true,");
+        HtmlToPdfFileManager fileManager = new HtmlToPdfFileManager(configuration);
+        assertTrue(fileManager.hasValidDirectories());
+
+        assertTrue(new HtmlToPdfConverter(configuration, fileManager).executeConversion());
+        assertTrue(Files.isRegularFile(root.resolve("out/pdf/in.pdf")));
+        assertTrue(Files.isRegularFile(root.resolve("out/pdf/sub/sub.pdf")));
+        String index = Files.readString(fileManager.getMergeIndexFile().toPath(), StandardCharsets.UTF_8);
+        assertTrue(index.contains("\"in.pdf\""));
+        assertTrue(index.contains("\"sub/sub.pdf\""));
+    }
+
+    @Test
+    void splitsMergedArchiveGroupsBySize() throws Exception {
+        Path root = createSource("merge-archive");
+        String padding = "<!--" + "x".repeat(600 * 1024) + "-->";
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(root.resolve("in.zip")))) {
+            for(String name : new String[]{"a.html", "b.html", "c.html"}){
+                zipOutputStream.putNextEntry(new ZipEntry(name));
+                zipOutputStream.write((HTML + padding).getBytes(StandardCharsets.UTF_8));
+                zipOutputStream.closeEntry();
+            }
+        }
+        String json = "{\"merge\": true, \"mergeMemoryMb\": 1, \"warmUpIterations\": 0,"
+                + "\"sourceDirectoryPath\": \"" + toJsonPath(root.resolve("in.zip")) + "\","
+                + "\"targetDirectoryPath\": \"" + toJsonPath(root.resolve("out")) + "\"}";
+        HtmlToPdfConfiguration configuration = new Gson().fromJson(json, HtmlToPdfConfiguration.class);
+        configuration.validate();
+        HtmlToPdfFileManager fileManager = new HtmlToPdfFileManager(configuration);
+        assertTrue(fileManager.hasValidDirectories());
+
+        assertTrue(new HtmlToPdfConverter(configuration, fileManager).executeConversion());
+        assertTrue(Files.isRegularFile(root.resolve("out/pdf/in_1.pdf")));
+        assertTrue(Files.isRegularFile(root.resolve("out/pdf/in_2.pdf")));
+        assertFalse(Files.exists(root.resolve("out/pdf/in.pdf")));
+    }
+
+    @Test
+    void convertsFilesWithTheSamePdfFile() throws Exception {
+        Path root = createSource("same-pdf", "a.html", "a.htm");
+        HtmlToPdfConfiguration configuration = configure(root, "\"executionMode\": \"FIXED_POOL\", \"threadCount\": 2,");
+        HtmlToPdfFileManager fileManager = new HtmlToPdfFileManager(configuration);
+        assertTrue(fileManager.hasValidDirectories());
+
+        assertTrue(new HtmlToPdfConverter(configuration, fileManager).executeConversion());
+        try (Stream<Path> files = Files.list(root.resolve("out/pdf"))) {
+            assertEquals(List.of("a.pdf"), files.map(path -> path.getFileName().toString()).toList());
+        }
+    }
+
+    /**
+     * Creates an empty test directory holding a source directory with the given HTML files and a target directory
+     * @param name the name of the test directory
+     * @param paths the paths of the HTML files relative to the source directory
+     * @return the test directory, relative to the working directory
+     * @throws IOException if the test directory can't be created
+     */
+    static Path createSource(String name, String... paths) throws IOException {
+        Path root = TEST_ROOT.resolve(name);
+        if(Files.exists(root)){
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        for(String path : paths){
+            Path file = root.resolve("in").resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, HTML, StandardCharsets.UTF_8);
+        }
+        Files.createDirectories(root.resolve("out"));
+        return root;
+    }
+
+    /**
+     * Creates a validated configuration converting the source directory of a test directory, with relative paths
+     * @param root the test directory, relative to the working directory
+     * @param settings further JSON settings, each followed by a comma
+     * @return the configuration
+     * @throws HtmlToPdfConfigurationException if the settings are not valid
+     */
+    static HtmlToPdfConfiguration configure(Path root, String settings) throws HtmlToPdfConfigurationException {
+        String json = "{" + settings + "\"warmUpIterations\": 0,"
+                + "\"sourceDirectoryPath\": \"" + toJsonPath(root.resolve("in")) + "\","
+                + "\"targetDirectoryPath\": \"" + toJsonPath(root.resolve("out")) + "\"}";
+        HtmlToPdfConfiguration configuration = new Gson().fromJson(json, HtmlToPdfConfiguration.class);
+        configuration.validate();
+        assertFalse(new File(configuration.getTargetDirectoryPath()).isAbsolute());
+        return configuration;
+    }
+
+    /**
+     * Writes a path with forward slashes so it can be embedded in JSON
+     * @param path the path
+     * @return the path with forward slashes
+     */
+    private static String toJsonPath(Path path) {
+        return path.toString().replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Posts requests to a server listening on an ephemeral port and checks its answers
+ */
+class HtmlToPdfServerTest {
+    private static final String BOUNDARY = "html-to-pdf-test-boundary";
+    private static final String HTML = "<html><head><link rel=\"stylesheet\" href=\"css/style.css\"></head>"
+            + "<body><h1>Title</h1><p>Some text</p></body></html>";
+    private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+    private static HtmlToPdfServer server;
+    private static Thread serverThread;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        HtmlToPdfConfiguration configuration = new Gson().fromJson("{\"server\": true, \"serverHost\": \"127.0.0.1\","
+                + "\"serverPort\": 0, \"serverMaxRequestMb\": 1, \"sourceDirectoryPath\": \".\","
+                + "\"targetDirectoryPath\": \".\"}", HtmlToPdfConfiguration.class);
+        configuration.validate();
+        server = new HtmlToPdfServer(configuration);
+        serverThread = Thread.ofPlatform().start(() -> {
+            try {
+                server.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for(int attempt = 0; attempt < 100; attempt++){
+            try {
+                if(HTTP_CLIENT.send(HttpRequest.newBuilder(uri("/health")).build(),
+                        HttpResponse.BodyHandlers.discarding()).statusCode() == 200){
+                    return;
+                }
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    @AfterAll
+    static void stopServer() throws Exception {
+        server.stop();
+        serverThread.join();
+    }
+
+    @Test
+    void convertsMultipartForm() throws Exception {
+        byte[] body = multipart(part("html", "report.html", HTML), part("css/style.css", "style.css", "h1 { color: red; }"));
+        HttpResponse<byte[]> response = post(body, "multipart/form-data; boundary=" + BOUNDARY);
+
+        assertEquals(200, response.statusCode());
+        assertEquals("application/pdf", response.headers().firstValue("Content-Type").orElse(null));
+        assertTrue(new String(Arrays.copyOf(response.body(), 5), StandardCharsets.US_ASCII).startsWith("%PDF-"));
+    }
+
+    @Test
+    void rejectsOversizedBody() throws Exception {
+        byte[] body = new byte[1024 * 1024 + 1];
+        Arrays.fill(body, (byte) ' ');
+
+        assertEquals(413, post(body, "text/html").statusCode());
+    }
+
+    @Test
+    void rejectsFormWithoutHtmlPart() throws Exception {
+        byte[] body = multipart(part("css/style.css", "style.css", "h1 { color: red; }"));
+
+        assertEquals(400, post(body, "multipart/form-data; boundary=" + BOUNDARY).statusCode());
+    }
+
+    @Test
+    void rejectsWrongContentType() throws Exception {
+        assertEquals(415, post(HTML.getBytes(StandardCharsets.UTF_8), "application/json").statusCode());
+        assertEquals(400, post(HTML.getBytes(StandardCharsets.UTF_8), "multipart/form-data").statusCode());
+    }
+
+    /**
+     * Posts a body to the conversion endpoint
+     * @param body the request body
+     * @param contentType the content type of the request body
+     * @return the response
+     * @throws Exception if the request fails
+     */
+    private static HttpResponse<byte[]> post(byte[] body, String contentType) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/convert"))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Builds a multipart form body from its parts
+     * @param parts the encoded parts
+     * @return the multipart form body
+     */
+    private static byte[] multipart(String... parts) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for(String part : parts){
+            body.writeBytes(("--" + BOUNDARY + "\r\n" + part + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        body.writeBytes(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    /**
+     * Encodes a file part of a multipart form
+     * @param name the field name of the part
+     * @param filename the file name of the part
+     * @param content the content of the part
+     * @return the encoded part, without its boundary
+     */
+    private static String part(String name, String filename, String content) {
+        return "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n" + content;
+    }
+
+    /**
+     * Gets the URI of an endpoint of the server
+     * @param path the path of the endpoint
+     * @return the URI of the endpoint
+     */
+    private static URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+}
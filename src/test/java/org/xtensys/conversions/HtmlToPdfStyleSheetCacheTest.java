@@ -0,0 +1,94 @@
+/*
+ *     HTML to PDF Converter
+ *     Copyright (C) 2025  Jorge Torres-Lumsden
+ *     jtorreslumsden@gmail.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Affero General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Affero General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Affero General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.xtensys.conversions;
+
+import com.itextpdf.styledxmlparser.resolver.resource.DefaultResourceRetriever;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which rule sets of a cached stylesheet are served to a document
+ */
+class HtmlToPdfStyleSheetCacheTest {
+    private static final String STYLE_SHEET = """
+            .missing { color: red; }
+            div .present p { color: green; }
+            section > .missing-child { color: red; }
+            p[title] { color: blue; }
+            p:not(.missing) { color: navy; }
+            .missing:first-child { color: gray; }
+            li::before { content: "-"; }
+            @media print { .missing { color: black; } }
+            """;
+    private static final Set<String> DOCUMENT_SELECTORS = Set.of("html", "body", "div", "p", ".present");
+
+    @Test
+    void keepsSelectorsThatCantBeProvenUnused() throws Exception {
+        URL url = writeStyleSheet("pruned.css");
+        HtmlToPdfStyleSheetCache styleSheetCache = new HtmlToPdfStyleSheetCache(4, true);
+
+        String styleSheet = new String(styleSheetCache.get(url, new DefaultResourceRetriever(), DOCUMENT_SELECTORS),
+                StandardCharsets.UTF_8);
+        assertFalse(styleSheet.contains("red"));
+        assertTrue(styleSheet.contains("div .present p"));
+        assertTrue(styleSheet.contains("p[title]"));
+        assertTrue(styleSheet.contains("p:not(.missing)"));
+        assertTrue(styleSheet.contains(".missing:first-child"));
+        assertTrue(styleSheet.contains("li::before"));
+        assertTrue(styleSheet.contains("@media print"));
+        assertEquals(2, styleSheetCache.toJson().get("prunedStatements").getAsLong());
+    }
+
+    @Test
+    void servesLocalStyleSheetsByVersion() throws Exception {
+        URL url = writeStyleSheet("unpruned.css");
+        HtmlToPdfStyleSheetCache styleSheetCache = new HtmlToPdfStyleSheetCache(4, false);
+
+        byte[] first = styleSheetCache.get(url, new DefaultResourceRetriever(), DOCUMENT_SELECTORS);
+        byte[] second = styleSheetCache.get(url, null, DOCUMENT_SELECTORS);
+        assertArrayEquals(STYLE_SHEET.getBytes(StandardCharsets.UTF_8), first);
+        assertArrayEquals(first, second);
+        assertEquals(1, styleSheetCache.getMisses());
+        assertEquals(1, styleSheetCache.getHits());
+    }
+
+    /**
+     * Writes the test stylesheet to a file
+     * @param name the name of the file
+     * @return the URL of the stylesheet
+     * @throws Exception if the stylesheet can't be written
+     */
+    private static URL writeStyleSheet(String name) throws Exception {
+        Path path = Path.of("target", "style-sheet-cache-test", name);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, STYLE_SHEET, StandardCharsets.UTF_8);
+        return path.toAbsolutePath().toUri().toURL();
+    }
+}